@@ -0,0 +1,88 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-04
+
+package me.psanders;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.maps.errors.ApiException;
+
+import me.psanders.graph.LongMatrixGraph;
+import me.psanders.graph.path.Cycle;
+import me.psanders.graph.path.PortfolioOptimizationStrategy;
+import me.psanders.graph.path.SolveBudget;
+import me.psanders.graph.path.TourConstruction;
+import me.psanders.graph.path.TourConstructions;
+import me.psanders.maps.DistanceMatrixFactory;
+import me.psanders.maps.DistanceTable;
+import me.psanders.maps.LocationGraphFactory;
+
+/** Keeps a route up to date while its stops are added and removed one at a time.
+ *
+ * <p>Building the route again from scratch after each edit would fetch the whole n^2 matrix and
+ * solve from a cold start. Here an added stop fetches only the 2n-1 legs to and from it, a
+ * removed stop fetches nothing, and each solve after the first starts from the previous route
+ * with the edited stops repaired into it, which usually leaves the solver little to do.
+ *
+ * <p>An editor is meant to be used from one thread at a time.
+ */
+public class RouteEditor {
+
+  private DistanceMatrixFactory matrixFactory;
+  private LocationGraphFactory graphFactory;
+  private ForkJoinPool pool;
+  private SplittableRandom random;
+
+  private DistanceTable table;
+  private Cycle<String, Long> route;
+
+  /** Construct an editor for a trip whose table has already been built.
+   *
+   * @param matrixFactory Fetches the legs of added stops, under the same options as the table
+   * @param pool Runs the portfolio that solves the route
+   */
+  public RouteEditor(DistanceMatrixFactory matrixFactory, LocationGraphFactory graphFactory,
+      DistanceTable table, ForkJoinPool pool, SplittableRandom random) {
+    this.matrixFactory = matrixFactory;
+    this.graphFactory = graphFactory;
+    this.table = table;
+    this.pool = pool;
+    this.random = random;
+  }
+
+  /** Add a stop to the trip, fetching only its legs. */
+  public void addStop(String place)
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    table = matrixFactory.addPlace(table, place);
+  }
+
+  /** Remove a stop from the trip, as it was given, without fetching anything.
+   *
+   * @return Whether the trip had such a stop
+   */
+  public boolean removeStop(String place) {
+    int index = table.indexOf(place);
+    if (index < 0) {
+      return false;
+    }
+    table = table.withoutPlace(index);
+    return true;
+  }
+
+  /** Returns the best route through the current stops found before the budget runs out. */
+  public Cycle<String, Long> solve(SolveBudget budget) {
+    LongMatrixGraph<String> graph = graphFactory.build(table);
+    TourConstruction start = route == null ? TourConstructions.NEAREST_NEIGHBOR
+        : TourConstructions.warmStart(route.getOrder());
+    route = PortfolioOptimizationStrategy.<String, Long>standard(random.split(), pool, start)
+        .getOptimalCycle(graph, budget);
+    return route;
+  }
+
+  /** Returns the table of the current stops. */
+  public DistanceTable getTable() {
+    return table;
+  }
+}
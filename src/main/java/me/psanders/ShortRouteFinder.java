@@ -3,12 +3,20 @@
 
 package me.psanders;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.ConnectException;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import com.google.maps.model.DistanceMatrix;
+import me.psanders.maps.DistanceCache;
 import me.psanders.maps.DistanceMatrixFactory;
+import me.psanders.maps.DistanceProvider;
+import me.psanders.maps.DualWeightGraph;
+import me.psanders.maps.HaversineDistanceProvider;
+import me.psanders.maps.StreamingEndpoint;
 import org.apache.commons.cli.AlreadySelectedException;
 import org.apache.commons.cli.MissingOptionException;
 import org.apache.commons.cli.OptionBuilder;
@@ -20,20 +28,19 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.UnrecognizedOptionException;
 
-import com.google.maps.GeoApiContext;
 import com.google.maps.errors.ApiException;
 
 import me.psanders.graph.path.Cycle;
 import me.psanders.graph.path.HCycleFinder;
-import me.psanders.graph.path.GeneticOptimizationStrategy;
-import me.psanders.graph.Graph;
+import me.psanders.graph.path.PortfolioOptimizationStrategy;
+import me.psanders.graph.path.SolveBudget;
 import me.psanders.maps.LocationGraphFactory;
 
 /** Factory class for Cycle based on a list of geographic locations.
  *
  * <p>We pass in a list of arguments that are used to create a Google Maps
  * API instance, look up the set of places from that list, and optimize a
- * route between those places using a Genetic Algorithm.
+ * route between those places by racing several strategies against a deadline.
  *
  * <p>The arguments are designed to be formatted as arguments coming in from
  * the command line, i.e., the <code>args</code> passed to a program entry.
@@ -47,7 +54,17 @@ import me.psanders.maps.LocationGraphFactory;
  */
 public class ShortRouteFinder {
 
+  // The portfolio stops searching after this long, or once no member has improved for STALL
+  // generations.
+  static final long TIME_LIMIT_SECONDS = 10;
+  static final int STALL = 50;
+
+  // At least one worker for each member of the standard portfolio; the genetic algorithm's
+  // islands share them all.
+  private static final int THREADS = Math.max(3, Runtime.getRuntime().availableProcessors());
+
   private String[] args;
+  private DualWeightGraph<String> graph;
 
   public ShortRouteFinder(String[] args) {
     this.args = args;
@@ -56,7 +73,7 @@ public class ShortRouteFinder {
   /** Parse command line arguments and deliver a route between the points listed.
    *
    */
-  public Cycle getRoute() {
+  public Cycle<String, Long> getRoute() {
     Options options = getOptions();
 
     try {
@@ -68,26 +85,47 @@ public class ShortRouteFinder {
         System.exit(0);
       }
 
-      String[] places = getPlaces(flags);
-      if (places.length < 2) {
-        System.out.println("You must provide at least two locations.");
-        usage(options);
-        System.exit(1);
-      }
-
-      GeoApiContext context = new GeoApiContext.Builder().
-          apiKey(flags.getOptionValue("key")).build();
-      DistanceMatrixFactory matrixFactory = new DistanceMatrixFactory(context, places, flags);
+      DistanceProvider provider;
+      DistanceCache cache = null;
+      if (flags.hasOption("offline")) {
+        provider = getOfflineProvider(flags);
+        if (provider == null) {
+          return null;
+        }
+      } else {
+        String[] places = getPlaces(flags);
+        if (places.length < 2) {
+          System.out.println("You must provide at least two locations.");
+          usage(options);
+          System.exit(1);
+        }
 
+        StreamingEndpoint endpoint = new StreamingEndpoint.Builder()
+            .apiKey(flags.getOptionValue("key"))
+            .build();
+        cache = getCache(flags);
+        provider = new DistanceMatrixFactory(endpoint, places, flags, cache);
+      }
 
       // Retrieve the graph of distances between each pair of places passed in to args.
-      Graph graph = new LocationGraphFactory(matrixFactory, flags).build();
+      graph = new LocationGraphFactory(provider, flags).build();
+      if (cache != null) {
+        closeCache(cache);
+      }
 
       // Find the optimal route.
-      return new HCycleFinder(
-          graph,
-          new GeneticOptimizationStrategy<String, Long>(new Random())
-      ).getOptimalCycle();
+      ForkJoinPool pool = new ForkJoinPool(THREADS);
+      try {
+        return new HCycleFinder(
+            graph,
+            PortfolioOptimizationStrategy.<String, Long>standard(new SplittableRandom(), pool)
+        ).getOptimalCycle(new SolveBudget.Builder()
+            .timeout(TIME_LIMIT_SECONDS, TimeUnit.SECONDS)
+            .stallGenerations(STALL)
+            .build());
+      } finally {
+        pool.shutdown();
+      }
 
     // Error handling
     // These blocks intentionally fall through to the `return null` below.
@@ -99,7 +137,8 @@ public class ShortRouteFinder {
       System.out.println(e.getLocalizedMessage() + "\n");
       usage(options);
     } catch (MissingOptionException e) {
-      System.out.println("You must include a valid Google Maps Services API key\n");
+      System.out.println("You must include a valid Google Maps Services API key, or a file of "
+          + "coordinates to estimate distances offline\n");
       usage(options);
     } catch (ParseException e) {
       // TODO(hxtk): Exit gracefully on exception.
@@ -109,31 +148,68 @@ public class ShortRouteFinder {
     return null;
   }
 
+  /** Returns the graph that the last route was found in, or null if there is none.
+   *
+   * <p>It holds both the distance and the time of every leg, whichever the route was chosen by,
+   * so that both totals can be reported.
+   */
+  public DualWeightGraph<String> getGraph() {
+    return graph;
+  }
+
   /** Produces a parser that will process the arguments below:
    *
    * <code>
+   * -b,--blend <METERS> Selects route by distance plus METERS for each second of travel.
+   * -c,--cache <FILE>  Keeps distances in FILE between runs, fetching only new pairs.
    * -F,--no-fee        Selects route that avoids toll roads and ferries.
    * -f,--file <FILE>   Reads newline-delimited locations from a file.
    * --fast             Selects route with shortest time.
    *                    (Default is shortest distance)
    * -h,--help          Print this usage message.
-   * -k,--key <KEY>     Google Maps Services API Key.
+   * -k,--key <KEY>     Google Maps Services API Key (Required unless offline).
    * -M,--mode <arg>    Transportation mode (uses Google default)
    *                    Options: "driving" "transit" "bicycling" "walking"
+   * -o,--offline <FILE> Estimates distances from the "LAT,LNG[,NAME]" lines of FILE instead of
+   *                    asking Google.
    * -s,--scenic        Selects route that avoids highways and toll roads.
    * </code>
    */
   private Options getOptions() {
     Options options = new Options();
-    options.addOption(
+    OptionGroup sources = new OptionGroup();
+    sources.addOption(
         OptionBuilder
             .withLongOpt("key")
             .hasArg().withArgName("KEY")
-            .withDescription("Google Maps Services API Key (Required).")
-            .isRequired()
+            .withDescription("Google Maps Services API Key (Required unless offline).")
             .create("k")
     );
+    sources.addOption(
+        OptionBuilder
+            .withLongOpt("offline")
+            .hasArg().withArgName("FILE")
+            .withDescription("Estimates distances from the \"LAT,LNG[,NAME]\" lines of FILE "
+                + "instead of asking Google.")
+            .create("o")
+    );
+    sources.setRequired(true);
+    options.addOptionGroup(sources);
     options.addOption("h", "help", false, "Print this usage message.");
+    options.addOption(
+        OptionBuilder
+            .withLongOpt("blend")
+            .hasArg().withArgName("METERS")
+            .withDescription("Selects route by distance plus METERS for each second of travel.")
+            .create("b")
+    );
+    options.addOption(
+        OptionBuilder
+            .withLongOpt("cache")
+            .hasArg().withArgName("FILE")
+            .withDescription("Keeps distances in FILE between runs, fetching only new pairs.")
+            .create("c")
+    );
 
     OptionGroup modifiers = new OptionGroup();
     modifiers.addOption(
@@ -190,6 +266,45 @@ public class ShortRouteFinder {
     }
   }
 
+  /** Open the distance cache named by the "cache" flag, or return null if there is none.
+   *
+   * <p>A cache that cannot be opened is not fatal: we warn and fetch everything instead.
+   */
+  private DistanceCache getCache(CommandLine flags) {
+    if (!flags.hasOption("cache")) {
+      return null;
+    }
+    try {
+      return new DistanceCache(new File(flags.getOptionValue("cache")));
+    } catch (IOException e) {
+      System.out.println("Could not open the distance cache, so we will fetch every distance: "
+          + e.getLocalizedMessage());
+      return null;
+    }
+  }
+
+  /** Read the places named by the "offline" flag, or return null if they cannot be read.
+   *
+   * <p>Distances are estimated from the coordinates alone, so no request goes to Google. See
+   * <code>HaversineDistanceProvider</code>.
+   */
+  private DistanceProvider getOfflineProvider(CommandLine flags) {
+    try {
+      return HaversineDistanceProvider.fromFile(new File(flags.getOptionValue("offline")));
+    } catch (IOException e) {
+      System.out.println("Could not read the places to estimate: " + e.getLocalizedMessage());
+      return null;
+    }
+  }
+
+  private void closeCache(DistanceCache cache) {
+    try {
+      cache.close();
+    } catch (IOException e) {
+      System.out.println("Could not save the distance cache: " + e.getLocalizedMessage());
+    }
+  }
+
   /** Print the usage message for the given options.
    *
    * For more information, see the documentation for HelpFormatter:
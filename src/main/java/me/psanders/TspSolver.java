@@ -4,13 +4,15 @@
 package me.psanders;
 
 import me.psanders.graph.path.Cycle;
+import me.psanders.maps.DualWeightGraph;
 
 import java.text.DecimalFormat;
 
 class TspSolver {
 
   public static void main(String[] args) {
-    Cycle<String, Long> path = new ShortRouteFinder(args).getRoute();
+    ShortRouteFinder finder = new ShortRouteFinder(args);
+    Cycle<String, Long> path = finder.getRoute();
     if (path == null) {
       System.exit(1);
     }
@@ -23,8 +25,12 @@ class TspSolver {
     // Print the first place again because this is a cycle, i.e., it returns to its starting point.
     System.out.println(path.getOrder().get(0));
 
-    double cost = ((double) (path.getCost())) / 1609.344/*meters per mile*/;
+    // Report both totals, whichever of them the route was chosen by.
+    DualWeightGraph<String> graph = finder.getGraph();
+    double miles = graph.getTotalMeters(path.getOrder()) / 1609.344/*meters per mile*/;
+    long minutes = Math.round(graph.getTotalSeconds(path.getOrder()) / 60.0);
     DecimalFormat df = new DecimalFormat("#.#");
-    System.out.println("Total distance: " + df.format(cost) + "mi");
+    System.out.println("Total distance: " + df.format(miles) + "mi");
+    System.out.println("Total time: " + (minutes / 60) + "h " + (minutes % 60) + "min");
   }
 }
\ No newline at end of file
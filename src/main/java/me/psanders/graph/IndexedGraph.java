@@ -0,0 +1,53 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-08
+
+package me.psanders.graph;
+
+/** A complete graph whose vertices are also addressable by a dense integer index.
+ *
+ * <p>Vertices are numbered <code>0</code> through <code>size() - 1</code>, and every ordered pair
+ * of vertices has a primitive weight. Optimizers should translate labels to indices once and then
+ * work entirely in terms of <code>getWeightAt</code>, which avoids the hashing and unboxing that
+ * <code>Graph.getWeight</code> incurs on every call.
+ *
+ * @param <L> Type to be used for the graph's vertices or labels
+ * @param <T> Numeric type returned by the label-based <code>getWeight</code>
+ */
+public interface IndexedGraph<L, T extends Number> extends Graph<L, T> {
+
+  /** Weight used for legs that exist in the label space but could not be resolved.
+   *
+   * <p>This is large enough that an optimizer will route around it, but only one of them may be
+   * added to ordinary weights without overflowing a <code>long</code>: two already come to
+   * <code>Long.MAX_VALUE - 1</code>. Costs that may include several should be summed with
+   * <code>add</code>, which saturates instead.
+   */
+  long UNREACHABLE = Long.MAX_VALUE / 2;
+
+  /** Sum two non-negative costs, saturating at <code>Long.MAX_VALUE</code> rather than wrapping.
+   *
+   * <p>A tour through several unreachable legs then costs <code>Long.MAX_VALUE</code>, which is
+   * still more than any tour through fewer, rather than a negative number that beats them all.
+   */
+  static long add(long a, long b) {
+    long sum = a + b;
+    return sum < 0 ? Long.MAX_VALUE : sum;
+  }
+
+  /** Returns the number of vertices in this graph. */
+  int size();
+
+  /** Returns the index of the vertex with the given label, or <code>-1</code> if there is none. */
+  int getIndex(L label);
+
+  /** Returns the label of the vertex at the given index. */
+  L getLabel(int index);
+
+  /** Get the weight of the edge from the vertex at index Start to the vertex at index End.
+   *
+   * @param start The index of the starting point
+   * @param end The index of the ending point
+   * @return Weight of edge connecting the vertices Start and End
+   */
+  long getWeightAt(int start, int end);
+}
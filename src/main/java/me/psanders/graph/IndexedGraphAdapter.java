@@ -0,0 +1,79 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-08
+
+package me.psanders.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/** Presents an arbitrary Graph as an IndexedGraph.
+ *
+ * <p>The weights of the underlying graph are copied into a flat primitive matrix once, when the
+ * adapter is built, so this costs O(V^2) time and memory up front. Missing edges are recorded as
+ * <code>UNREACHABLE</code>, except on the diagonal where they are recorded as zero. Label-based
+ * lookups are still answered by the underlying graph.
+ */
+public class IndexedGraphAdapter<L, T extends Number> implements IndexedGraph<L, T> {
+
+  private Graph<L, T> graph;
+  private LongMatrixGraph<L> matrix;
+
+  private IndexedGraphAdapter(Graph<L, T> graph) {
+    this.graph = graph;
+
+    List<L> labels = new ArrayList<L>(graph.getNodes());
+    int size = labels.size();
+    long[] weights = new long[size * size];
+    for (int i = 0; i < size; ++i) {
+      for (int j = 0; j < size; ++j) {
+        T weight = graph.getWeight(labels.get(i), labels.get(j));
+        if (weight != null) {
+          weights[i * size + j] = weight.longValue();
+        } else if (i != j) {
+          weights[i * size + j] = UNREACHABLE;
+        }
+      }
+    }
+    this.matrix = new LongMatrixGraph<L>(labels, weights);
+  }
+
+  /** Returns the graph itself if it is already indexed, otherwise an indexed copy of it. */
+  @SuppressWarnings("unchecked")
+  public static <L, T extends Number> IndexedGraph<L, T> of(Graph<L, T> graph) {
+    if (graph instanceof IndexedGraph) {
+      return (IndexedGraph<L, T>) graph;
+    }
+    return new IndexedGraphAdapter<L, T>(graph);
+  }
+
+  @Override
+  public Set<L> getNodes() {
+    return matrix.getNodes();
+  }
+
+  @Override
+  public T getWeight(L start, L end) {
+    return graph.getWeight(start, end);
+  }
+
+  @Override
+  public int size() {
+    return matrix.size();
+  }
+
+  @Override
+  public int getIndex(L label) {
+    return matrix.getIndex(label);
+  }
+
+  @Override
+  public L getLabel(int index) {
+    return matrix.getLabel(index);
+  }
+
+  @Override
+  public long getWeightAt(int start, int end) {
+    return matrix.getWeightAt(start, end);
+  }
+}
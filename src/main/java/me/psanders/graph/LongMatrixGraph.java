@@ -0,0 +1,92 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-08
+
+package me.psanders.graph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Represents a complete Graph Theory graph using a flat, primitive adjacency matrix.
+ *
+ * <p>Weights are stored row-major in a single <code>long[]</code>, so the cost of going from
+ * vertex i to vertex j is <code>weights[i * size + j]</code>. Unlike <code>MatrixGraph</code>,
+ * looking up a weight by index requires neither hashing nor unboxing.
+ *
+ * <p>The set of vertices in this graph representation is immutable.
+ */
+public class LongMatrixGraph<L> implements IndexedGraph<L, Long> {
+
+  private List<L> labels;
+  private Map<L, Integer> indices;
+  private Set<L> nodes;
+  private long[] weights;
+  private int size;
+
+  /** Constructs a graph from a list of labels and a row-major weight matrix.
+   *
+   * <p>The label at position i of <code>labels</code> names the vertex at index i. Labels must be
+   * distinct. The weight array is used as-is rather than copied, so callers that build a matrix
+   * in place may hand it off without doubling their peak memory.
+   *
+   * @param labels Labels of the vertices, in index order.
+   * @param weights Row-major matrix of <code>labels.size()</code> squared weights.
+   */
+  public LongMatrixGraph(List<L> labels, long[] weights) {
+    this.size = labels.size();
+    if (weights.length != size * size) {
+      throw new IllegalArgumentException(
+          "Expected " + (size * size) + " weights but got " + weights.length);
+    }
+
+    this.labels = labels;
+    this.weights = weights;
+    this.indices = new HashMap<L, Integer>();
+    for (int i = 0; i < size; ++i) {
+      if (indices.put(labels.get(i), i) != null) {
+        throw new IllegalArgumentException("Duplicate label: " + labels.get(i));
+      }
+    }
+    this.nodes = Collections.unmodifiableSet(new LinkedHashSet<L>(labels));
+  }
+
+  /** Returns the vertices in index order. */
+  @Override
+  public Set<L> getNodes() {
+    return nodes;
+  }
+
+  @Override
+  public Long getWeight(L start, L end) {
+    Long res = null;
+    if (indices.containsKey(start) && indices.containsKey(end)) {
+      res = weights[indices.get(start) * size + indices.get(end)];
+    }
+
+    return res;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int getIndex(L label) {
+    Integer res = indices.get(label);
+    return res == null ? -1 : res;
+  }
+
+  @Override
+  public L getLabel(int index) {
+    return labels.get(index);
+  }
+
+  @Override
+  public long getWeightAt(int start, int end) {
+    return weights[start * size + end];
+  }
+}
@@ -0,0 +1,274 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-29
+
+package me.psanders.graph.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.IndexedGraphAdapter;
+
+/** Finds a "probably optimal" route through a complete graph with an ant colony system.
+ *
+ * <p>This is the ant colony system of (Dorigo & Gambardella, 1997) cited below. Each iteration a
+ * colony of ants builds tours edge by edge, preferring edges with more pheromone and lower weight,
+ * and choosing only among each stop's <code>CANDIDATES</code> nearest neighbors until those are all
+ * visited. Pheromone then evaporates from the edges the ants used and is laid on the best tour
+ * found so far. Edges are directed, so this works as well on asymmetric graphs.
+ *
+ * <p>The ants of an iteration build their tours in parallel on a fork-join pool, each with its own
+ * random stream and workspace. They read the pheromone matrix but never write it: the paper's
+ * local update, applied as each ant moves, is instead applied for all ants together at the end of
+ * the iteration, with the global update. So there are no data races on the matrix, and a seeded
+ * run gives the same cycle however many workers the pool has.
+ *
+ * <p>Pheromone and heuristic values are kept in flat <code>double[]</code> matrices indexed like
+ * an <code>IndexedGraph</code>; graphs that are not indexed are snapshotted first. Each ant's tour
+ * counts as one evaluation and each iteration as one generation towards a
+ * <code>SolveBudget</code>; without a bounded budget the colony runs <code>ITERATIONS</code>
+ * iterations.
+ */
+public class AntColonyOptimizationStrategy<L, T extends Number>
+    implements OptimizationStrategy<L, T> {
+
+  // Dorigo, M. and Gambardella, L.M. "Ant Colony System: A Cooperative Learning Approach to the
+  // Traveling Salesman Problem," IEEE Transactions on Evolutionary Computation 1(1), 1997.
+  // pp. 53-66. The parameters are the ones recommended there.
+  static final int ANTS = 10;
+  static final double BETA = 2.0;
+  static final double Q0 = 0.9;
+  static final double RHO = 0.1;
+  static final double XI = 0.1;
+  static final int CANDIDATES = 15;
+  static final int ITERATIONS = 1000;
+
+  private SplittableRandom random;
+  private ForkJoinPool pool;
+  private int numAnts;
+
+  public AntColonyOptimizationStrategy(SplittableRandom random) {
+    this(random, ForkJoinPool.commonPool());
+  }
+
+  public AntColonyOptimizationStrategy(SplittableRandom random, ForkJoinPool pool) {
+    this(random, pool, ANTS);
+  }
+
+  /** Construct a strategy with a colony of the given size, building tours on a pool.
+   *
+   * @param pool The pool to build tours on, or null to build them on this thread
+   */
+  public AntColonyOptimizationStrategy(SplittableRandom random, ForkJoinPool pool, int numAnts) {
+    if (numAnts < 1) {
+      throw new IllegalArgumentException("At least one ant is required, not " + numAnts);
+    }
+    this.random = random;
+    this.pool = pool;
+    this.numAnts = numAnts;
+  }
+
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph) {
+    return getOptimalCycle(graph, SolveBudget.unlimited());
+  }
+
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph, SolveBudget budget) {
+    IndexedGraph<L, T> indexed = IndexedGraphAdapter.of(graph);
+    if (indexed.size() < 4) {
+      return new HeldKarpOptimizationStrategy<L, T>().getOptimalCycle(indexed);
+    }
+    Colony colony = new Colony(indexed);
+    colony.run(budget);
+    return new Cycle<L, T>(indexed, colony.best);
+  }
+
+  /** The pheromone matrix and the best tour, shared by one colony's ants. */
+  private final class Colony {
+
+    private final IndexedGraph<L, T> graph;
+    private final int size;
+    private final NeighborLists candidates;
+
+    // pheromone[i * size + j] is the pheromone on edge (i, j), and heuristic[i * size + j] the
+    // edge's weight raised to -BETA.
+    private final double[] pheromone;
+    private final double[] heuristic;
+    private final double initial;
+
+    private final List<Ant> ants;
+    private final int[] best;
+    private long bestCost;
+
+    Colony(IndexedGraph<L, T> graph) {
+      this.graph = graph;
+      this.size = graph.size();
+      this.candidates = new NeighborLists(graph, CANDIDATES);
+      this.pheromone = new double[size * size];
+      this.heuristic = new double[size * size];
+      for (int i = 0; i < size; ++i) {
+        for (int j = 0; j < size; ++j) {
+          // Zero-weight legs, such as repeated stops, are as attractive as legs of weight 1.
+          double weight = Math.max(1, graph.getWeightAt(i, j));
+          heuristic[i * size + j] = Math.pow(weight, -BETA);
+        }
+      }
+
+      // Start the pheromone at 1 / (n * L), where L is the cost of a nearest-neighbor tour.
+      this.best = TourConstructions.NEAREST_NEIGHBOR.build(graph, 0);
+      this.bestCost = Tours.cost(graph, best, 0, size);
+      this.initial = 1.0 / ((double) size * Math.max(1, bestCost));
+      Arrays.fill(pheromone, initial);
+
+      this.ants = new ArrayList<Ant>();
+      for (int a = 0; a < numAnts; ++a) {
+        ants.add(new Ant(random.split()));
+      }
+    }
+
+    void run(SolveBudget budget) {
+      boolean capped = !budget.isBounded();
+      int stale = 0;
+      budget.improved(bestCost, 0, () -> new Cycle<L, T>(graph, best));
+      for (int iteration = 0; !(capped && iteration >= ITERATIONS); ++iteration) {
+        if (budget.isExhausted()) {
+          return;
+        }
+        if (pool == null) {
+          for (Ant ant : ants) {
+            ant.walk();
+          }
+        } else {
+          ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[ants.size()];
+          for (int a = 0; a < ants.size(); ++a) {
+            tasks[a] = pool.submit(ants.get(a)::walk);
+          }
+          for (ForkJoinTask<?> task : tasks) {
+            task.join();
+          }
+        }
+        budget.charge(ants.size());
+
+        if (update()) {
+          stale = 0;
+          budget.improved(bestCost, iteration + 1, () -> new Cycle<L, T>(graph, best));
+        } else {
+          ++stale;
+        }
+        if (budget.isStalled(stale)) {
+          return;
+        }
+      }
+    }
+
+    /** Apply this iteration's pheromone updates, returning true if the best tour improved. */
+    private boolean update() {
+      boolean improved = false;
+      for (Ant ant : ants) {
+        // Local update: pheromone on each edge an ant used decays towards its initial level.
+        for (int k = 0; k < size; ++k) {
+          int edge = ant.tour[k] * size + ant.tour[(k + 1) % size];
+          pheromone[edge] = (1 - XI) * pheromone[edge] + XI * initial;
+        }
+        if (ant.cost < bestCost) {
+          bestCost = ant.cost;
+          System.arraycopy(ant.tour, 0, best, 0, size);
+          improved = true;
+        }
+      }
+
+      // Global update: only the best tour so far is reinforced.
+      double deposit = RHO / Math.max(1, bestCost);
+      for (int k = 0; k < size; ++k) {
+        int edge = best[k] * size + best[(k + 1) % size];
+        pheromone[edge] = (1 - RHO) * pheromone[edge] + deposit;
+      }
+      return improved;
+    }
+
+    /** One ant's random stream and workspace. Only one thread uses an ant at a time. */
+    private final class Ant {
+
+      private final SplittableRandom random;
+      private final int[] tour;
+      private final boolean[] visited;
+      private final double[] weights;
+      private long cost;
+
+      Ant(SplittableRandom random) {
+        this.random = random;
+        this.tour = new int[size];
+        this.visited = new boolean[size];
+        this.weights = new double[candidates.count()];
+      }
+
+      /** Build a tour from a random start, reading but never writing the pheromone. */
+      void walk() {
+        Arrays.fill(visited, false);
+        tour[0] = random.nextInt(size);
+        visited[tour[0]] = true;
+        for (int k = 1; k < size; ++k) {
+          int next = choose(tour[k - 1]);
+          tour[k] = next;
+          visited[next] = true;
+        }
+        cost = Tours.cost(graph, tour, 0, size);
+      }
+
+      /** Pick the next stop after CURRENT by the pseudo-random proportional rule. */
+      private int choose(int current) {
+        int row = current * size;
+
+        double total = 0;
+        int greedy = -1;
+        double greedyWeight = -1;
+        for (int r = 0; r < candidates.count(); ++r) {
+          int j = candidates.get(current, r);
+          double weight = 0;
+          if (!visited[j]) {
+            weight = pheromone[row + j] * heuristic[row + j];
+            if (weight > greedyWeight) {
+              greedy = j;
+              greedyWeight = weight;
+            }
+          }
+          weights[r] = weight;
+          total += weight;
+        }
+
+        if (greedy < 0) {
+          // Every candidate has been visited: take the best of the rest.
+          for (int j = 0; j < size; ++j) {
+            if (!visited[j]) {
+              double weight = pheromone[row + j] * heuristic[row + j];
+              if (weight > greedyWeight) {
+                greedy = j;
+                greedyWeight = weight;
+              }
+            }
+          }
+          return greedy;
+        }
+        if (random.nextDouble() < Q0 || total <= 0) {
+          return greedy;
+        }
+
+        // Otherwise choose among the candidates in proportion to their weights.
+        double target = random.nextDouble() * total;
+        for (int r = 0; r < candidates.count(); ++r) {
+          target -= weights[r];
+          if (target < 0 && weights[r] > 0) {
+            return candidates.get(current, r);
+          }
+        }
+        return greedy;
+      }
+    }
+  }
+}
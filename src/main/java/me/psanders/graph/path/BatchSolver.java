@@ -0,0 +1,132 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-02-01
+
+package me.psanders.graph.path;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import me.psanders.graph.Graph;
+
+/** Solves many small graphs at once, for throughput rather than the latency of any one of them.
+ *
+ * <p>A route for each of a few thousand drivers is a few thousand independent solves of a dozen
+ * or so stops each. Each is too small to be worth parallelizing inside, so instead the batch is
+ * split across the workers of a fork-join pool, which steal from each other to keep busy however
+ * uneven the graphs are.
+ *
+ * <p>Each worker thread makes its own strategy once, the first time it solves something, and
+ * reuses it for every graph it takes from this batch and later ones. It keeps a
+ * <code>Workspace</code> the same way, which strategies that support one take their tour,
+ * position, neighbor and prefix-sum arrays from; the arrays grow to the largest graph the worker
+ * has seen, so a solve allocates little beyond its starting tour and its result. Strategies should
+ * run on the calling thread, without a pool of their own, and need not be thread-safe. A strategy
+ * that draws from a random stream keeps drawing from the same one across graphs, so results
+ * depend on which worker solved which graph.
+ *
+ * <code>
+ * BatchSolver<String, Long> solver = new BatchSolver<String, Long>(ForkJoinPool.commonPool(),
+ *     () -> new SimulatedAnnealingOptimizationStrategy<String, Long>(new SplittableRandom()));
+ * List<BatchSolver.Solution<String, Long>> routes = solver.solve(graphs);
+ * </code>
+ */
+public class BatchSolver<L, T extends Number> {
+
+  private final ForkJoinPool pool;
+  private final ThreadLocal<OptimizationStrategy<L, T>> strategies;
+  private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+  /** Construct a solver that makes one strategy for each worker of a pool.
+   *
+   * @param strategies Makes a strategy for a worker thread that has not solved anything yet
+   */
+  public BatchSolver(ForkJoinPool pool, Supplier<? extends OptimizationStrategy<L, T>> strategies) {
+    this.pool = pool;
+    this.strategies = ThreadLocal.withInitial(strategies);
+  }
+
+  /** Solve every graph with no limits beyond each strategy's own. */
+  public List<Solution<L, T>> solve(List<? extends Graph<L, T>> graphs) {
+    return solve(graphs, SolveBudget::unlimited);
+  }
+
+  /** Solve every graph, each under a budget of its own, returning the solutions in input order.
+   *
+   * <p>If any solve fails, this throws its exception and the other solutions are lost.
+   *
+   * @param budgets Makes the budget for one graph when its solve starts
+   */
+  public List<Solution<L, T>> solve(List<? extends Graph<L, T>> graphs,
+      Supplier<SolveBudget> budgets) {
+    // Each task sets its own element, so the list is never resized while the tasks run.
+    List<Solution<L, T>> solutions =
+        new ArrayList<Solution<L, T>>(Collections.nCopies(graphs.size(), null));
+    if (!graphs.isEmpty()) {
+      pool.invoke(new Batch(new ArrayList<Graph<L, T>>(graphs), budgets, solutions,
+          0, graphs.size()));
+    }
+    return solutions;
+  }
+
+  /** The cycle found for one graph of a batch, and how long finding it took. */
+  public static final class Solution<L, T extends Number> {
+
+    private final Cycle<L, T> cycle;
+    private final long elapsedNanos;
+
+    Solution(Cycle<L, T> cycle, long elapsedNanos) {
+      this.cycle = cycle;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    public Cycle<L, T> getCycle() {
+      return cycle;
+    }
+
+    /** Returns the wall-clock time spent solving this graph alone, in nanoseconds. */
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+  }
+
+  /** Solves the graphs between two positions of a batch, splitting the range among workers. */
+  private class Batch extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Graph<L, T>> graphs;
+    private final Supplier<SolveBudget> budgets;
+    private final List<Solution<L, T>> solutions;
+    private final int from;
+    private final int to;
+
+    Batch(List<Graph<L, T>> graphs, Supplier<SolveBudget> budgets,
+        List<Solution<L, T>> solutions, int from, int to) {
+      this.graphs = graphs;
+      this.budgets = budgets;
+      this.solutions = solutions;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      // Each solve is large next to the cost of a task, so split all the way down to one graph.
+      if (to - from == 1) {
+        OptimizationStrategy<L, T> strategy = strategies.get();
+        long start = System.nanoTime();
+        Cycle<L, T> cycle =
+            strategy.getOptimalCycle(graphs.get(from), budgets.get(), workspaces.get());
+        solutions.set(from, new Solution<L, T>(cycle, System.nanoTime() - start));
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new Batch(graphs, budgets, solutions, from, mid),
+            new Batch(graphs, budgets, solutions, mid, to));
+      }
+    }
+  }
+}
@@ -0,0 +1,452 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-19
+
+package me.psanders.graph.path;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.IndexedGraphAdapter;
+
+/** Finds the cheapest Hamiltonian Cycle through a complete graph by branch and bound.
+ *
+ * <p>We grow paths out of vertex 0 one vertex at a time, abandoning any path whose cost plus a
+ * lower bound on the cheapest way to finish it is no better than the best cycle found so far. The
+ * search starts from the cycle found by <code>LocalSearchOptimizationStrategy</code>, so most of
+ * the tree is pruned from the outset.
+ *
+ * <p>The lower bound is the Held-Karp 1-tree bound. The vertices not yet visited, plus the path
+ * contracted to a single vertex, must be joined into a cycle; every such cycle is a 1-tree, and
+ * adding a penalty to each vertex changes every cycle's cost by the same amount while changing the
+ * minimum 1-tree. The penalties are tuned once, at the root, by subgradient ascent. The bound only
+ * needs each undirected edge to cost no more than either of its directed versions, so it also holds
+ * for asymmetric graphs, although it is looser there.
+ *
+ * <p>Subtrees are explored as tasks on a fork-join pool. A task splits off its children only while
+ * its worker has few tasks queued for others to steal, and otherwise continues depth first. The
+ * best cycle is shared between workers through a lock-free reference.
+ *
+ * <p>Unlike <code>HeldKarpOptimizationStrategy</code> this needs only polynomial memory, so it is
+ * the better choice from about 20 to 60 stops, but its running time depends heavily on the graph.
+ */
+public class BranchAndBoundOptimizationStrategy<L, T extends Number>
+    implements OptimizationStrategy<L, T> {
+
+  // Visited vertices are tracked in the bits of a long.
+  static final int MAX_NODES = 64;
+
+  // Tasks stop splitting off children once their worker has this many tasks queued.
+  private static final int SURPLUS = 3;
+
+  // Subgradient ascent: initial step scale, and iterations without progress before halving it.
+  private static final double INITIAL_SCALE = 2.0;
+  private static final int PATIENCE = 10;
+  private static final double MIN_SCALE = 1e-4;
+
+  // Subgradient steps taken at each node of the tree, starting from its parent's penalties.
+  private static final int NODE_ITERATIONS = 5;
+  private static final double NODE_SCALE = 1.0;
+
+  // Scratch that no task on this thread is using, sized for any graph. A task that joins a child
+  // may run other tasks on its thread meanwhile, so each running task takes one of its own, and a
+  // thread keeps as many as it has ever had tasks nested at once.
+  private static final ThreadLocal<ArrayDeque<Scratch>> SPARE =
+      ThreadLocal.withInitial(ArrayDeque::new);
+
+  private ForkJoinPool pool;
+
+  public BranchAndBoundOptimizationStrategy() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public BranchAndBoundOptimizationStrategy(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /** Return the cheapest Hamiltonian Cycle through a complete graph.
+   *
+   * @throws IllegalArgumentException if the graph has more than MAX_NODES vertices
+   */
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph) {
+    return getOptimalCycle(graph, SolveBudget.unlimited());
+  }
+
+  /** Return the cheapest cycle found before the budget runs out.
+   *
+   * <p>If the search is cut short, the result is the best cycle found so far, which is at least
+   * as good as the local search it started from. Each node of the search tree counts as one
+   * evaluation.
+   *
+   * @throws IllegalArgumentException if the graph has more than MAX_NODES vertices
+   */
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph, SolveBudget budget) {
+    IndexedGraph<L, T> indexed = IndexedGraphAdapter.of(graph);
+    int size = indexed.size();
+    if (size > MAX_NODES) {
+      throw new IllegalArgumentException(
+          "Branch and bound supports at most " + MAX_NODES + " nodes, not " + size + ".");
+    }
+    if (size <= 3) {
+      return new HeldKarpOptimizationStrategy<L, T>(pool).getOptimalCycle(indexed);
+    }
+
+    // Seed the search with a good heuristic cycle.
+    Cycle<L, T> start =
+        new LocalSearchOptimizationStrategy<L, T>().getOptimalCycle(indexed, budget);
+    int[] tour = new int[size];
+    for (int i = 0; i < size; ++i) {
+      tour[i] = indexed.getIndex(start.getOrder().get(i));
+    }
+
+    Search search = new Search(indexed, new Incumbent(start.getCost(), tour), budget);
+    search.ascend();
+    search.run();
+    return new Cycle<L, T>(indexed, search.best.getTour());
+  }
+
+  /** The state shared by every task searching one graph. */
+  private class Search {
+
+    private final IndexedGraph<L, T> graph;
+    private final int size;
+
+    // The cheaper direction of each edge, and each vertex's others sorted by outgoing weight.
+    private final long[] undirected;
+    private final int[] nearest;
+
+    // The vertex penalties of the Held-Karp bound.
+    private final double[] penalty;
+
+    private final Incumbent best;
+    private final SolveBudget budget;
+
+    Search(IndexedGraph<L, T> graph, Incumbent start, SolveBudget budget) {
+      this.graph = graph;
+      this.size = graph.size();
+      this.undirected = new long[size * size];
+      this.nearest = new int[size * size];
+      this.penalty = new double[size];
+      this.best = start;
+      this.budget = budget;
+
+      for (int i = 0; i < size; ++i) {
+        List<Integer> others = new ArrayList<Integer>();
+        for (int j = 0; j < size; ++j) {
+          undirected[i * size + j] = Math.min(graph.getWeightAt(i, j), graph.getWeightAt(j, i));
+          others.add(j);
+        }
+        final int from = i;
+        others.sort((a, b) -> Long.compare(graph.getWeightAt(from, a), graph.getWeightAt(from, b)));
+        for (int j = 0; j < size; ++j) {
+          nearest[i * size + j] = others.get(j);
+        }
+      }
+    }
+
+    /** Tune the penalties to maximize the bound at the root by subgradient ascent. */
+    void ascend() {
+      double[] trial = new double[size];
+      double[] bestPenalty = new double[size];
+      int[] degree = new int[size];
+      Scratch scratch = new Scratch(size);
+
+      double bestBound = Double.NEGATIVE_INFINITY;
+      double scale = INITIAL_SCALE;
+      int stale = 0;
+      while (scale > MIN_SCALE && !budget.isExhausted()) {
+        double bound = oneTree(0, 1L, trial, degree, scratch);
+        if (bound > bestBound) {
+          bestBound = bound;
+          System.arraycopy(trial, 0, bestPenalty, 0, size);
+          stale = 0;
+        } else if (++stale >= PATIENCE) {
+          scale /= 2;
+          stale = 0;
+        }
+
+        long norm = 0;
+        for (int v = 1; v < size; ++v) {
+          norm += (degree[v] - 2) * (degree[v] - 2);
+        }
+        double gap = best.getCost() - bound;
+        if (norm == 0 || gap <= 0) {
+          // The 1-tree is a cycle, or the bound already proves the seed cycle optimal.
+          break;
+        }
+        double step = scale * steer(gap, bound) / norm;
+        for (int v = 1; v < size; ++v) {
+          trial[v] += step * (degree[v] - 2);
+        }
+      }
+      System.arraycopy(bestPenalty, 0, penalty, 0, size);
+    }
+
+    void run() {
+      int[] path = new int[size];
+      pool.invoke(new Node(path, 1, 1L, 0, penalty));
+    }
+
+    /** A lower bound on the cost of finishing a path at Last through every unvisited vertex.
+     *
+     * <p>The path is contracted to one vertex C. It joins an unvisited vertex u either by leaving
+     * Last for u or by arriving at vertex 0 from u, so the edge (C, u) costs the cheaper of the
+     * two. The bound is the cost of the minimum 1-tree rooted at C: a spanning tree of the
+     * unvisited vertices plus the two cheapest edges from C, less twice the penalties.
+     *
+     * @param degree If not null, receives each unvisited vertex's degree in the 1-tree
+     */
+    double oneTree(int last, long visited, double[] pi, int[] degree, Scratch scratch) {
+      int[] vertices = scratch.vertices;
+      int count = 0;
+      for (int v = 0; v < size; ++v) {
+        if ((visited & (1L << v)) == 0) {
+          vertices[count++] = v;
+          if (degree != null) {
+            degree[v] = 0;
+          }
+        }
+      }
+      if (count == 1) {
+        return IndexedGraph.add(graph.getWeightAt(last, vertices[0]),
+            graph.getWeightAt(vertices[0], 0));
+      }
+
+      // Prim's algorithm over the unvisited vertices.
+      double[] key = scratch.key;
+      int[] parent = scratch.parent;
+      boolean[] inTree = scratch.inTree;
+      for (int i = 0; i < count; ++i) {
+        key[i] = Double.POSITIVE_INFINITY;
+        inTree[i] = false;
+      }
+      key[0] = 0;
+      parent[0] = -1;
+      double total = 0;
+      for (int added = 0; added < count; ++added) {
+        int next = -1;
+        for (int i = 0; i < count; ++i) {
+          if (!inTree[i] && (next < 0 || key[i] < key[next])) {
+            next = i;
+          }
+        }
+        inTree[next] = true;
+        total += key[next];
+        if (degree != null && parent[next] >= 0) {
+          ++degree[vertices[next]];
+          ++degree[vertices[parent[next]]];
+        }
+
+        int u = vertices[next];
+        for (int i = 0; i < count; ++i) {
+          if (!inTree[i]) {
+            int v = vertices[i];
+            double weight = undirected[u * size + v] + pi[u] + pi[v];
+            if (weight < key[i]) {
+              key[i] = weight;
+              parent[i] = next;
+            }
+          }
+        }
+      }
+
+      // The two cheapest edges joining the contracted path to the tree.
+      int first = -1;
+      int second = -1;
+      double firstWeight = Double.POSITIVE_INFINITY;
+      double secondWeight = Double.POSITIVE_INFINITY;
+      double penalties = 0;
+      for (int i = 0; i < count; ++i) {
+        int v = vertices[i];
+        penalties += pi[v];
+        double weight = Math.min(graph.getWeightAt(last, v), graph.getWeightAt(v, 0)) + pi[v];
+        if (weight < firstWeight) {
+          second = first;
+          secondWeight = firstWeight;
+          first = v;
+          firstWeight = weight;
+        } else if (weight < secondWeight) {
+          second = v;
+          secondWeight = weight;
+        }
+      }
+      if (degree != null) {
+        ++degree[first];
+        ++degree[second];
+      }
+      return total + firstWeight + secondWeight - 2 * penalties;
+    }
+
+    /** The gap between the incumbent and a bound that scales a subgradient step.
+     *
+     * <p>An incumbent through an <code>UNREACHABLE</code> leg is too far above a finite bound to
+     * steer by: steps that long would push the penalties so high that the bound drowned in their
+     * rounding error. So the gap is capped at the size of the bound itself.
+     */
+    private double steer(double gap, double bound) {
+      return Math.min(gap, Math.abs(bound) + 1);
+    }
+
+    /** Round a 1-tree bound up to the integer tour costs it bounds.
+     *
+     * <p>The 1-tree is summed in doubles, which cannot overflow but lose precision on the order of
+     * the weights, and <code>UNREACHABLE</code> legs make those large. So the tolerance grows with
+     * the bound, and the cast saturates at <code>Long.MAX_VALUE</code> as tour costs do.
+     */
+    private long round(double bound) {
+      return (long) Math.ceil(bound - 1e-6 - Math.abs(bound) * 1e-12);
+    }
+
+    /** Searches every way of finishing one path, splitting off subtrees for idle workers. */
+    private class Node extends RecursiveAction {
+
+      private static final long serialVersionUID = 1L;
+
+      private final int[] path;
+      private final int depth;
+      private final long visited;
+      private final long cost;
+      private final double[] parentPenalty;
+
+      Node(int[] path, int depth, long visited, long cost, double[] parentPenalty) {
+        this.path = path;
+        this.depth = depth;
+        this.visited = visited;
+        this.cost = cost;
+        this.parentPenalty = parentPenalty.clone();
+      }
+
+      @Override
+      protected void compute() {
+        ArrayDeque<Scratch> spare = SPARE.get();
+        Scratch scratch = spare.isEmpty() ? new Scratch(MAX_NODES) : spare.pop();
+        try {
+          System.arraycopy(parentPenalty, 0, scratch.penalties[depth - 1], 0, size);
+          explore(path, depth, visited, cost, scratch);
+        } finally {
+          spare.push(scratch);
+        }
+      }
+
+      /** Tighten the bound below a path by a few subgradient steps from its parent's penalties.
+       *
+       * <p>The penalties for the path's children are left in <code>scratch.penalties[depth]</code>.
+       *
+       * @return The best lower bound found on the cost of finishing the path
+       */
+      private long bound(int last, int depth, long visited, long cost, Scratch scratch) {
+        double[] pi = scratch.penalties[depth];
+        System.arraycopy(scratch.penalties[depth - 1], 0, pi, 0, size);
+        int[] degree = scratch.degree;
+
+        long bound = 0;
+        for (int k = 0; k < NODE_ITERATIONS; ++k) {
+          long trial = round(oneTree(last, visited, pi, degree, scratch));
+          bound = Math.max(bound, trial);
+          long gap = best.getCost() - IndexedGraph.add(cost, bound);
+          if (gap <= 0) {
+            break;
+          }
+
+          long norm = 0;
+          for (int v = 0; v < size; ++v) {
+            if ((visited & (1L << v)) == 0) {
+              norm += (degree[v] - 2) * (degree[v] - 2);
+            }
+          }
+          if (norm == 0) {
+            break;
+          }
+          double step = NODE_SCALE * steer(gap, bound) / norm;
+          for (int v = 0; v < size; ++v) {
+            if ((visited & (1L << v)) == 0) {
+              pi[v] += step * (degree[v] - 2);
+            }
+          }
+        }
+        return bound;
+      }
+
+      /** Depth-first search below a path, reusing the path array as we backtrack. */
+      private void explore(int[] path, int depth, long visited, long cost, Scratch scratch) {
+        int last = path[depth - 1];
+        budget.charge(1);
+        if (budget.isExhausted()) {
+          return;
+        }
+        if (depth == size) {
+          long total = IndexedGraph.add(cost, graph.getWeightAt(last, 0));
+          if (best.offer(total, path)) {
+            budget.improved(total, 0, () -> new Cycle<L, T>(graph, path));
+          }
+          return;
+        }
+        if (IndexedGraph.add(cost, bound(last, depth, visited, cost, scratch)) >= best.getCost()) {
+          return;
+        }
+
+        List<Node> forked = null;
+        for (int r = 0; r < size; ++r) {
+          int next = nearest[last * size + r];
+          if ((visited & (1L << next)) != 0) {
+            continue;
+          }
+          long nextCost = IndexedGraph.add(cost, graph.getWeightAt(last, next));
+          if (nextCost >= best.getCost()) {
+            // Neighbors are sorted by weight, so none of the rest can do better.
+            break;
+          }
+
+          if (getSurplusQueuedTaskCount() < SURPLUS && size - depth > 2) {
+            int[] copy = path.clone();
+            copy[depth] = next;
+            Node child = new Node(copy, depth + 1, visited | (1L << next), nextCost,
+                scratch.penalties[depth]);
+            child.fork();
+            if (forked == null) {
+              forked = new ArrayList<Node>();
+            }
+            forked.add(child);
+          } else {
+            path[depth] = next;
+            explore(path, depth + 1, visited | (1L << next), nextCost, scratch);
+          }
+        }
+
+        if (forked != null) {
+          for (Node child: forked) {
+            child.join();
+          }
+        }
+      }
+    }
+  }
+
+  /** Working storage for one task: a 1-tree at a time, and the penalties at each depth.
+   *
+   * <p>It may be larger than the graph, and a task reads only what it has written.
+   */
+  private static final class Scratch {
+    final int[] vertices;
+    final double[] key;
+    final int[] parent;
+    final boolean[] inTree;
+    final int[] degree;
+    final double[][] penalties;
+
+    Scratch(int size) {
+      vertices = new int[size];
+      key = new double[size];
+      parent = new int[size];
+      inTree = new boolean[size];
+      degree = new int[size];
+      penalties = new double[size][size];
+    }
+  }
+}
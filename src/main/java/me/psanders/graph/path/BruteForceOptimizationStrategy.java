@@ -4,15 +4,40 @@
 package me.psanders.graph.path;
 
 import me.psanders.graph.Graph;
-import me.psanders.utils.LexicographicPermuter;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.IndexedGraphAdapter;
+import me.psanders.utils.IntPermuter;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class BruteForceOptimizationStrategy<L extends Comparable<L>, T extends Number>
     implements OptimizationStrategy<L, T> {
 
+  // Parallel mode: subtrees with at most this many positions left are enumerated by one task.
+  private static final int SEQUENTIAL_DEPTH = 8;
+
+  private ForkJoinPool pool;
+
+  /** Construct a strategy that checks every permutation, one after another, on this thread. */
+  public BruteForceOptimizationStrategy() {
+    this(null);
+  }
+
+  /** Construct a strategy that divides the permutations between the workers of a pool.
+   *
+   * <p>In this mode the first vertex is fixed, since every rotation of a cycle costs the same,
+   * and prefixes that already cost more than the best cycle found are not extended. Both are
+   * safe only because edge weights are never negative, so this still returns the true cheapest
+   * cycle, but it no longer looks at every permutation.
+   */
+  public BruteForceOptimizationStrategy(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
   /** Return the cheapest Hamiltonian Cycle through a complete graph.
    *
    * <p>This is the true cheapest cycle, but it has factorial running time. We use this for testing
@@ -21,20 +46,120 @@ public class BruteForceOptimizationStrategy<L extends Comparable<L>, T extends N
    */
   @Override
   public Cycle<L, T> getOptimalCycle(Graph<L, T> graph) {
+    IndexedGraph<L, T> indexed = IndexedGraphAdapter.of(graph);
+    if (pool != null) {
+      return getOptimalCycleInParallel(indexed);
+    }
+
+    // Visit the labels in sorted order, so that ties go to the lexicographically least cycle.
     List<L> list = new ArrayList<L>();
-    list.addAll(graph.getNodes());
+    list.addAll(indexed.getNodes());
     Collections.sort(list);
+    int[] byLabel = new int[list.size()];
+    for (int i = 0; i < byLabel.length; ++i) {
+      byLabel[i] = indexed.getIndex(list.get(i));
+    }
+
+    // Check every permutation, stepping one array in place, and store the shortest one.
+    int[] permutation = new int[byLabel.length];
+    for (int i = 0; i < permutation.length; ++i) {
+      permutation[i] = i;
+    }
+    int[] tour = new int[byLabel.length];
+    int[] cheapest = byLabel.clone();
+    long cheapestCost = Tours.cost(indexed, cheapest, 0, cheapest.length);
+    do {
+      for (int i = 0; i < tour.length; ++i) {
+        tour[i] = byLabel[permutation[i]];
+      }
+      long cost = Tours.cost(indexed, tour, 0, tour.length);
+      if (cost < cheapestCost) {
+        cheapestCost = cost;
+        System.arraycopy(tour, 0, cheapest, 0, tour.length);
+      }
+    } while (IntPermuter.next(permutation));
+
+    return new Cycle<L, T>(indexed, cheapest);
+  }
 
-    // Check every permutation and store the shortest one.
-    Cycle<L, T> cheapestCycle = new Cycle<L, T>(graph, list.subList(0, list.size()));
-    for (List<L> it: new LexicographicPermuter<L>(list)) {
-      Cycle<L, T> tmpCycle = new Cycle<L, T>(graph, it);
+  /** Enumerate the (n-1)! cycles starting at vertex 0, split by prefix across the pool. */
+  private Cycle<L, T> getOptimalCycleInParallel(IndexedGraph<L, T> graph) {
+    int[] tour = new int[graph.size()];
+    for (int i = 0; i < tour.length; ++i) {
+      tour[i] = i;
+    }
+    Incumbent best = new Incumbent(Tours.cost(graph, tour, 0, tour.length), tour);
+    if (tour.length > 2) {
+      pool.invoke(new Prefix(graph, best, tour, 1, 0));
+    }
+    return new Cycle<L, T>(graph, best.getTour());
+  }
+
+  /** Enumerates every cycle that begins with a given prefix of vertices. */
+  private class Prefix extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
 
-      if (tmpCycle.getCost() < cheapestCycle.getCost()) {
-        cheapestCycle = tmpCycle;
+    private final IndexedGraph<L, T> graph;
+    private final Incumbent best;
+    private final int[] tour;
+    private final int depth;
+    private final long cost;
+
+    /**
+     * @param tour A permutation whose first Depth positions are the prefix. This task owns it.
+     * @param cost The cost of the path through the prefix
+     */
+    Prefix(IndexedGraph<L, T> graph, Incumbent best, int[] tour, int depth, long cost) {
+      this.graph = graph;
+      this.best = best;
+      this.tour = tour;
+      this.depth = depth;
+      this.cost = cost;
+    }
+
+    @Override
+    protected void compute() {
+      if (tour.length - depth <= SEQUENTIAL_DEPTH) {
+        permute(depth, cost);
+        return;
+      }
+
+      // Each choice for the next position becomes its own task, with its own copy of the tour.
+      List<Prefix> children = new ArrayList<Prefix>();
+      for (int i = depth; i < tour.length; ++i) {
+        int[] child = tour.clone();
+        child[depth] = tour[i];
+        child[i] = tour[depth];
+        long childCost =
+            IndexedGraph.add(cost, graph.getWeightAt(child[depth - 1], child[depth]));
+        children.add(new Prefix(graph, best, child, depth + 1, childCost));
+      }
+      invokeAll(children);
+    }
+
+    /** Permute positions Depth onwards in place, restoring them before returning. */
+    private void permute(int depth, long cost) {
+      if (cost >= best.getCost()) {
+        return;
+      }
+      if (depth == tour.length) {
+        best.offer(IndexedGraph.add(cost, graph.getWeightAt(tour[depth - 1], tour[0])), tour);
+        return;
+      }
+
+      for (int i = depth; i < tour.length; ++i) {
+        swap(depth, i);
+        permute(depth + 1,
+            IndexedGraph.add(cost, graph.getWeightAt(tour[depth - 1], tour[depth])));
+        swap(depth, i);
       }
     }
 
-    return cheapestCycle;
+    private void swap(int i, int j) {
+      int tmp = tour[i];
+      tour[i] = tour[j];
+      tour[j] = tmp;
+    }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,22 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-25
+
+package me.psanders.graph.path;
+
+import java.util.SplittableRandom;
+
+import me.psanders.graph.IndexedGraph;
+
+/** Recombines two parent tours into a child for the genetic algorithm.
+ *
+ * <p>Tours are permutations of the vertex indices of an <code>IndexedGraph</code>, held in int
+ * arrays of the same length as the graph. The genetic algorithm asks for a new operator for each
+ * population it evolves and only uses it from one thread at a time, so an implementation may keep
+ * scratch space between calls.
+ */
+public interface CrossoverOperator {
+
+  /** Write a child of the two parents into <code>child</code>. The parents are not modified. */
+  void recombine(IndexedGraph<?, ?> graph, int[] first, int[] second, int[] child,
+      SplittableRandom random);
+}
@@ -6,24 +6,29 @@ package me.psanders.graph.path;
 import java.util.List;
 
 import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
 
-public class Cycle<L, T extends Number> extends Path {
-
-  private Graph<L, T> graph;
-  private List<L> order;
+/** A Path whose last node connects back to its first.
+ *
+ * <p>Positions wrap around, so the moves inherited from Path may span the seam between the last
+ * and first nodes.
+ */
+public class Cycle<L, T extends Number> extends Path<L, T> {
 
   public Cycle(Graph<L, T> graph, List<L> order) {
     super(graph, order);
-    this.graph = graph;
-    this.order = order;
+  }
+
+  public Cycle(IndexedGraph<L, T> graph, int[] indices) {
+    super(graph, indices);
+  }
+
+  public Cycle(Cycle<L, T> other) {
+    super(other);
   }
 
   @Override
-  public long getCost() {
-    long cost = 0;
-    for (int i = 0; i < order.size(); ++i) {
-      cost += graph.getWeight(order.get(i), order.get((i + 1) % order.size())).longValue();
-    }
-    return cost;
+  protected boolean isClosed() {
+    return true;
   }
-}
\ No newline at end of file
+}
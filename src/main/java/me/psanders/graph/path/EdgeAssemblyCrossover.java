@@ -0,0 +1,335 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-25
+
+package me.psanders.graph.path;
+
+import java.util.SplittableRandom;
+
+import me.psanders.graph.IndexedGraph;
+
+/** Edge assembly crossover (EAX) after Nagata & Kobayashi (1997), in its single-cycle form.
+ *
+ * <p>The edges of both parents are treated as undirected. Edges the parents share are set aside,
+ * and the rest are decomposed into AB-cycles: closed walks that alternate between an edge of the
+ * first parent and an edge of the second. One AB-cycle is chosen at random and applied to the
+ * first parent, swapping its edges from the cycle for the second parent's. Every vertex keeps two
+ * edges, but the result may fall apart into several subtours, which are then joined greedily,
+ * smallest first, by the cheapest exchange of two edges with a vertex near the subtour.
+ *
+ * <p>The child is made almost entirely of parental edges, so it tends to be far better than the
+ * children of the position-based operators. On an asymmetric graph the child is read in whichever
+ * direction is cheaper.
+ */
+public final class EdgeAssemblyCrossover implements CrossoverOperator {
+
+  // Candidates for joining subtours are taken from this many nearest neighbors of each vertex.
+  static final int NEIGHBORS = 10;
+
+  private IndexedGraph<?, ?> graph;
+  private NeighborLists neighbors;
+  private int length;
+
+  // Adjacency lists: the two neighbors of vertex v are at [2v] and [2v + 1], -1 once removed.
+  private int[] firstEdges;
+  private int[] secondEdges;
+  private int[] childEdges;
+
+  // The walk that builds AB-cycles, and the position of each vertex at an even step of it.
+  private int[] walk;
+  private int[] evenStep;
+
+  // AB-cycles found, as runs of vertices in one flat array.
+  private int[] cycles;
+  private int[] cycleStarts;
+
+  // Subtour of each vertex in the child, and the size of each subtour.
+  private int[] subtour;
+  private int[] subtourSize;
+  private int numSubtours;
+
+  // Best exchange found while joining subtours.
+  private long bestDelta;
+  private int bestU;
+  private int bestNextU;
+  private int bestV;
+  private int bestNextV;
+  private boolean bestCrossed;
+
+  @Override
+  public void recombine(IndexedGraph<?, ?> graph, int[] first, int[] second, int[] child,
+      SplittableRandom random) {
+    if (first.length < 4) {
+      System.arraycopy(first, 0, child, 0, first.length);
+      return;
+    }
+    prepare(graph, first.length);
+    link(first, firstEdges);
+    link(second, secondEdges);
+    System.arraycopy(firstEdges, 0, childEdges, 0, 2 * length);
+
+    int numCycles = findCycles(random);
+    if (numCycles == 0) {
+      // The parents are the same cycle.
+      System.arraycopy(first, 0, child, 0, length);
+      return;
+    }
+
+    int chosen = random.nextInt(numCycles);
+    int start = cycleStarts[chosen];
+    int size = cycleStarts[chosen + 1] - start;
+    for (int i = 0; i < size; i += 2) {
+      unlink(cycles[start + i], cycles[start + i + 1]);
+    }
+    for (int i = 1; i < size; i += 2) {
+      link(cycles[start + i], cycles[start + (i + 1) % size]);
+    }
+
+    while (label() > 1) {
+      join();
+    }
+    read(child);
+  }
+
+  private void prepare(IndexedGraph<?, ?> graph, int length) {
+    if (graph != this.graph) {
+      this.graph = graph;
+      this.neighbors = new NeighborLists(graph, NEIGHBORS);
+    }
+    if (length != this.length) {
+      this.length = length;
+      this.firstEdges = new int[2 * length];
+      this.secondEdges = new int[2 * length];
+      this.childEdges = new int[2 * length];
+      this.walk = new int[2 * length + 1];
+      this.evenStep = new int[length];
+      this.cycles = new int[2 * length];
+      this.cycleStarts = new int[length + 1];
+      this.subtour = new int[length];
+      this.subtourSize = new int[length];
+    }
+  }
+
+  private static void link(int[] tour, int[] edges) {
+    int length = tour.length;
+    for (int i = 0; i < length; ++i) {
+      int vertex = tour[i];
+      edges[2 * vertex] = tour[(i + length - 1) % length];
+      edges[2 * vertex + 1] = tour[(i + 1) % length];
+    }
+  }
+
+  /** Decompose the edges that only one parent has into AB-cycles, returning how many. */
+  private int findCycles(SplittableRandom random) {
+    // Shared edges can only form AB-cycles of two edges, which change nothing, so drop them.
+    for (int v = 0; v < length; ++v) {
+      for (int s = 0; s < 2; ++s) {
+        int u = firstEdges[2 * v + s];
+        if (u >= 0 && (secondEdges[2 * v] == u || secondEdges[2 * v + 1] == u)) {
+          remove(firstEdges, v, u);
+          remove(secondEdges, v, u);
+        }
+      }
+      evenStep[v] = -1;
+    }
+
+    int numCycles = 0;
+    int used = 0;
+    for (int start = 0; start < length; ++start) {
+      while (firstEdges[2 * start] >= 0 || firstEdges[2 * start + 1] >= 0) {
+        int steps = 0;
+        walk[0] = start;
+        evenStep[start] = 0;
+        int current = start;
+        while (true) {
+          // Even steps leave along an edge of the first parent, odd steps the second.
+          int[] edges = steps % 2 == 0 ? firstEdges : secondEdges;
+          int next = take(edges, current, random);
+          walk[++steps] = next;
+          current = next;
+          if (steps % 2 != 0) {
+            continue;
+          }
+          int previous = evenStep[current];
+          if (previous < 0) {
+            evenStep[current] = steps;
+            continue;
+          }
+
+          // The walk has come back to a vertex at an even step: cut off the loop as an AB-cycle.
+          cycleStarts[numCycles++] = used;
+          for (int i = previous; i < steps; ++i) {
+            cycles[used++] = walk[i];
+          }
+          for (int i = previous + 2; i < steps; i += 2) {
+            evenStep[walk[i]] = -1;
+          }
+          steps = previous;
+          if (steps == 0) {
+            evenStep[start] = -1;
+            break;
+          }
+        }
+      }
+    }
+    cycleStarts[numCycles] = used;
+    return numCycles;
+  }
+
+  /** Remove and return one of the remaining edges at a vertex, chosen at random. */
+  private static int take(int[] edges, int vertex, SplittableRandom random) {
+    int slot = 2 * vertex;
+    if (edges[slot] < 0 || (edges[slot + 1] >= 0 && random.nextBoolean())) {
+      ++slot;
+    }
+    int other = edges[slot];
+    remove(edges, vertex, other);
+    return other;
+  }
+
+  private static void remove(int[] edges, int a, int b) {
+    edges[edges[2 * a] == b ? 2 * a : 2 * a + 1] = -1;
+    edges[edges[2 * b] == a ? 2 * b : 2 * b + 1] = -1;
+  }
+
+  private void unlink(int a, int b) {
+    remove(childEdges, a, b);
+  }
+
+  private void link(int a, int b) {
+    childEdges[childEdges[2 * a] < 0 ? 2 * a : 2 * a + 1] = b;
+    childEdges[childEdges[2 * b] < 0 ? 2 * b : 2 * b + 1] = a;
+  }
+
+  private int next(int vertex, int previous) {
+    int next = childEdges[2 * vertex];
+    return next == previous ? childEdges[2 * vertex + 1] : next;
+  }
+
+  /** Number the subtours of the child, returning how many there are. */
+  private int label() {
+    for (int v = 0; v < length; ++v) {
+      subtour[v] = -1;
+    }
+    int count = 0;
+    for (int start = 0; start < length; ++start) {
+      if (subtour[start] >= 0) {
+        continue;
+      }
+      int size = 0;
+      int previous = childEdges[2 * start];
+      int current = start;
+      do {
+        subtour[current] = count;
+        ++size;
+        int next = next(current, previous);
+        previous = current;
+        current = next;
+      } while (current != start);
+      subtourSize[count++] = size;
+    }
+    numSubtours = count;
+    return count;
+  }
+
+  /** Join the smallest subtour to another by the cheapest exchange of two edges. */
+  private void join() {
+    int smallest = 0;
+    for (int s = 1; s < numSubtours; ++s) {
+      if (subtourSize[s] < subtourSize[smallest]) {
+        smallest = s;
+      }
+    }
+
+    bestDelta = Long.MAX_VALUE;
+    for (int u = 0; u < length; ++u) {
+      if (subtour[u] != smallest) {
+        continue;
+      }
+      for (int s = 0; s < 2; ++s) {
+        int nextU = childEdges[2 * u + s];
+        for (int r = 0; r < neighbors.count(); ++r) {
+          consider(u, nextU, neighbors.get(u, r), smallest);
+        }
+      }
+    }
+    if (bestDelta == Long.MAX_VALUE) {
+      // Every near neighbor is in the same subtour, so look further afield.
+      for (int u = 0; u < length; ++u) {
+        if (subtour[u] != smallest) {
+          continue;
+        }
+        for (int s = 0; s < 2; ++s) {
+          int nextU = childEdges[2 * u + s];
+          for (int v = 0; v < length; ++v) {
+            consider(u, nextU, v, smallest);
+          }
+        }
+      }
+    }
+
+    unlink(bestU, bestNextU);
+    unlink(bestV, bestNextV);
+    if (bestCrossed) {
+      link(bestU, bestNextV);
+      link(bestNextU, bestV);
+    } else {
+      link(bestU, bestV);
+      link(bestNextU, bestNextV);
+    }
+  }
+
+  private void consider(int u, int nextU, int v, int smallest) {
+    if (subtour[v] == smallest) {
+      return;
+    }
+    long removed = weight(u, nextU);
+    for (int s = 0; s < 2; ++s) {
+      int nextV = childEdges[2 * v + s];
+      long straight = weight(u, v) + weight(nextU, nextV) - removed - weight(v, nextV);
+      long crossed = weight(u, nextV) + weight(nextU, v) - removed - weight(v, nextV);
+      if (straight < bestDelta) {
+        record(straight, u, nextU, v, nextV, false);
+      }
+      if (crossed < bestDelta) {
+        record(crossed, u, nextU, v, nextV, true);
+      }
+    }
+  }
+
+  private void record(long delta, int u, int nextU, int v, int nextV, boolean crossed) {
+    bestDelta = delta;
+    bestU = u;
+    bestNextU = nextU;
+    bestV = v;
+    bestNextV = nextV;
+    bestCrossed = crossed;
+  }
+
+  /** Undirected weight of an edge, halved in each direction so that sums of two cannot overflow. */
+  private long weight(int a, int b) {
+    return (graph.getWeightAt(a, b) >> 1) + (graph.getWeightAt(b, a) >> 1);
+  }
+
+  /** Write the child, now a single cycle, as a tour in its cheaper direction. */
+  private void read(int[] child) {
+    int previous = childEdges[0];
+    int current = 0;
+    long forward = 0;
+    long backward = 0;
+    for (int i = 0; i < length; ++i) {
+      child[i] = current;
+      int next = next(current, previous);
+      forward = IndexedGraph.add(forward, graph.getWeightAt(current, next));
+      backward = IndexedGraph.add(backward, graph.getWeightAt(next, current));
+      previous = current;
+      current = next;
+    }
+    if (backward < forward) {
+      for (int i = 0, j = length - 1; i < j; ++i, --j) {
+        int tmp = child[i];
+        child[i] = child[j];
+        child[j] = tmp;
+      }
+    }
+  }
+}
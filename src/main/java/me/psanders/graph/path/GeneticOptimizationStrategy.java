@@ -3,13 +3,15 @@
 
 package me.psanders.graph.path;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 
 import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.IndexedGraphAdapter;
 
 /** Finds a "probably optimal" route through a complete graph using a genetic algorithm.
  *
@@ -21,11 +23,27 @@ import me.psanders.graph.Graph;
  * with the exceptions that we use permutation encoding rather than binary encoding and uniform
  * mutation rather than two-segment.
  *
+ * <p>By default children are only ever mutated copies of the best tenth of the previous
+ * generation. Given a <code>CrossoverOperator</code>, the strategy recombines instead: each child
+ * is, with probability <code>CROSSOVER</code>, the offspring of two parents picked by tournament
+ * selection, and otherwise a tournament winner with two of its vertices exchanged.
+ *
+ * <p>Given a pool, the strategy runs an island model instead: several populations evolve
+ * independently on the workers of the pool, and every <code>MIGRATION_INTERVAL</code> generations
+ * each island sends copies of its best tours to the next island in a ring, replacing that
+ * island's worst. All islands finish an interval before any tours move, and each island draws
+ * from its own stream split off the strategy's random, so a seeded run gives the same cycle no
+ * matter how the pool schedules the islands.
  */
 public class GeneticOptimizationStrategy<L, T extends Number>
     implements OptimizationStrategy<L, T> {
 
-  private Random random;
+  private SplittableRandom random;
+  private ForkJoinPool pool;
+  private int islands;
+  private Supplier<? extends CrossoverOperator> crossover;
+  private TourConstruction construction;
+  private long localSearchLimit;
 
   // DeJong, K.A. and Spears, W.M. "An Analysis of the Interacting Roles of Population Size and
   // Crossover in Genetic Algorithms," Proc. First Workshop Parallel Problem Solving from Nature,
@@ -39,73 +57,347 @@ public class GeneticOptimizationStrategy<L, T extends Number>
   static final double CROSSOVER = 0.6;
   static final int GENERATIONS = 100;
 
+  // Island model: how often the islands exchange tours, and how many each sends.
+  static final int MIGRATION_INTERVAL = 10;
+  static final int MIGRANTS = 2;
+
+  // Recombination: the number of tours that compete for each parent.
+  static final int TOURNAMENT = 3;
+
+  // Seeding: a tenth of each initial population comes from at most this many constructed tours.
+  static final int SEEDS = 10;
+
+  /** Construct a strategy that evolves a single population on this thread. */
   public GeneticOptimizationStrategy(Random random) {
+    this(random, null);
+  }
+
+  /** Construct a strategy that evolves a single population on this thread by recombination.
+   *
+   * @param crossover makes the operator for the population, for example
+   *     <code>EdgeAssemblyCrossover::new</code>; null to only mutate
+   */
+  public GeneticOptimizationStrategy(Random random,
+      Supplier<? extends CrossoverOperator> crossover) {
+    this.random = new SplittableRandom(random.nextLong());
+    this.pool = null;
+    this.islands = 1;
+    this.crossover = crossover;
+  }
+
+  /** Construct a strategy that evolves one island per worker of a pool. */
+  public GeneticOptimizationStrategy(SplittableRandom random, ForkJoinPool pool) {
+    this(random, pool, pool.getParallelism());
+  }
+
+  /** Construct a strategy that evolves the given number of islands on the workers of a pool. */
+  public GeneticOptimizationStrategy(SplittableRandom random, ForkJoinPool pool, int islands) {
+    this(random, pool, islands, null);
+  }
+
+  /** Construct a strategy that evolves islands on the workers of a pool by recombination.
+   *
+   * @param crossover makes one operator for each island; null to only mutate
+   */
+  public GeneticOptimizationStrategy(SplittableRandom random, ForkJoinPool pool, int islands,
+      Supplier<? extends CrossoverOperator> crossover) {
+    if (islands < 1) {
+      throw new IllegalArgumentException("At least one island is required, not " + islands);
+    }
     this.random = random;
+    this.pool = pool;
+    this.islands = islands;
+    this.crossover = crossover;
+  }
+
+  /** Seed a tenth of each initial population with constructed tours instead of random ones.
+   *
+   * <p>Up to <code>SEEDS</code> tours are built, from different random starting vertices, and the
+   * rest of that tenth are double-bridge variants of them. The population starts close to good
+   * tours without losing the variety that the random nine tenths provide.
+   *
+   * @return this strategy
+   */
+  public GeneticOptimizationStrategy<L, T> seededBy(TourConstruction construction) {
+    this.construction = construction;
+    return this;
+  }
+
+  /** Make the algorithm memetic: improve every child by a short local search before scoring it.
+   *
+   * <p>Each child gets a pass of the 2-opt and Or-opt moves of
+   * <code>LocalSearchOptimizationStrategy</code>, stopped after examining <code>limit</code>
+   * vertices. Children then start close to a local optimum, so far fewer generations are needed,
+   * at the price of more work in each. A limit of a few times the number of stops is usually
+   * enough for the pass to finish. The search is charged to the solve's budget, and stops when
+   * that runs out.
+   *
+   * @param limit The most vertices each child's search may examine, or 0 for no search
+   * @return this strategy
+   */
+  public GeneticOptimizationStrategy<L, T> memetic(long limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Local search limit must not be negative: " + limit);
+    }
+    this.localSearchLimit = limit;
+    return this;
   }
 
   /** Genetic algorithm to optimize a path through a complete graph.
+   *
+   * <p>The population is kept as vertex indices in a pair of preallocated int slabs (see
+   * <code>Population</code>), so evolving it allocates nothing; only the winner is turned back
+   * into a labeled Cycle.
    *
    * @return Cycle with a high probability of being optimal, depending on the parameters above
    */
   @Override
-  public Cycle getOptimalCycle(Graph<L, T> graph) {
-    int numNodes = graph.getNodes().size();
-    int batchSize = Math.max(numNodes * 2, POPULATION);
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph) {
+    return getOptimalCycle(graph, SolveBudget.unlimited());
+  }
+
+  /** Genetic algorithm that runs until its budget is spent, or every island has converged.
+   *
+   * <p>A budget that sets no limit of its own leaves the algorithm at <code>GENERATIONS</code>
+   * generations. Each scored child counts as one evaluation, as does each vertex a memetic search
+   * examines.
+   */
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph, SolveBudget budget) {
+    // Resolve labels to indices once so that scoring each species avoids hashing and unboxing.
+    IndexedGraph<L, T> indexed = IndexedGraphAdapter.of(graph);
+    int batchSize = Math.max(indexed.size() * 2, POPULATION);
+
+    // Memetic islands share neighbor lists, but each needs its own local search workspace.
+    NeighborLists neighbors = null;
+    if (localSearchLimit > 0) {
+      neighbors = new NeighborLists(indexed, LocalSearchOptimizationStrategy.NEIGHBORS);
+    }
+
+    // Every island gets a full population and its own random stream, split off in a fixed order.
+    Island[] ring = new Island[islands];
+    for (int i = 0; i < islands; ++i) {
+      ring[i] = new Island(indexed, new Population(indexed, batchSize), random.split(),
+          crossover == null ? null : crossover.get(), construction,
+          neighbors == null ? null : new LocalSearch(indexed, neighbors), localSearchLimit);
+    }
 
-    ArrayList<L> labels = new ArrayList();
-    labels.addAll(graph.getNodes());
-    Cycle start = new Cycle(graph, labels);
+    // Run genetic algorithm on the populations to evolve a fit species, migrating between runs.
+    // The first run always happens, since it creates the initial populations.
+    boolean capped = !budget.isBounded();
+    int generation = 0;
+    do {
+      int generations = MIGRATION_INTERVAL;
+      if (capped) {
+        generations = Math.min(generations, GENERATIONS - generation);
+      }
+      if (pool == null) {
+        ring[0].evolve(generations, budget);
+      } else {
+        evolveInParallel(ring, generations, budget);
+      }
+      migrate(ring);
+      generation += generations;
+    } while (!budget.isExhausted() && !(capped && generation >= GENERATIONS)
+        && !converged(ring, budget));
 
-    // Generate an initial population of random species.
-    Cycle[] paths = new Cycle[batchSize];
-    for (int i = 0; i < batchSize; ++i) {
-      List order = start.getOrder();
-      Collections.shuffle(order, this.random);
-      paths[i] = new Cycle(graph, order);
+    Island best = ring[0];
+    for (Island island : ring) {
+      if (island.population.getCost(0) < best.population.getCost(0)) {
+        best = island;
+      }
     }
+    return best.population.getBest(indexed);
+  }
 
-    // Run genetic algorithm on the population to evolve a fit species.
-    paths = evolve(graph, paths);
+  private static boolean converged(Island[] ring, SolveBudget budget) {
+    for (Island island : ring) {
+      if (!budget.isStalled(island.stalled)) {
+        return false;
+      }
+    }
+    return true;
+  }
 
-    return paths[0];
+  private void evolveInParallel(Island[] ring, int generations, SolveBudget budget) {
+    ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[ring.length];
+    for (int i = 0; i < ring.length; ++i) {
+      Island island = ring[i];
+      tasks[i] = pool.submit(() -> island.evolve(generations, budget));
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
   }
 
-  private Cycle[] evolve(Graph<L, T> graph, Cycle[] paths) {
-    int numNodes = graph.getNodes().size();
-    int batchSize = Math.max(numNodes * 2, POPULATION);
-    int numParents = batchSize / 10;
+  /** Send the best tours of every island to the next one in the ring, all at once. */
+  private static void migrate(Island[] ring) {
+    if (ring.length < 2) {
+      return;
+    }
+    int migrants = Math.min(MIGRANTS, ring[0].population.size());
+    for (Island island : ring) {
+      island.population.emigrate(island.outbox, migrants);
+    }
+    for (int i = 0; i < ring.length; ++i) {
+      Island next = ring[(i + 1) % ring.length];
+      next.population.immigrate(ring[i].outbox, migrants);
+      if (next.population.getCost(0) < next.bestCost) {
+        next.bestCost = next.population.getCost(0);
+        next.stalled = 0;
+      }
+    }
+  }
+
+  /** One population and the random stream that drives it. Only one thread uses it at a time. */
+  private static final class Island {
+
+    private final IndexedGraph<?, ?> graph;
+    private final Population population;
+    private final SplittableRandom random;
+    private final CrossoverOperator crossover;
+    private final TourConstruction construction;
+    private final LocalSearch localSearch;
+    private final long localSearchLimit;
+    private final int[] outbox;
+    private boolean started;
+    private int generation;
+
+    // The island's best cost so far, and the generations since it last improved.
+    private long bestCost;
+    private int stalled;
+
+    // Parents and child for recombination.
+    private final int[] first;
+    private final int[] second;
+    private final int[] child;
+
+    Island(IndexedGraph<?, ?> graph, Population population, SplittableRandom random,
+        CrossoverOperator crossover, TourConstruction construction, LocalSearch localSearch,
+        long localSearchLimit) {
+      this.graph = graph;
+      this.population = population;
+      this.random = random;
+      this.crossover = crossover;
+      this.construction = construction;
+      this.localSearch = localSearch;
+      this.localSearchLimit = localSearchLimit;
+      this.outbox = new int[MIGRANTS * population.length()];
+      this.first = new int[population.length()];
+      this.second = new int[population.length()];
+      this.child = new int[population.length()];
+    }
+
+    void evolve(int generations, SolveBudget budget) {
+      // Generate an initial population of random species on the island's first run.
+      if (!started) {
+        population.shuffle(random);
+        if (construction != null) {
+          seed();
+        }
+        budget.charge(population.size());
+        bestCost = population.getCost(0);
+        budget.improved(bestCost, 0, () -> population.getBest(graph));
+        started = true;
+      }
+
+      int numNodes = population.length();
+      int batchSize = population.size();
+      int numParents = batchSize / 10;
 
-    // Number of swaps such that CROSSOVER is the probability of an element remaining unmoved.
-    // This does not guarantee an exact crossover rate, but the average will be correct.
-    int swaps = (int) (Math.log(CROSSOVER) / Math.log(1.0D - (2.0D / (double) (numNodes))));
+      // Number of swaps such that CROSSOVER is the probability of an element remaining unmoved.
+      // This does not guarantee an exact crossover rate, but the average will be correct.
+      int swaps = (int) (Math.log(CROSSOVER) / Math.log(1.0D - (2.0D / (double) (numNodes))));
 
-    for (int i = 0; i < GENERATIONS; ++i) {
+      for (int i = 0; i < generations; ++i) {
+        if (budget.isExhausted() || budget.isStalled(stalled)) {
+          return;
+        }
+
+        // Start off with the top `numParents` best paths from the previous round
+        for (int j = 0; j < numParents; ++j) {
+          population.copyToNext(j, j);
+        }
 
-      // Start off with the top `numParents` best paths from the previous round
-      Path[] best = Arrays.copyOfRange(paths, 0, numParents);
-      System.arraycopy(best, 0, paths, 0, best.length);
+        // NOTE: starts after the end of the copy operation above
+        for (int j = numParents; j < batchSize; ++j) {
+          if (crossover != null) {
+            breed(j);
+          } else {
+            // Mutate the best old paths to create the new paths
+            // We mod with `numParents` to achieve a round robin, repeatedly using each parent.
+            population.copyToNext(j % numParents, j);
 
-      // Mutate the best old paths to create the new paths
-      // NOTE: starts after the end of the copy operation above
-      for (int j = best.length; j < batchSize; ++j) {
-        // We mod with `numParents` to achieve a round robin, repeatedly using each parent in turn.
-        List<String> order = new ArrayList(best[j % numParents].getOrder());
+            // Swap enough times such that we probably have 60% crossover, as per DeJong & Spears.
+            for (int k = 0; k < swaps; ++k) {
+              int a = random.nextInt(numNodes);
+              int b = random.nextInt(numNodes);
 
-        // Swap enough times such that we probably have 60% crossover, as per DeJong & Spears above.
-        for (int k = 0; k < swaps; ++k) {
-          int a = random.nextInt(order.size());
-          int b = random.nextInt(order.size());
+              population.swapInNext(j, a, b);
+            }
+          }
 
-          Collections.swap(order, a, b);
+          if (localSearch != null) {
+            population.improveNext(j, localSearch, budget, localSearchLimit);
+          }
         }
 
-        paths[j] = new Cycle(graph, order);
+        // Rank the new generation such that the best paths come first
+        population.advance();
+        budget.charge(batchSize - numParents);
+        ++generation;
+
+        if (population.getCost(0) < bestCost) {
+          bestCost = population.getCost(0);
+          stalled = 0;
+          budget.improved(bestCost, generation, () -> population.getBest(graph));
+        } else {
+          ++stalled;
+        }
       }
+    }
 
-      // Sort such that best paths are at the beginning of the list
-      Arrays.sort(paths);
+    /** Replace the worst tenth of the random initial population with constructed tours. */
+    private void seed() {
+      int length = population.length();
+      int count = population.size() / 10;
+      int built = Math.min(SEEDS, length);
+      if (count == 0 || built == 0) {
+        return;
+      }
+      int[] seeds = new int[count * length];
+      for (int s = 0; s < count; ++s) {
+        if (s < built) {
+          int[] tour = construction.build(graph, random.nextInt(length));
+          System.arraycopy(tour, 0, seeds, s * length, length);
+        } else {
+          System.arraycopy(seeds, (s % built) * length, seeds, s * length, length);
+          Tours.doubleBridge(seeds, s * length, length, random);
+        }
+      }
+      population.immigrate(seeds, count);
     }
 
-    return paths;
+    /** Fill a slot of the next generation by recombination or, failing the coin toss, mutation. */
+    private void breed(int slot) {
+      if (random.nextDouble() < CROSSOVER) {
+        population.copyTour(select(), first);
+        population.copyTour(select(), second);
+        crossover.recombine(graph, first, second, child, random);
+        population.setNext(slot, child);
+      } else {
+        population.copyToNext(select(), slot);
+        population.swapInNext(slot, random.nextInt(child.length), random.nextInt(child.length));
+      }
+    }
+
+    /** Tournament selection: the best ranked of a few tours drawn at random. */
+    private int select() {
+      int best = random.nextInt(population.size());
+      for (int k = 1; k < TOURNAMENT; ++k) {
+        best = Math.min(best, random.nextInt(population.size()));
+      }
+      return best;
+    }
   }
-}
\ No newline at end of file
+}
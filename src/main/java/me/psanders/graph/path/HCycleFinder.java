@@ -3,22 +3,68 @@
 
 package me.psanders.graph.path;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
 import me.psanders.graph.Graph;
 
 public class HCycleFinder {
 
   private Graph<String, Long> graph;
-  private OptimizationStrategy strategy;
+  private OptimizationStrategy<String, Long> strategy;
 
-  public HCycleFinder(Graph<String, Long> graph, OptimizationStrategy strategy) {
+  public HCycleFinder(Graph<String, Long> graph, OptimizationStrategy<String, Long> strategy) {
     this.graph = graph;
     this.strategy = strategy;
   }
 
-  public Cycle getOptimalCycle() {
+  public Cycle<String, Long> getOptimalCycle() {
     if (graph == null) {
       return null;
     }
     return strategy.getOptimalCycle(this.graph);
   }
+
+  /** Returns the best cycle found before the budget runs out, if the strategy honors budgets. */
+  public Cycle<String, Long> getOptimalCycle(SolveBudget budget) {
+    if (graph == null) {
+      return null;
+    }
+    return strategy.getOptimalCycle(this.graph, budget);
+  }
+
+  /** Start the search on the common pool and return at once. See the overload below. */
+  public CompletableFuture<Cycle<String, Long>> getOptimalCycleAsync(SolveBudget budget) {
+    return getOptimalCycleAsync(budget, ForkJoinPool.commonPool());
+  }
+
+  /** Start the search on an executor and return at once.
+   *
+   * <p>Each better cycle found along the way goes to the budget's <code>IncumbentListener</code>,
+   * if it has one, so a caller can show a good route quickly and refine it. The future completes
+   * with the final cycle, which is also reported if the strategy did not report it itself.
+   *
+   * <p>There are two ways to stop early. Cancelling the budget ends the search and completes the
+   * future with the best cycle found so far, for when the route is good enough. Cancelling the
+   * future ends the search and discards its result.
+   */
+  public CompletableFuture<Cycle<String, Long>> getOptimalCycleAsync(SolveBudget budget,
+      Executor executor) {
+    if (graph == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Cycle<String, Long>> future = CompletableFuture.supplyAsync(() -> {
+      Cycle<String, Long> cycle = strategy.getOptimalCycle(this.graph, budget);
+      budget.improved(cycle.getCost(), 0, () -> cycle);
+      return cycle;
+    }, executor);
+    future.whenComplete((cycle, error) -> {
+      if (error instanceof CancellationException) {
+        budget.cancel();
+      }
+    });
+    return future;
+  }
 }
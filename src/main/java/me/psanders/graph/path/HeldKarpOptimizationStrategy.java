@@ -0,0 +1,195 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-17
+
+package me.psanders.graph.path;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.IndexedGraphAdapter;
+
+/** Finds the cheapest Hamiltonian Cycle through a complete graph by dynamic programming.
+ *
+ * <p>This is the Held-Karp algorithm. We fix vertex 0 as the start of the cycle, and for every
+ * subset S of the remaining vertices and every j in S, compute the cheapest path that leaves
+ * vertex 0, visits exactly S and ends at j. That takes O(2^n * n^2) time and O(2^n * n) memory,
+ * so unlike <code>BruteForceOptimizationStrategy</code> it is practical up to about 20 vertices.
+ *
+ * <p>Subsets of the same size depend only on subsets one smaller, so each size is filled in
+ * parallel on a fork-join pool once the previous size is finished.
+ */
+public class HeldKarpOptimizationStrategy<L, T extends Number>
+    implements OptimizationStrategy<L, T> {
+
+  // 2^19 subsets * 19 end points * 8 bytes is about 80MB; each vertex beyond this doubles that.
+  static final int MAX_NODES = 20;
+
+  // Below this many subsets, a layer task fills its subsets itself rather than splitting further.
+  private static final int THRESHOLD = 1024;
+
+  private ForkJoinPool pool;
+
+  public HeldKarpOptimizationStrategy() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public HeldKarpOptimizationStrategy(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /** Return the cheapest Hamiltonian Cycle through a complete graph.
+   *
+   * @throws IllegalArgumentException if the graph has more than MAX_NODES vertices
+   */
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph) {
+    IndexedGraph<L, T> indexed = IndexedGraphAdapter.of(graph);
+    int size = indexed.size();
+    if (size > MAX_NODES) {
+      throw new IllegalArgumentException("Held-Karp needs 2^(n-1) * (n-1) table entries, which is "
+          + "too many for " + size + " nodes. The limit is " + MAX_NODES + ".");
+    }
+
+    int[] tour = new int[size];
+    for (int i = 0; i < size; ++i) {
+      tour[i] = i;
+    }
+    if (size > 3) {
+      new Table(indexed).solve(tour);
+    } else if (size == 3 && cost(indexed, 0, 2, 1) < cost(indexed, 0, 1, 2)) {
+      // With three vertices the only choice is the direction, which matters if asymmetric.
+      tour[1] = 2;
+      tour[2] = 1;
+    }
+    return new Cycle<L, T>(indexed, tour);
+  }
+
+  private long cost(IndexedGraph<L, T> graph, int a, int b, int c) {
+    return add(add(graph.getWeightAt(a, b), graph.getWeightAt(b, c)), graph.getWeightAt(c, a));
+  }
+
+  private static long add(long a, long b) {
+    return IndexedGraph.add(a, b);
+  }
+
+  /** The dynamic programming table for one graph.
+   *
+   * <p>Vertex v > 0 of the graph is bit v - 1 of a subset. The cost of the cheapest path from
+   * vertex 0 through subset S ending at the vertex of bit j is <code>cost[S * bits + j]</code>.
+   */
+  private class Table {
+
+    private final IndexedGraph<L, T> graph;
+    private final int bits;
+    private final long[] cost;
+
+    // Every subset, ordered by the number of vertices in it. Subsets of size k are found between
+    // layerStart[k] and layerStart[k + 1].
+    private final int[] subsets;
+    private final int[] layerStart;
+
+    Table(IndexedGraph<L, T> graph) {
+      this.graph = graph;
+      this.bits = graph.size() - 1;
+      this.cost = new long[(1 << bits) * bits];
+
+      // Counting sort of the subsets by size.
+      this.layerStart = new int[bits + 2];
+      for (int subset = 0; subset < 1 << bits; ++subset) {
+        ++layerStart[Integer.bitCount(subset) + 1];
+      }
+      for (int k = 1; k < layerStart.length; ++k) {
+        layerStart[k] += layerStart[k - 1];
+      }
+      this.subsets = new int[1 << bits];
+      int[] next = layerStart.clone();
+      for (int subset = 0; subset < 1 << bits; ++subset) {
+        subsets[next[Integer.bitCount(subset)]++] = subset;
+      }
+    }
+
+    /** Fill the table and write the cheapest cycle into the tour, starting at vertex 0. */
+    void solve(int[] tour) {
+      for (int j = 0; j < bits; ++j) {
+        cost[(1 << j) * bits + j] = graph.getWeightAt(0, j + 1);
+      }
+      for (int k = 2; k <= bits; ++k) {
+        pool.invoke(new Layer(layerStart[k], layerStart[k + 1]));
+      }
+
+      // Close the cycle, then walk backwards through the table to recover the path.
+      int full = (1 << bits) - 1;
+      int last = cheapestEnd(full, 0);
+      for (int subset = full, position = bits; position > 0; --position) {
+        tour[position] = last + 1;
+        int previous = subset & ~(1 << last);
+        if (previous != 0) {
+          last = cheapestEnd(previous, last + 1);
+        }
+        subset = previous;
+      }
+      tour[0] = 0;
+    }
+
+    /** Return the bit of the end point through which a path over the subset best reaches V. */
+    private int cheapestEnd(int subset, int vertex) {
+      int best = -1;
+      long bestCost = Long.MAX_VALUE;
+      for (int i = 0; i < bits; ++i) {
+        if ((subset & (1 << i)) != 0) {
+          long candidate = add(cost[subset * bits + i], graph.getWeightAt(i + 1, vertex));
+          if (best < 0 || candidate < bestCost) {
+            best = i;
+            bestCost = candidate;
+          }
+        }
+      }
+      return best;
+    }
+
+    /** Fill the entries for one subset from the entries of the subsets one smaller. */
+    private void fill(int subset) {
+      for (int j = 0; j < bits; ++j) {
+        if ((subset & (1 << j)) == 0) {
+          continue;
+        }
+        int previous = subset & ~(1 << j);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < bits; ++i) {
+          if ((previous & (1 << i)) != 0) {
+            best = Math.min(best, add(cost[previous * bits + i], graph.getWeightAt(i + 1, j + 1)));
+          }
+        }
+        cost[subset * bits + j] = best;
+      }
+    }
+
+    /** Fills the subsets between two positions of <code>subsets</code>, all of one size. */
+    private class Layer extends RecursiveAction {
+
+      private static final long serialVersionUID = 1L;
+
+      private final int from;
+      private final int to;
+
+      Layer(int from, int to) {
+        this.from = from;
+        this.to = to;
+      }
+
+      @Override
+      protected void compute() {
+        if (to - from <= THRESHOLD) {
+          for (int i = from; i < to; ++i) {
+            fill(subsets[i]);
+          }
+        } else {
+          int mid = (from + to) >>> 1;
+          invokeAll(new Layer(from, mid), new Layer(mid, to));
+        }
+      }
+    }
+  }
+}
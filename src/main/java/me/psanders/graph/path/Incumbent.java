@@ -0,0 +1,60 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-22
+
+package me.psanders.graph.path;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/** The best tour found so far by a search, shared between threads without locking.
+ *
+ * <p>The cost and tour are held together in an immutable entry that is replaced by
+ * compare-and-set, so readers always see a tour together with its own cost.
+ */
+final class Incumbent {
+
+  private static final class Entry {
+    final long cost;
+    final int[] tour;
+
+    Entry(long cost, int[] tour) {
+      this.cost = cost;
+      this.tour = tour;
+    }
+  }
+
+  private final AtomicReference<Entry> best;
+
+  /** Start from the given tour, which is copied. */
+  Incumbent(long cost, int[] tour) {
+    this.best = new AtomicReference<Entry>(new Entry(cost, tour.clone()));
+  }
+
+  /** Returns the cost of the best tour so far. */
+  long getCost() {
+    return best.get().cost;
+  }
+
+  /** Returns a copy of the best tour so far. */
+  int[] getTour() {
+    return best.get().tour.clone();
+  }
+
+  /** Replace the best tour with the one given if it is cheaper, copying it.
+   *
+   * @return Whether the tour given became the best
+   */
+  boolean offer(long cost, int[] tour) {
+    Entry current = best.get();
+    Entry candidate = null;
+    while (cost < current.cost) {
+      if (candidate == null) {
+        candidate = new Entry(cost, tour.clone());
+      }
+      if (best.compareAndSet(current, candidate)) {
+        return true;
+      }
+      current = best.get();
+    }
+    return false;
+  }
+}
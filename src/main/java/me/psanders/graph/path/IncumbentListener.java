@@ -0,0 +1,28 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-31
+
+package me.psanders.graph.path;
+
+/** Hears about each better cycle a search finds while it is still running.
+ *
+ * <p>Register one with <code>SolveBudget.Builder.listener</code>. Each cycle reported is cheaper
+ * than every cycle reported before it in the same solve, so a caller can show the first as soon
+ * as it arrives and replace it as better ones come in.
+ *
+ * <p>The listener is called on whichever thread found the cycle, but never by two threads at
+ * once. The search waits for it to return, so it should hand the cycle off rather than do slow
+ * work itself.
+ */
+public interface IncumbentListener {
+
+  /** Called with a cycle cheaper than any reported before it.
+   *
+   * @param cycle The new best cycle
+   * @param cost The cost of that cycle
+   * @param generation How far the search that found it had got: a generation of the genetic
+   *     algorithm, an epoch of simulated annealing, an iteration of the ant colony, or 0 for
+   *     searches that have no such steps
+   * @param elapsedMillis Milliseconds since the budget was built
+   */
+  void improved(Cycle<?, ?> cycle, long cost, int generation, long elapsedMillis);
+}
@@ -0,0 +1,380 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-15
+
+package me.psanders.graph.path;
+
+import java.util.Arrays;
+
+import me.psanders.graph.IndexedGraph;
+
+/** Improves tours with 2-opt and Or-opt moves drawn from neighbor lists.
+ *
+ * <p>Only moves that introduce an edge between a vertex and one of its nearest neighbors are
+ * considered, and a queue of "don't-look bits" restricts each pass to vertices whose surroundings
+ * changed since they were last examined. A pass over the tour therefore costs O(n * k) move
+ * evaluations rather than O(n^2).
+ *
+ * <p>The graph may be asymmetric. Reversing a segment in a 2-opt move changes the direction of
+ * every edge inside it, so we keep prefix sums of the tour's cost in both directions, which price
+ * any reversed segment in O(1). Or-opt moves relocate segments of up to three vertices without
+ * reversing them.
+ *
+ * <p>Moves that would add, remove or reverse an <code>UNREACHABLE</code> edge are never taken.
+ * Sums of such edges saturate, so their changes are not exact, and a search that trusted them
+ * could take a worsening move for an improvement and cycle forever. The prefix sums leave those
+ * edges out and count them instead, so that a reversed segment holding one is recognized.
+ *
+ * <p>All working storage is taken up front, from a <code>Workspace</code> if given one, so an
+ * instance may be reused for many tours of the same graph, but not by more than one thread at a
+ * time.
+ */
+final class LocalSearch {
+
+  private static final int MAX_SEGMENT = 3;
+
+  // Vertices examined between checks of the budget.
+  private static final int CHECK_INTERVAL = 64;
+
+  private final IndexedGraph<?, ?> graph;
+  private final NeighborLists neighbors;
+  private final int size;
+
+  private int[] tour;
+  private int[] scratch;
+  private final int[] pos;
+
+  // forward[k] is the cost of walking the tour from position 0 to position k, and backward[k] the
+  // cost of walking the same vertices from position k back to position 0, both leaving out
+  // unreachable edges. forwardGaps[k] and backwardGaps[k] count the edges left out.
+  private final long[] forward;
+  private final long[] backward;
+  private final int[] forwardGaps;
+  private final int[] backwardGaps;
+
+  // Vertices whose don't-look bit is clear, in the order they will be examined.
+  private final int[] queue;
+  private final boolean[] queued;
+  private int head;
+  private int queueLength;
+
+  LocalSearch(IndexedGraph<?, ?> graph, NeighborLists neighbors) {
+    this(graph, neighbors, new Workspace());
+  }
+
+  /** Construct a search whose arrays, taken from a workspace, are valid until it is next reset. */
+  LocalSearch(IndexedGraph<?, ?> graph, NeighborLists neighbors, Workspace workspace) {
+    this.graph = graph;
+    this.neighbors = neighbors;
+    this.size = graph.size();
+    this.tour = workspace.ints(size);
+    this.scratch = workspace.ints(size);
+    this.pos = workspace.ints(size);
+    this.forward = workspace.longs(size);
+    this.backward = workspace.longs(size);
+    this.forwardGaps = workspace.ints(size);
+    this.backwardGaps = workspace.ints(size);
+    this.queue = workspace.ints(size);
+    this.queued = workspace.booleans(size);
+  }
+
+  /** Improve a tour in place until no candidate move makes it any cheaper.
+   *
+   * @param order A permutation of the graph's vertex indices
+   * @return The change in the cost of the tour, which is never positive
+   */
+  long improve(int[] order) {
+    return improve(order, null);
+  }
+
+  /** Improve a tour in place until no candidate move helps or the budget runs out.
+   *
+   * <p>Each vertex examined counts as one evaluation.
+   *
+   * @param order A permutation of the graph's vertex indices
+   * @param budget Limits on the search, or null for none
+   * @return The change in the cost of the tour, which is never positive
+   */
+  long improve(int[] order, SolveBudget budget) {
+    return improve(order, 0, budget, Long.MAX_VALUE);
+  }
+
+  /** Improve one of the tours in a larger array in place, stopping early if the budget runs out
+   * or <code>limit</code> vertices have been examined.
+   *
+   * @param tours An array holding a permutation of the graph's vertex indices at an offset
+   * @param budget Limits on the search, or null for none
+   * @param limit The most vertices to examine
+   * @return The change in the cost of the tour, which is never positive
+   */
+  long improve(int[] tours, int offset, SolveBudget budget, long limit) {
+    if (size < 3) {
+      return 0;
+    }
+    System.arraycopy(tours, offset, tour, 0, size);
+    reindex();
+
+    // A search stopped early leaves vertices marked as queued.
+    Arrays.fill(queued, 0, size, false);
+    head = 0;
+    queueLength = 0;
+    for (int i = 0; i < size; ++i) {
+      push(tour[i]);
+    }
+
+    long delta = 0;
+    long total = 0;
+    int examined = 0;
+    while (queueLength > 0 && total++ < limit) {
+      if (budget != null && ++examined == CHECK_INTERVAL) {
+        budget.charge(examined);
+        examined = 0;
+        if (budget.isExhausted()) {
+          break;
+        }
+      }
+      int vertex = poll();
+      long change = improveAround(vertex);
+      if (change < 0) {
+        delta += change;
+        push(vertex);
+      }
+    }
+
+    if (budget != null) {
+      budget.charge(examined);
+    }
+    System.arraycopy(tour, 0, tours, offset, size);
+    return delta;
+  }
+
+  /** Apply the first improving move found near a vertex, returning its change in cost. */
+  private long improveAround(int vertex) {
+    for (int r = 0; r < neighbors.count(); ++r) {
+      int other = neighbors.get(vertex, r);
+
+      // Introduce the edge (vertex, other) with the new tour leaving through vertex...
+      long change = tryTwoOpt(vertex, other);
+      if (change < 0) {
+        return change;
+      }
+      // ...or with the new tour arriving through vertex's old predecessor.
+      change = tryTwoOpt(pred(vertex), pred(other));
+      if (change < 0) {
+        return change;
+      }
+    }
+
+    for (int length = 1; length <= MAX_SEGMENT && length <= size - 2; ++length) {
+      long change = tryOrOpt(pos[vertex], length);
+      if (change < 0) {
+        return change;
+      }
+    }
+    return 0;
+  }
+
+  /** Replace the edges leaving A and B with (A, B) and (succ A, succ B) if that is cheaper.
+   *
+   * <p>This reverses the part of the tour from succ A to B.
+   */
+  private long tryTwoOpt(int a, int b) {
+    int aNext = succ(a);
+    int bNext = succ(b);
+    if (a == b || aNext == b) {
+      return 0;
+    }
+
+    long added = w(a, b);
+    long addedNext = w(aNext, bNext);
+    long removed = w(a, aNext);
+    long removedNext = w(b, bNext);
+    if (!reachable(added) || !reachable(addedNext) || !reachable(removed)
+        || !reachable(removedNext) || gaps(pos[aNext], pos[b]) > 0) {
+      return 0;
+    }
+    long change = added + addedNext - removed - removedNext
+        + backwardCost(pos[aNext], pos[b]) - forwardCost(pos[aNext], pos[b]);
+    if (change >= 0) {
+      return 0;
+    }
+
+    // Reverse the segment in place, walking inwards from both ends around the cycle.
+    int length = (pos[b] - pos[aNext] + size) % size + 1;
+    for (int i = pos[aNext], j = pos[b], k = 0; k < length / 2; ++k) {
+      int tmp = tour[i];
+      tour[i] = tour[j];
+      tour[j] = tmp;
+      i = (i + 1) % size;
+      j = (j + size - 1) % size;
+    }
+    reindex();
+
+    push(a);
+    push(aNext);
+    push(b);
+    push(bNext);
+    return change;
+  }
+
+  /** Move the segment of the given length starting at the given position if that is cheaper.
+   *
+   * <p>The segment is tried after each neighbor of its first vertex and before each neighbor of
+   * its last vertex, keeping its direction.
+   */
+  private long tryOrOpt(int start, int length) {
+    int first = tour[start];
+    int last = tour[(start + length - 1) % size];
+    int before = tour[(start + size - 1) % size];
+    int after = tour[(start + length) % size];
+    long removed = insertionCost(before, first, last, after);
+    if (!reachable(removed)) {
+      return 0;
+    }
+
+    for (int r = 0; r < neighbors.count(); ++r) {
+      // Insert between a neighbor of the first vertex and its successor...
+      int u = neighbors.get(first, r);
+      if (u != before && !inSegment(u, start, length)) {
+        long change = insertionCost(u, first, last, succ(u)) - removed;
+        if (change < 0) {
+          return moveSegment(start, length, u, change);
+        }
+      }
+
+      // ...or between a neighbor of the last vertex and its predecessor.
+      int v = neighbors.get(last, r);
+      if (v != after && !inSegment(v, start, length)) {
+        u = pred(v);
+        long change = insertionCost(u, first, last, v) - removed;
+        if (change < 0) {
+          return moveSegment(start, length, u, change);
+        }
+      }
+    }
+    return 0;
+  }
+
+  /** Returns the cost of putting the segment from FIRST to LAST between U and V, or UNREACHABLE
+   * if any of the three edges involved is unreachable.
+   */
+  private long insertionCost(int u, int first, int last, int v) {
+    long into = w(u, first);
+    long out = w(last, v);
+    long bridged = w(u, v);
+    if (!reachable(into) || !reachable(out) || !reachable(bridged)) {
+      return IndexedGraph.UNREACHABLE;
+    }
+    return into + out - bridged;
+  }
+
+  /** Rebuild the tour with the segment at the given position moved to just after vertex U. */
+  private long moveSegment(int start, int length, int u, long change) {
+    int before = tour[(start + size - 1) % size];
+    int after = tour[(start + length) % size];
+    int uNext = succ(u);
+
+    int n = 0;
+    for (int i = 0; i < size - length; ++i) {
+      int vertex = tour[(start + length + i) % size];
+      scratch[n++] = vertex;
+      if (vertex == u) {
+        for (int j = 0; j < length; ++j) {
+          scratch[n++] = tour[(start + j) % size];
+        }
+      }
+    }
+    int[] tmp = tour;
+    tour = scratch;
+    scratch = tmp;
+    reindex();
+
+    push(before);
+    push(after);
+    push(tour[(pos[u] + 1) % size]);
+    push(tour[(pos[u] + length) % size]);
+    push(u);
+    push(uNext);
+    return change;
+  }
+
+  private boolean inSegment(int vertex, int start, int length) {
+    return (pos[vertex] - start + size) % size < length;
+  }
+
+  /** Recompute the positions and prefix sums after the tour has been rearranged. */
+  private void reindex() {
+    pos[tour[0]] = 0;
+    forward[0] = 0;
+    backward[0] = 0;
+    forwardGaps[0] = 0;
+    backwardGaps[0] = 0;
+    for (int i = 1; i < size; ++i) {
+      pos[tour[i]] = i;
+      long ahead = w(tour[i - 1], tour[i]);
+      long back = w(tour[i], tour[i - 1]);
+      forward[i] = IndexedGraph.add(forward[i - 1], reachable(ahead) ? ahead : 0);
+      backward[i] = IndexedGraph.add(backward[i - 1], reachable(back) ? back : 0);
+      forwardGaps[i] = forwardGaps[i - 1] + (reachable(ahead) ? 0 : 1);
+      backwardGaps[i] = backwardGaps[i - 1] + (reachable(back) ? 0 : 1);
+    }
+  }
+
+  /** Number of unreachable edges walking from position I to position J in either direction. */
+  private int gaps(int i, int j) {
+    if (i <= j) {
+      return forwardGaps[j] - forwardGaps[i] + backwardGaps[j] - backwardGaps[i];
+    }
+    int closing = (reachable(w(tour[size - 1], tour[0])) ? 0 : 1)
+        + (reachable(w(tour[0], tour[size - 1])) ? 0 : 1);
+    return forwardGaps[size - 1] - forwardGaps[i] + forwardGaps[j]
+        + backwardGaps[size - 1] - backwardGaps[i] + backwardGaps[j] + closing;
+  }
+
+  /** Cost of walking the tour from position I forwards to position J, wrapping if needed. */
+  private long forwardCost(int i, int j) {
+    if (i <= j) {
+      return forward[j] - forward[i];
+    }
+    return forward[size - 1] - forward[i] + w(tour[size - 1], tour[0]) + forward[j];
+  }
+
+  /** Cost of walking the same vertices as <code>forwardCost</code>, but from J back to I. */
+  private long backwardCost(int i, int j) {
+    if (i <= j) {
+      return backward[j] - backward[i];
+    }
+    return backward[size - 1] - backward[i] + w(tour[0], tour[size - 1]) + backward[j];
+  }
+
+  private int succ(int vertex) {
+    return tour[(pos[vertex] + 1) % size];
+  }
+
+  private int pred(int vertex) {
+    return tour[(pos[vertex] + size - 1) % size];
+  }
+
+  private long w(int from, int to) {
+    return Math.min(graph.getWeightAt(from, to), IndexedGraph.UNREACHABLE);
+  }
+
+  private static boolean reachable(long weight) {
+    return weight < IndexedGraph.UNREACHABLE;
+  }
+
+  private void push(int vertex) {
+    if (!queued[vertex]) {
+      queued[vertex] = true;
+      queue[(head + queueLength) % size] = vertex;
+      ++queueLength;
+    }
+  }
+
+  private int poll() {
+    int vertex = queue[head];
+    head = (head + 1) % size;
+    --queueLength;
+    queued[vertex] = false;
+    return vertex;
+  }
+}
@@ -0,0 +1,73 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-15
+
+package me.psanders.graph.path;
+
+import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.IndexedGraphAdapter;
+
+/** Finds a locally optimal route through a complete graph with 2-opt and Or-opt moves.
+ *
+ * <p>We start from a constructed tour, nearest neighbor unless told otherwise, and repeatedly apply
+ * improving moves until none of the moves on the neighbor lists helps. See <code>LocalSearch</code>
+ * for the details. The result is usually within a few percent of optimal and takes milliseconds
+ * for a few hundred stops, far less than the genetic algorithm, but it is not guaranteed to be
+ * optimal.
+ */
+public class LocalSearchOptimizationStrategy<L, T extends Number>
+    implements OptimizationStrategy<L, T> {
+
+  // Johnson & McGeoch report that lists of 10 to 20 neighbors lose almost nothing in tour quality
+  // against the full O(n^2) neighborhood.
+  static final int NEIGHBORS = 10;
+
+  private int numNeighbors;
+  private TourConstruction construction;
+
+  public LocalSearchOptimizationStrategy() {
+    this(NEIGHBORS);
+  }
+
+  /** Construct a strategy that considers the given number of nearest neighbors for each stop. */
+  public LocalSearchOptimizationStrategy(int numNeighbors) {
+    this(numNeighbors, TourConstructions.NEAREST_NEIGHBOR);
+  }
+
+  /** Construct a strategy that improves the tour built by the given heuristic. */
+  public LocalSearchOptimizationStrategy(int numNeighbors, TourConstruction construction) {
+    this.numNeighbors = numNeighbors;
+    this.construction = construction;
+  }
+
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph) {
+    return getOptimalCycle(graph, null);
+  }
+
+  /** Returns the tour reached when no move helps any more or the budget runs out, whichever is
+   * first. The starting tour is always built in full.
+   */
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph, SolveBudget budget) {
+    return getOptimalCycle(graph, budget, new Workspace());
+  }
+
+  /** As above, with the neighbor lists and the search's arrays taken from the workspace. */
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph, SolveBudget budget,
+      Workspace workspace) {
+    IndexedGraph<L, T> indexed = IndexedGraphAdapter.of(graph);
+    workspace.reset();
+    NeighborLists neighbors = new NeighborLists(indexed, numNeighbors, workspace);
+
+    int[] tour = indexed.size() == 0 ? new int[0] : construction.build(indexed, 0);
+    new LocalSearch(indexed, neighbors, workspace).improve(tour, budget);
+
+    Cycle<L, T> cycle = new Cycle<L, T>(indexed, tour);
+    if (budget != null) {
+      budget.improved(cycle.getCost(), 0, () -> cycle);
+    }
+    return cycle;
+  }
+}
@@ -0,0 +1,65 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-15
+
+package me.psanders.graph.path;
+
+import me.psanders.graph.IndexedGraph;
+
+/** For each vertex of a graph, the K other vertices closest to it.
+ *
+ * <p>Closeness is the cheaper of the two directions between a pair of vertices, so that on an
+ * asymmetric graph a vertex's list includes neighbors that are cheap to reach it from as well as
+ * those that are cheap to reach from it. Lists are sorted from closest to farthest and stored in a
+ * single flat array.
+ */
+final class NeighborLists {
+
+  private final int count;
+  private final int[] neighbors;
+
+  NeighborLists(IndexedGraph<?, ?> graph, int k) {
+    this(graph, k, new Workspace());
+  }
+
+  /** Construct the lists in arrays taken from a workspace, valid until it is next reset. */
+  NeighborLists(IndexedGraph<?, ?> graph, int k, Workspace workspace) {
+    int size = graph.size();
+    this.count = Math.max(0, Math.min(k, size - 1));
+    this.neighbors = workspace.ints(size * count);
+
+    long[] distances = workspace.longs(count);
+    for (int i = 0; i < size; ++i) {
+      int found = 0;
+      int offset = i * count;
+      for (int j = 0; j < size; ++j) {
+        if (i == j || count == 0) {
+          continue;
+        }
+        long distance = Math.min(graph.getWeightAt(i, j), graph.getWeightAt(j, i));
+        if (found == count && distance >= distances[count - 1]) {
+          continue;
+        }
+
+        // Insertion into the sorted list of the best `count` seen so far.
+        int slot = found < count ? found++ : count - 1;
+        while (slot > 0 && distances[slot - 1] > distance) {
+          distances[slot] = distances[slot - 1];
+          neighbors[offset + slot] = neighbors[offset + slot - 1];
+          --slot;
+        }
+        distances[slot] = distance;
+        neighbors[offset + slot] = j;
+      }
+    }
+  }
+
+  /** Returns the number of neighbors listed for each vertex. */
+  int count() {
+    return count;
+  }
+
+  /** Returns the neighbor of the given vertex with the given rank, 0 being the closest. */
+  int get(int vertex, int rank) {
+    return neighbors[vertex * count + rank];
+  }
+}
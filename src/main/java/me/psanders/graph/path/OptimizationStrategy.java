@@ -13,5 +13,23 @@ interface OptimizationStrategy<L, T extends Number> {
    *
    * Note, this may differ from the actual best cycle.
    */
-  Cycle getOptimalCycle(Graph<L, T> graph);
+  Cycle<L, T> getOptimalCycle(Graph<L, T> graph);
+
+  /** Returns the best cycle the concrete strategy finds before its budget runs out.
+   *
+   * The default implementation ignores the budget and runs the strategy to completion.
+   */
+  default Cycle<L, T> getOptimalCycle(Graph<L, T> graph, SolveBudget budget) {
+    return getOptimalCycle(graph);
+  }
+
+  /** Returns the best cycle found before the budget runs out, taking working arrays from a
+   * workspace that the caller reuses across solves.
+   *
+   * The default implementation ignores the workspace and allocates as usual.
+   */
+  default Cycle<L, T> getOptimalCycle(Graph<L, T> graph, SolveBudget budget,
+      Workspace workspace) {
+    return getOptimalCycle(graph, budget);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-25
+
+package me.psanders.graph.path;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import me.psanders.graph.IndexedGraph;
+
+/** Order crossover (OX) as described by Davis (1985).
+ *
+ * <p>The child keeps a random segment of the first parent in place, and the remaining positions
+ * are filled, starting after the segment, with the missing vertices in the order they follow the
+ * segment in the second parent. The child therefore inherits the relative order of the vertices
+ * rather than their positions, which is what matters for a cycle.
+ */
+public final class OrderCrossover implements CrossoverOperator {
+
+  private boolean[] used = new boolean[0];
+
+  @Override
+  public void recombine(IndexedGraph<?, ?> graph, int[] first, int[] second, int[] child,
+      SplittableRandom random) {
+    int length = first.length;
+    if (length < 2) {
+      System.arraycopy(first, 0, child, 0, length);
+      return;
+    }
+    if (used.length < length) {
+      used = new boolean[length];
+    } else {
+      Arrays.fill(used, 0, length, false);
+    }
+
+    int from = random.nextInt(length);
+    int to = random.nextInt(length);
+    if (from > to) {
+      int tmp = from;
+      from = to;
+      to = tmp;
+    }
+    for (int i = from; i <= to; ++i) {
+      child[i] = first[i];
+      used[first[i]] = true;
+    }
+
+    int position = (to + 1) % length;
+    for (int i = 1; i <= length; ++i) {
+      int vertex = second[(to + i) % length];
+      if (!used[vertex]) {
+        child[position] = vertex;
+        position = (position + 1) % length;
+      }
+    }
+  }
+}
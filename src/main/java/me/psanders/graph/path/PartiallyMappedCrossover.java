@@ -0,0 +1,55 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-25
+
+package me.psanders.graph.path;
+
+import java.util.SplittableRandom;
+
+import me.psanders.graph.IndexedGraph;
+
+/** Partially mapped crossover (PMX) as described by Goldberg & Lingle (1985).
+ *
+ * <p>The child keeps a random segment of the first parent in place and takes every other position
+ * from the second parent. Where the second parent's vertex already appears in the segment, the
+ * mapping between the parents' segments is followed until a vertex outside it is found.
+ */
+public final class PartiallyMappedCrossover implements CrossoverOperator {
+
+  // position[v] is the index of vertex v in the first parent.
+  private int[] position = new int[0];
+
+  @Override
+  public void recombine(IndexedGraph<?, ?> graph, int[] first, int[] second, int[] child,
+      SplittableRandom random) {
+    int length = first.length;
+    if (length < 2) {
+      System.arraycopy(first, 0, child, 0, length);
+      return;
+    }
+    if (position.length < length) {
+      position = new int[length];
+    }
+    for (int i = 0; i < length; ++i) {
+      position[first[i]] = i;
+    }
+
+    int from = random.nextInt(length);
+    int to = random.nextInt(length);
+    if (from > to) {
+      int tmp = from;
+      from = to;
+      to = tmp;
+    }
+    for (int i = 0; i < length; ++i) {
+      if (i >= from && i <= to) {
+        child[i] = first[i];
+        continue;
+      }
+      int vertex = second[i];
+      while (position[vertex] >= from && position[vertex] <= to) {
+        vertex = second[position[vertex]];
+      }
+      child[i] = vertex;
+    }
+  }
+}
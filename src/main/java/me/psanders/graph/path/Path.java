@@ -3,46 +3,319 @@
 
 package me.psanders.graph.path;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
 
+/** An ordering of some of the nodes of a graph, and the cost of visiting them in that order.
+ *
+ * <p>The cost is computed once, on first use, and cached thereafter. The moves <code>swap</code>,
+ * <code>relocate</code> and <code>reverse</code> reorder the path in place and update the cached
+ * cost by pricing only the edges that the move adds or removes. It is the cost update that takes
+ * O(1), except for <code>reverse</code> on an asymmetric graph, not the move: reordering the list
+ * still shifts up to O(n) elements.
+ */
 public class Path<L, T extends Number> implements Comparable<Path> {
   private Graph<L, T> graph;
   private List<L> order;
 
+  // Only set when `graph` is an IndexedGraph, in which case `indices[i]` is the index of
+  // `order.get(i)` and costs are looked up without going through the labels.
+  private IndexedGraph<L, T> indexedGraph;
+  private int[] indices;
+
+  private long cost;
+  private boolean costKnown;
+
+  // Whether each pair of the path's nodes has the same weight both ways, or null until needed.
+  // Moves never change which nodes are on the path, so this holds for the path's whole life.
+  private Boolean symmetric;
+
+  /** Construct a path visiting the nodes of a graph in the order given.
+   *
+   * <p>The order is copied, so later changes to the list passed in do not affect this path.
+   */
   public Path(Graph<L, T> graph, List<L> order) {
     this.graph = graph;
-    this.order = order;
+    this.order = new ArrayList<L>(order);
+
+    if (graph instanceof IndexedGraph) {
+      this.indexedGraph = (IndexedGraph<L, T>) graph;
+      this.indices = new int[order.size()];
+      for (int i = 0; i < indices.length; ++i) {
+        indices[i] = indexedGraph.getIndex(this.order.get(i));
+      }
+    }
+  }
+
+  /** Construct a path visiting the vertices of an indexed graph in the order given by index.
+   *
+   * <p>The array of indices is copied.
+   */
+  public Path(IndexedGraph<L, T> graph, int[] indices) {
+    this.graph = graph;
+    this.indexedGraph = graph;
+    this.indices = indices.clone();
+    this.order = new ArrayList<L>(indices.length);
+    for (int index: indices) {
+      order.add(graph.getLabel(index));
+    }
+  }
+
+  /** Construct a copy of another path, including its cached cost. */
+  public Path(Path<L, T> other) {
+    this.graph = other.graph;
+    this.order = new ArrayList<L>(other.order);
+    this.indexedGraph = other.indexedGraph;
+    this.indices = other.indices == null ? null : other.indices.clone();
+    this.cost = other.cost;
+    this.costKnown = other.costKnown;
+    this.symmetric = other.symmetric;
   }
 
   /** Get the cumulative cost of visiting every node in the path, in the order provided.
    *
-   * We assume here that the path is valid, e.g., if there is no edge between two consecutive
+   * <p>The sum saturates at <code>Long.MAX_VALUE</code>, see <code>IndexedGraph.add</code>.
+   *
+   * <p>We assume here that the path is valid, e.g., if there is no edge between two consecutive
    * nodes in the correct direction, this code will throw an error.
    */
   public long getCost() {
-    long cost = 0;
-    for (int i = 1; i < order.size(); ++i) {
-      cost += graph.getWeight(order.get(i - 1), order.get(i)).longValue();
+    if (!costKnown) {
+      cost = 0;
+      for (int k = 0; k < getEdgeCount(); ++k) {
+        cost = IndexedGraph.add(cost, getEdgeCost(k));
+      }
+      costKnown = true;
     }
     return cost;
   }
 
   /** Get the list of nodes in the order that this path visits them.
    *
+   * <p>The list is read-only; use the moves below to reorder the path.
    */
   public List<L> getOrder() {
-    return order;
+    return Collections.unmodifiableList(order);
+  }
+
+  /** Exchange the nodes at positions I and J.
+   *
+   * @return The change in cost caused by the move
+   */
+  public long swap(int i, int j) {
+    if (i == j) {
+      return 0;
+    }
+    long before = sumEdges(i - 1, i, j - 1, j);
+    swapPositions(i, j);
+    return updateCost(before, sumEdges(i - 1, i, j - 1, j));
+  }
+
+  /** Remove the node at position From and reinsert it so that it ends up at position To.
+   *
+   * @return The change in cost caused by the move
+   */
+  public long relocate(int from, int to) {
+    if (from == to) {
+      return 0;
+    }
+
+    // The edge leaving position k connects k to k + 1. Every node strictly between From and To
+    // shifts by one, but the edges among them are unchanged, so only three edges need pricing.
+    long before;
+    long after;
+    if (from < to) {
+      before = sumEdges(from - 1, from, to);
+      move(from, to);
+      after = sumEdges(from - 1, to - 1, to);
+    } else {
+      before = sumEdges(to - 1, from - 1, from);
+      move(from, to);
+      after = sumEdges(to - 1, to, from);
+    }
+    return updateCost(before, after);
+  }
+
+  /** Reverse the order of the nodes between positions I and J, inclusive, as in a 2-opt move.
+   *
+   * <p>On a symmetric graph only the two boundary edges change, so only they are priced. On an
+   * asymmetric graph every edge inside the segment changes direction too, and those are re-priced
+   * in O(J - I). The first reversal of a path checks which of the two it is, in O(n^2).
+   *
+   * @return The change in cost caused by the move
+   */
+  public long reverse(int i, int j) {
+    if (i >= j) {
+      return 0;
+    }
+    boolean inside = !isSymmetric();
+    long before = sumEdges(i - 1, j);
+    if (inside) {
+      before = IndexedGraph.add(before, sumEdgeRange(i, j));
+    }
+    for (int a = i, b = j; a < b; ++a, --b) {
+      swapPositions(a, b);
+    }
+    long after = sumEdges(i - 1, j);
+    if (inside) {
+      after = IndexedGraph.add(after, sumEdgeRange(i, j));
+    }
+    return updateCost(before, after);
+  }
+
+  /** Get the weight of the edge from the node at position From to the node at position To. */
+  protected long getWeightBetween(int from, int to) {
+    if (indices != null) {
+      return indexedGraph.getWeightAt(indices[from], indices[to]);
+    }
+    return graph.getWeight(order.get(from), order.get(to)).longValue();
+  }
+
+  /** Returns whether every pair of nodes on the path has the same weight in both directions. */
+  private boolean isSymmetric() {
+    if (symmetric == null) {
+      symmetric = true;
+      for (int a = 0; a < order.size() && symmetric; ++a) {
+        for (int b = a + 1; b < order.size() && symmetric; ++b) {
+          if (indices != null) {
+            symmetric = indexedGraph.getWeightAt(indices[a], indices[b])
+                == indexedGraph.getWeightAt(indices[b], indices[a]);
+          } else {
+            symmetric = Objects.equals(graph.getWeight(order.get(a), order.get(b)),
+                graph.getWeight(order.get(b), order.get(a)));
+          }
+        }
+      }
+    }
+    return symmetric;
+  }
+
+  /** Returns whether the last node connects back to the first, i.e., whether this is a cycle. */
+  protected boolean isClosed() {
+    return false;
+  }
+
+  private int getEdgeCount() {
+    if (order.isEmpty()) {
+      return 0;
+    }
+    return isClosed() ? order.size() : order.size() - 1;
+  }
+
+  /** Cost of edge K, which leaves position K, or zero if there is no such edge. */
+  private long getEdgeCost(int k) {
+    int size = order.size();
+    if (isClosed() && size > 0) {
+      k = ((k % size) + size) % size;
+      return getWeightBetween(k, (k + 1) % size);
+    }
+    if (k < 0 || k >= size - 1) {
+      return 0;
+    }
+    return getWeightBetween(k, k + 1);
+  }
+
+  /** Sum the costs of edges A, B, C and D, counting each distinct edge once.
+   *
+   * <p>Moves price at most four edges, so they are passed as scalars rather than in an array that
+   * would be allocated on every move.
+   */
+  private long sumEdges(int a, int b, int c, int d) {
+    a = normalize(a);
+    b = normalize(b);
+    c = normalize(c);
+    d = normalize(d);
+    long sum = getEdgeCost(a);
+    if (b != a) {
+      sum = IndexedGraph.add(sum, getEdgeCost(b));
+    }
+    if (c != a && c != b) {
+      sum = IndexedGraph.add(sum, getEdgeCost(c));
+    }
+    if (d != a && d != b && d != c) {
+      sum = IndexedGraph.add(sum, getEdgeCost(d));
+    }
+    return sum;
+  }
+
+  private long sumEdges(int a, int b, int c) {
+    return sumEdges(a, b, c, c);
+  }
+
+  private long sumEdges(int a, int b) {
+    return sumEdges(a, b, b, b);
+  }
+
+  /** Returns the position edge K leaves, wrapped around a cycle so that equal edges are equal. */
+  private int normalize(int k) {
+    int size = order.size();
+    if (isClosed() && size > 0) {
+      return ((k % size) + size) % size;
+    }
+    return k;
+  }
+
+  /** Sum the costs of the edges from position I up to, but not including, position J. */
+  private long sumEdgeRange(int i, int j) {
+    long sum = 0;
+    for (int k = i; k < j; ++k) {
+      sum = IndexedGraph.add(sum, getEdgeCost(k));
+    }
+    return sum;
+  }
+
+  /** Apply a move's change to the cached cost, or forget the cost if the change is not exact.
+   *
+   * <p>Sums that include an unreachable edge may have saturated, so their difference is not the
+   * true change, and the cost is summed again when it is next asked for.
+   */
+  private long updateCost(long before, long after) {
+    long delta = after - before;
+    if (costKnown) {
+      if (cost >= IndexedGraph.UNREACHABLE || before >= IndexedGraph.UNREACHABLE
+          || after >= IndexedGraph.UNREACHABLE) {
+        costKnown = false;
+      } else {
+        cost += delta;
+      }
+    }
+    return delta;
+  }
+
+  private void swapPositions(int i, int j) {
+    Collections.swap(order, i, j);
+    if (indices != null) {
+      int tmp = indices[i];
+      indices[i] = indices[j];
+      indices[j] = tmp;
+    }
+  }
+
+  private void move(int from, int to) {
+    order.add(to, order.remove(from));
+    if (indices != null) {
+      int moved = indices[from];
+      if (from < to) {
+        System.arraycopy(indices, from + 1, indices, from, to - from);
+      } else {
+        System.arraycopy(indices, to, indices, to + 1, from - to);
+      }
+      indices[to] = moved;
+    }
   }
 
   @Override
   public int compareTo(Path other) {
-    return (int) (this.getCost() - other.getCost());
+    return Long.compare(this.getCost(), other.getCost());
   }
 
   @Override
   public String toString() {
     return "Cost: " + getCost() + "\nRoute: " + this.order.toString();
   }
-}
\ No newline at end of file
+}
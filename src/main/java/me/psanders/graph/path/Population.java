@@ -0,0 +1,176 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-12
+
+package me.psanders.graph.path;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import me.psanders.graph.IndexedGraph;
+
+/** A fixed-size population of tours for the genetic algorithms, held in primitive arrays.
+ *
+ * <p>Every tour lives in one preallocated slab of <code>size * length</code> ints, and every cost
+ * in a parallel <code>long[]</code>. A second slab of the same shape holds the generation under
+ * construction; <code>advance</code> swaps the two rather than allocating a new one. Once the
+ * population has been built, stepping through generations allocates nothing.
+ *
+ * <p>The current generation is read by rank, where rank 0 is the cheapest tour. The next
+ * generation is written by slot, from 0 to <code>size - 1</code>.
+ */
+final class Population {
+
+  private final IndexedGraph<?, ?> graph;
+  private final int size;
+  private final int length;
+
+  private int[] tours;
+  private long[] costs;
+  private int[] nextTours;
+  private long[] nextCosts;
+
+  // ranking[r] is the slot of the r-th cheapest tour in the current generation.
+  private final int[] ranking;
+
+  Population(IndexedGraph<?, ?> graph, int size) {
+    this.graph = graph;
+    this.size = size;
+    this.length = graph.size();
+    this.tours = new int[size * length];
+    this.costs = new long[size];
+    this.nextTours = new int[size * length];
+    this.nextCosts = new long[size];
+    this.ranking = new int[size];
+  }
+
+  /** Replace the current generation with uniformly random tours. */
+  void shuffle(SplittableRandom random) {
+    for (int i = 0; i < size; ++i) {
+      Tours.shuffle(tours, i * length, length, random);
+      costs[i] = Tours.cost(graph, tours, i * length, length);
+    }
+    rank();
+  }
+
+  /** Returns the number of tours in each generation. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the number of vertices in each tour. */
+  int length() {
+    return length;
+  }
+
+  /** Returns the cost of the tour with the given rank in the current generation. */
+  long getCost(int rank) {
+    return costs[ranking[rank]];
+  }
+
+  /** Copy the tour with the given rank in the current generation into a slot of the next. */
+  void copyToNext(int rank, int slot) {
+    System.arraycopy(tours, ranking[rank] * length, nextTours, slot * length, length);
+    nextCosts[slot] = costs[ranking[rank]];
+  }
+
+  /** Copy the tour with the given rank in the current generation into an array of its own. */
+  void copyTour(int rank, int[] tour) {
+    System.arraycopy(tours, ranking[rank] * length, tour, 0, length);
+  }
+
+  /** Write a tour into a slot of the next generation and score it. */
+  void setNext(int slot, int[] tour) {
+    System.arraycopy(tour, 0, nextTours, slot * length, length);
+    nextCosts[slot] = Tours.cost(graph, nextTours, slot * length, length);
+  }
+
+  /** Exchange two positions of the tour in a slot of the next generation, updating its cost. */
+  void swapInNext(int slot, int a, int b) {
+    long delta = Tours.swap(graph, nextTours, slot * length, length, a, b);
+    nextCosts[slot] =
+        Tours.update(graph, nextCosts[slot], delta, nextTours, slot * length, length);
+  }
+
+  /** Improve the tour in a slot of the next generation by a bounded local search.
+   *
+   * @param budget Charged for every vertex the search examines, which stops when it runs out
+   * @param limit The most vertices the search may examine
+   */
+  void improveNext(int slot, LocalSearch search, SolveBudget budget, long limit) {
+    long delta = search.improve(nextTours, slot * length, budget, limit);
+    nextCosts[slot] =
+        Tours.update(graph, nextCosts[slot], delta, nextTours, slot * length, length);
+  }
+
+  /** Make the next generation current. The old current generation becomes scratch space. */
+  void advance() {
+    int[] tmpTours = tours;
+    tours = nextTours;
+    nextTours = tmpTours;
+
+    long[] tmpCosts = costs;
+    costs = nextCosts;
+    nextCosts = tmpCosts;
+
+    rank();
+  }
+
+  /** Copy the <code>count</code> best tours of the current generation end to end into a buffer. */
+  void emigrate(int[] buffer, int count) {
+    for (int r = 0; r < count; ++r) {
+      System.arraycopy(tours, ranking[r] * length, buffer, r * length, length);
+    }
+  }
+
+  /** Replace the <code>count</code> worst tours of the current generation with those in a buffer.
+   *
+   * <p>The buffer holds tours end to end, as written by <code>emigrate</code>. The generation is
+   * ranked again afterwards.
+   */
+  void immigrate(int[] buffer, int count) {
+    for (int r = 0; r < count; ++r) {
+      int slot = ranking[size - 1 - r];
+      System.arraycopy(buffer, r * length, tours, slot * length, length);
+      costs[slot] = Tours.cost(graph, tours, slot * length, length);
+    }
+    rank();
+  }
+
+  /** Returns the best tour of the current generation as a Cycle. */
+  <L, T extends Number> Cycle<L, T> getBest(IndexedGraph<L, T> graph) {
+    int offset = ranking[0] * length;
+    return new Cycle<L, T>(graph, Arrays.copyOfRange(tours, offset, offset + length));
+  }
+
+  /** Order the slots of the current generation by cost with an in-place heapsort. */
+  private void rank() {
+    for (int i = 0; i < size; ++i) {
+      ranking[i] = i;
+    }
+    for (int i = size / 2 - 1; i >= 0; --i) {
+      siftDown(i, size);
+    }
+    for (int end = size - 1; end > 0; --end) {
+      int tmp = ranking[0];
+      ranking[0] = ranking[end];
+      ranking[end] = tmp;
+      siftDown(0, end);
+    }
+  }
+
+  private void siftDown(int root, int end) {
+    while (2 * root + 1 < end) {
+      int child = 2 * root + 1;
+      if (child + 1 < end && costs[ranking[child + 1]] > costs[ranking[child]]) {
+        ++child;
+      }
+      if (costs[ranking[root]] >= costs[ranking[child]]) {
+        return;
+      }
+      int tmp = ranking[root];
+      ranking[root] = ranking[child];
+      ranking[child] = tmp;
+      root = child;
+    }
+  }
+}
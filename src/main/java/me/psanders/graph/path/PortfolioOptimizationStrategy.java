@@ -0,0 +1,307 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-30
+
+package me.psanders.graph.path;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.IndexedGraphAdapter;
+
+/** Races several strategies on the same graph and returns the best cycle any of them finds.
+ *
+ * <p>No single strategy is best at every size: dynamic programming is exact and instant for a
+ * dozen stops and impossible for fifty, local search gives a good tour in milliseconds, and the
+ * genetic algorithm improves on it given time. A portfolio runs them all at once on an executor,
+ * under one <code>SolveBudget</code>, so the caller gets the best of them without choosing.
+ *
+ * <p>Members come in three kinds:
+ * <ul>
+ *   <li>Heuristics start at once.
+ *   <li>Seeded members start as soon as any member improves on the first incumbent, or a
+ *       heuristic finishes, or a short delay has passed, whichever comes first. They are handed a
+ *       <code>TourConstruction</code> that returns the best tour found so far, so that for example
+ *       a genetic algorithm evolves from local search's result rather than from scratch, but a
+ *       heuristic that makes no progress cannot hold them back.
+ *   <li>Exact members start at once on graphs small enough for them. An exact member's cycle is
+ *       taken to be optimal, so when one finishes the other members are cancelled.
+ * </ul>
+ *
+ * <p>The members share a fork of the caller's budget, which the portfolio cancels without
+ * cancelling the caller's. Each better cycle a member reports to that budget becomes the
+ * incumbent at once, so seeded members start from it even while the member that found it is
+ * still running. The executor bounds how many members run at once; members with pools of their
+ * own, such as the island model, do their inner work there.
+ */
+public class PortfolioOptimizationStrategy<L, T extends Number>
+    implements OptimizationStrategy<L, T> {
+
+  // 2^15 subsets * 15 end points is about 4MB of table and takes milliseconds.
+  static final int EXACT_NODES = 16;
+
+  // Vertices each child of the standard portfolio's genetic algorithm may examine in local search.
+  static final long MEMETIC_LIMIT = 1000;
+
+  // How long seeded members wait, by default, for a better tour than the first incumbent.
+  static final long SEED_DELAY_MILLIS = 100;
+
+  // Starts seeded members whose delay has passed, as CompletableFuture.delayedExecutor would.
+  private static final ScheduledExecutorService TIMER =
+      Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "portfolio-timer");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final Executor executor;
+  private final TourConstruction start;
+  private final long seedDelayNanos;
+  private final List<OptimizationStrategy<L, T>> heuristics;
+  private final List<Function<TourConstruction, OptimizationStrategy<L, T>>> seeded;
+  private final List<OptimizationStrategy<L, T>> exact;
+  private final List<Integer> exactNodes;
+
+  private PortfolioOptimizationStrategy(Builder<L, T> builder) {
+    this.executor = builder.executor;
+    this.start = builder.start;
+    this.seedDelayNanos = builder.seedDelayNanos;
+    this.heuristics = new ArrayList<OptimizationStrategy<L, T>>(builder.heuristics);
+    this.seeded = new ArrayList<Function<TourConstruction, OptimizationStrategy<L, T>>>(
+        builder.seeded);
+    this.exact = new ArrayList<OptimizationStrategy<L, T>>(builder.exact);
+    this.exactNodes = new ArrayList<Integer>(builder.exactNodes);
+  }
+
+  /** Returns a portfolio of local search, a seeded memetic genetic algorithm with edge assembly
+   * crossover, and Held-Karp for graphs of up to <code>EXACT_NODES</code> stops.
+   *
+   * @param pool Runs the members, the genetic algorithm's islands and Held-Karp's layers, so it
+   *     bounds the threads of the whole solve; three workers let the members all run at once
+   */
+  public static <L, T extends Number> PortfolioOptimizationStrategy<L, T> standard(
+      SplittableRandom random, ForkJoinPool pool) {
+    return standard(random, pool, TourConstructions.NEAREST_NEIGHBOR);
+  }
+
+  /** Returns the standard portfolio, with local search and the first incumbent starting from
+   * the given tour rather than nearest neighbor.
+   *
+   * <p>Use this with <code>TourConstructions.warmStart</code> to solve again after the stops
+   * change, picking up from the previous tour.
+   */
+  public static <L, T extends Number> PortfolioOptimizationStrategy<L, T> standard(
+      SplittableRandom random, ForkJoinPool pool, TourConstruction start) {
+    return new Builder<L, T>(pool)
+        .startFrom(start)
+        .heuristic(new LocalSearchOptimizationStrategy<L, T>(
+            LocalSearchOptimizationStrategy.NEIGHBORS, start))
+        .seeded(seed -> new GeneticOptimizationStrategy<L, T>(random.split(), pool,
+            pool.getParallelism(), EdgeAssemblyCrossover::new).seededBy(seed)
+            .memetic(MEMETIC_LIMIT))
+        .exact(new HeldKarpOptimizationStrategy<L, T>(pool), EXACT_NODES)
+        .build();
+  }
+
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph) {
+    return getOptimalCycle(graph, SolveBudget.unlimited());
+  }
+
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph, SolveBudget budget) {
+    IndexedGraph<L, T> indexed = IndexedGraphAdapter.of(graph);
+    int size = indexed.size();
+    if (size < 4) {
+      // There are at most two tours of three stops or fewer, so there is nothing to race. An exact
+      // member picks one here; Held-Karp builds no table this small, so it runs nothing on a pool.
+      for (int i = 0; i < exact.size(); ++i) {
+        if (size <= exactNodes.get(i)) {
+          return exact.get(i).getOptimalCycle(indexed);
+        }
+      }
+      return new HeldKarpOptimizationStrategy<L, T>().getOptimalCycle(indexed);
+    }
+    int[] tour = start.build(indexed, 0);
+    long startCost = Tours.cost(indexed, tour, 0, size);
+    Incumbent best = new Incumbent(startCost, tour);
+    budget.improved(startCost, 0, () -> new Cycle<L, T>(indexed, tour));
+
+    // Seeded members start on the first better tour, however it is found. Most reports are no
+    // better than the incumbent, so the cost is checked before the cycle is converted.
+    CompletableFuture<Void> ready = new CompletableFuture<Void>();
+    Map<Object, Integer> index = labelIndex(indexed);
+    SolveBudget shared = budget.fork((cycle, cost, generation, elapsedMillis) -> {
+      if (cost < best.getCost() && best.offer(cost, indices(index, cycle.getOrder()))) {
+        ready.complete(null);
+      }
+    });
+    List<CompletableFuture<Void>> runs = new ArrayList<CompletableFuture<Void>>();
+    for (int i = 0; i < exact.size(); ++i) {
+      if (size <= exactNodes.get(i)) {
+        runs.add(run(exact.get(i), indexed, shared, true));
+      }
+    }
+    List<CompletableFuture<Void>> first = new ArrayList<CompletableFuture<Void>>();
+    for (OptimizationStrategy<L, T> heuristic : heuristics) {
+      first.add(run(heuristic, indexed, shared, false));
+    }
+    runs.addAll(first);
+
+    // Build the seeded members now, on this thread, but only start them once there is a tour
+    // worth starting from, or once waiting for one has taken long enough.
+    if (first.isEmpty()) {
+      ready.complete(null);
+    }
+    for (CompletableFuture<Void> heuristic : first) {
+      heuristic.whenComplete((result, error) -> ready.complete(null));
+    }
+    ScheduledFuture<?> timeout = seeded.isEmpty() ? null
+        : TIMER.schedule(() -> ready.complete(null), seedDelayNanos, TimeUnit.NANOSECONDS);
+    TourConstruction incumbent = (g, vertex) -> best.getTour();
+    for (Function<TourConstruction, OptimizationStrategy<L, T>> factory : seeded) {
+      OptimizationStrategy<L, T> strategy = factory.apply(incumbent);
+      runs.add(ready.thenCompose(ignored -> run(strategy, indexed, shared, false)));
+    }
+
+    try {
+      CompletableFuture.allOf(runs.toArray(new CompletableFuture<?>[runs.size()])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    } finally {
+      shared.cancel();
+      if (timeout != null) {
+        timeout.cancel(false);
+      }
+    }
+    return new Cycle<L, T>(indexed, best.getTour());
+  }
+
+  /** Run one member on the executor and report its cycle to the shared budget.
+   *
+   * <p>Any member that fails cancels the rest, and the failure is passed on to the caller.
+   */
+  private CompletableFuture<Void> run(OptimizationStrategy<L, T> strategy,
+      IndexedGraph<L, T> graph, SolveBudget budget, boolean optimal) {
+    return CompletableFuture.runAsync(() -> {
+      if (budget.isExhausted()) {
+        return;
+      }
+      try {
+        Cycle<L, T> cycle = strategy.getOptimalCycle(graph, budget);
+        // Members that ignore budgets only report here.
+        budget.improved(cycle.getCost(), 0, () -> cycle);
+        if (optimal) {
+          budget.cancel();
+        }
+      } catch (RuntimeException e) {
+        budget.cancel();
+        throw e;
+      }
+    }, executor);
+  }
+
+  /** Returns the index of each vertex of a graph by its label. */
+  private static Map<Object, Integer> labelIndex(IndexedGraph<?, ?> graph) {
+    Map<Object, Integer> index = new HashMap<Object, Integer>();
+    for (int i = 0; i < graph.size(); ++i) {
+      index.put(graph.getLabel(i), i);
+    }
+    return index;
+  }
+
+  /** Returns the vertex indices of a cycle reported by a member, which may be of any type. */
+  private static int[] indices(Map<Object, Integer> index, List<?> order) {
+    int[] tour = new int[order.size()];
+    for (int i = 0; i < tour.length; ++i) {
+      tour[i] = index.get(order.get(i));
+    }
+    return tour;
+  }
+
+  /** Collects the members of a portfolio. */
+  public static final class Builder<L, T extends Number> {
+
+    private final Executor executor;
+    private TourConstruction start = TourConstructions.NEAREST_NEIGHBOR;
+    private long seedDelayNanos = TimeUnit.MILLISECONDS.toNanos(SEED_DELAY_MILLIS);
+    private final List<OptimizationStrategy<L, T>> heuristics =
+        new ArrayList<OptimizationStrategy<L, T>>();
+    private final List<Function<TourConstruction, OptimizationStrategy<L, T>>> seeded =
+        new ArrayList<Function<TourConstruction, OptimizationStrategy<L, T>>>();
+    private final List<OptimizationStrategy<L, T>> exact =
+        new ArrayList<OptimizationStrategy<L, T>>();
+    private final List<Integer> exactNodes = new ArrayList<Integer>();
+
+    /** Start a portfolio whose members run on the given executor. */
+    public Builder(Executor executor) {
+      this.executor = executor;
+    }
+
+    /** Build the first incumbent with the given construction, by default nearest neighbor.
+     *
+     * <p>Seeded members that start before any heuristic has improved on it start from this tour.
+     */
+    public Builder<L, T> startFrom(TourConstruction construction) {
+      this.start = construction;
+      return this;
+    }
+
+    /** Start seeded members after this long even if no member has improved on the first
+     * incumbent, by default <code>SEED_DELAY_MILLIS</code>.
+     */
+    public Builder<L, T> seedDelay(long delay, TimeUnit unit) {
+      if (delay < 0) {
+        throw new IllegalArgumentException("Delay must not be negative: " + delay);
+      }
+      this.seedDelayNanos = unit.toNanos(delay);
+      return this;
+    }
+
+    /** Add a member that starts as soon as the portfolio does. */
+    public Builder<L, T> heuristic(OptimizationStrategy<L, T> strategy) {
+      heuristics.add(strategy);
+      return this;
+    }
+
+    /** Add a member that starts from the best tour the others have found.
+     *
+     * @param factory Makes the member for one solve, given a construction that returns the best
+     *     tour so far whenever it is called
+     */
+    public Builder<L, T> seeded(Function<TourConstruction, OptimizationStrategy<L, T>> factory) {
+      seeded.add(factory);
+      return this;
+    }
+
+    /** Add a member whose cycle is optimal, run only on graphs of at most the given size. */
+    public Builder<L, T> exact(OptimizationStrategy<L, T> strategy, int maxNodes) {
+      exact.add(strategy);
+      exactNodes.add(maxNodes);
+      return this;
+    }
+
+    public PortfolioOptimizationStrategy<L, T> build() {
+      if (heuristics.isEmpty() && seeded.isEmpty() && exact.isEmpty()) {
+        throw new IllegalStateException("A portfolio needs at least one strategy.");
+      }
+      return new PortfolioOptimizationStrategy<L, T>(this);
+    }
+  }
+}
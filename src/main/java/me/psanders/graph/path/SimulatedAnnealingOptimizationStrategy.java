@@ -0,0 +1,366 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-28
+
+package me.psanders.graph.path;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.IndexedGraphAdapter;
+
+/** Finds a "probably optimal" route through a complete graph by simulated annealing.
+ *
+ * <p>A single tour is kept as an int array of vertex indices. Each step proposes a random move:
+ * reversing a segment, exchanging two stops, or relocating one stop. The move is accepted if it
+ * makes the tour cheaper, and otherwise with probability <code>exp(-delta / temperature)</code>.
+ * Moves are priced before they are applied, exchanges and relocations from the edges at their
+ * ends. On a symmetric graph a reversed segment costs the same either way round, so reversals are
+ * priced from their four boundary edges, and every move is priced in O(1). On an asymmetric graph
+ * reversals are priced through prefix sums of the tour's cost in both directions, which keeps them
+ * exact; the sums are brought up to date from the first position changed since they were last
+ * used, so pricing costs O(n) after each accepted move. Nothing is allocated per move.
+ *
+ * <p>The temperature starts where about <code>INITIAL_ACCEPTANCE</code> of sampled uphill moves
+ * would be accepted, and is lowered by a <code>CoolingSchedule</code> after every epoch of
+ * <code>movesPerStop</code> moves per stop. Once it has fallen to <code>FROZEN</code> of its
+ * starting value, the search reheats to <code>REHEAT</code> of it and continues from the best tour
+ * found. Without a bounded <code>SolveBudget</code> it reheats <code>REHEATS</code> times, and
+ * with one it keeps going until the budget is spent. Each move counts as one evaluation, and each
+ * epoch as one generation towards the budget's stall limit.
+ *
+ * <p>This needs only a few arrays of the number of stops, so it sits between the genetic
+ * algorithm and the exact strategies in memory as well as in quality.
+ */
+public class SimulatedAnnealingOptimizationStrategy<L, T extends Number>
+    implements OptimizationStrategy<L, T> {
+
+  /** How the temperature falls from one epoch to the next. */
+  public interface CoolingSchedule {
+
+    /** Returns the temperature for the next epoch.
+     *
+     * @param temperature The temperature of the epoch just finished
+     * @param initial The temperature the search started at
+     */
+    double next(double temperature, double initial);
+
+    /** Multiply the temperature by a constant rate, between 0 and 1, every epoch. */
+    static CoolingSchedule geometric(double rate) {
+      if (!(rate > 0 && rate < 1)) {
+        throw new IllegalArgumentException("Cooling rate must be between 0 and 1: " + rate);
+      }
+      return (temperature, initial) -> temperature * rate;
+    }
+
+    /** Lower the temperature by the same amount every epoch, freezing after the given number. */
+    static CoolingSchedule linear(int epochs) {
+      if (epochs < 1) {
+        throw new IllegalArgumentException("Linear cooling needs at least one epoch: " + epochs);
+      }
+      return (temperature, initial) -> temperature - initial / epochs;
+    }
+  }
+
+  static final double INITIAL_ACCEPTANCE = 0.3;
+  static final double FROZEN = 1e-3;
+  static final double REHEAT = 0.1;
+  static final int REHEATS = 3;
+  static final int MOVES_PER_STOP = 100;
+  static final double COOLING_RATE = 0.95;
+
+  // Moves sampled from the starting tour to calibrate the initial temperature.
+  private static final int SAMPLES = 1000;
+
+  private SplittableRandom random;
+  private CoolingSchedule schedule;
+  private int movesPerStop;
+
+  public SimulatedAnnealingOptimizationStrategy(SplittableRandom random) {
+    this(random, CoolingSchedule.geometric(COOLING_RATE), MOVES_PER_STOP);
+  }
+
+  /** Construct a strategy with its own cooling schedule and epoch length.
+   *
+   * @param movesPerStop Epochs last this many moves for each stop in the graph
+   */
+  public SimulatedAnnealingOptimizationStrategy(SplittableRandom random,
+      CoolingSchedule schedule, int movesPerStop) {
+    if (movesPerStop < 1) {
+      throw new IllegalArgumentException("Need at least one move per stop: " + movesPerStop);
+    }
+    this.random = random;
+    this.schedule = schedule;
+    this.movesPerStop = movesPerStop;
+  }
+
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph) {
+    return getOptimalCycle(graph, SolveBudget.unlimited());
+  }
+
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph, SolveBudget budget) {
+    return getOptimalCycle(graph, budget, new Workspace());
+  }
+
+  /** As above, with the best tour and the prefix sums kept in the workspace. */
+  @Override
+  public Cycle<L, T> getOptimalCycle(Graph<L, T> graph, SolveBudget budget,
+      Workspace workspace) {
+    IndexedGraph<L, T> indexed = IndexedGraphAdapter.of(graph);
+    if (indexed.size() < 5) {
+      // Too small for three distinct kinds of move; any exact method is instant.
+      return new HeldKarpOptimizationStrategy<L, T>().getOptimalCycle(indexed);
+    }
+    workspace.reset();
+    Annealer annealer = new Annealer(indexed,
+        TourConstructions.NEAREST_NEIGHBOR.build(indexed, 0), random.split(), workspace);
+    annealer.anneal(budget);
+    return annealer.bestCycle();
+  }
+
+  /** The working state of one search. */
+  private final class Annealer {
+
+    private final IndexedGraph<L, T> graph;
+    private final SplittableRandom random;
+    private final int size;
+
+    private final int[] tour;
+    private long cost;
+    private final int[] best;
+    private long bestCost;
+
+    // On an asymmetric graph, forward[k] is the cost of walking the tour from position 0 to
+    // position k, and backward[k] the cost of walking the same vertices from position k back to
+    // position 0. Entries from position `dirty` on are stale.
+    private final boolean symmetric;
+    private final long[] forward;
+    private final long[] backward;
+    private int dirty;
+
+    // The workspace's arrays may be longer than the tour; only the first `size` entries are used.
+    Annealer(IndexedGraph<L, T> graph, int[] start, SplittableRandom random,
+        Workspace workspace) {
+      this.graph = graph;
+      this.random = random;
+      this.size = graph.size();
+      this.tour = start;
+      this.cost = Tours.cost(graph, start, 0, size);
+      this.best = workspace.ints(size);
+      System.arraycopy(start, 0, best, 0, size);
+      this.bestCost = cost;
+      this.symmetric = isSymmetric(graph);
+      this.forward = symmetric ? null : workspace.longs(size);
+      this.backward = symmetric ? null : workspace.longs(size);
+      if (!symmetric) {
+        forward[0] = 0;
+        backward[0] = 0;
+      }
+      this.dirty = 0;
+    }
+
+    /** Returns the best tour found so far, in an array of its own. */
+    Cycle<L, T> bestCycle() {
+      return new Cycle<L, T>(graph, Arrays.copyOf(best, size));
+    }
+
+    void anneal(SolveBudget budget) {
+      double initial = calibrate();
+      double temperature = initial;
+      long movesPerEpoch = (long) movesPerStop * size;
+      int reheats = 0;
+      int stale = 0;
+      budget.improved(bestCost, 0, this::bestCycle);
+      for (int epoch = 1; !budget.isExhausted(); ++epoch) {
+        long before = bestCost;
+        for (long m = 0; m < movesPerEpoch; ++m) {
+          step(temperature);
+        }
+        budget.charge(movesPerEpoch);
+
+        if (bestCost < before) {
+          stale = 0;
+          budget.improved(bestCost, epoch, this::bestCycle);
+        } else {
+          ++stale;
+        }
+        if (budget.isStalled(stale)) {
+          return;
+        }
+        temperature = schedule.next(temperature, initial);
+        if (temperature < initial * FROZEN) {
+          if (!budget.isBounded() && reheats == REHEATS) {
+            return;
+          }
+          ++reheats;
+          temperature = initial * REHEAT;
+          System.arraycopy(best, 0, tour, 0, size);
+          cost = bestCost;
+          dirty = 0;
+        }
+      }
+    }
+
+    /** Returns a temperature at which INITIAL_ACCEPTANCE of an average uphill move is accepted. */
+    private double calibrate() {
+      long uphill = 0;
+      int count = 0;
+      for (int s = 0; s < SAMPLES; ++s) {
+        int i = random.nextInt(size);
+        int j = random.nextInt(size);
+        if (i == j) {
+          continue;
+        }
+        long delta = reversalDelta(Math.min(i, j), Math.max(i, j));
+        if (delta > 0 && delta < IndexedGraph.UNREACHABLE) {
+          uphill += delta;
+          ++count;
+        }
+      }
+      if (count == 0) {
+        return 1;
+      }
+      return ((double) uphill / count) / -Math.log(INITIAL_ACCEPTANCE);
+    }
+
+    /** Propose one random move and apply it if the Metropolis criterion accepts it. */
+    private void step(double temperature) {
+      int i = random.nextInt(size);
+      int j = random.nextInt(size - 1);
+      if (j >= i) {
+        ++j;
+      }
+      int kind = random.nextInt(4);
+      if (kind < 2) {
+        // Segment reversals are the most useful move for routing, so they get half the steps.
+        int from = Math.min(i, j);
+        int to = Math.max(i, j);
+        if (to - from == size - 1) {
+          return;
+        }
+        long delta = reversalDelta(from, to);
+        if (accept(delta, temperature)) {
+          reverse(from, to);
+          moved(delta, from);
+        }
+      } else if (kind == 2) {
+        long delta = Tours.swap(graph, tour, 0, size, i, j);
+        if (accept(delta, temperature)) {
+          moved(delta, Math.min(i, j));
+        } else {
+          int tmp = tour[i];
+          tour[i] = tour[j];
+          tour[j] = tmp;
+        }
+      } else {
+        // Relocate the stop at i to just after the stop at j.
+        if ((i + size - 1) % size == j) {
+          return;
+        }
+        long delta = relocationDelta(i, j);
+        if (accept(delta, temperature)) {
+          relocate(i, j);
+          moved(delta, Math.min(i, j));
+        }
+      }
+    }
+
+    private boolean accept(long delta, double temperature) {
+      return delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature);
+    }
+
+    private void moved(long delta, int position) {
+      cost = Tours.update(graph, cost, delta, tour, 0, size);
+      dirty = Math.min(dirty, position);
+      if (cost < bestCost) {
+        bestCost = cost;
+        System.arraycopy(tour, 0, best, 0, size);
+      }
+    }
+
+    /** Change in cost from reversing positions FROM through TO, where TO - FROM < size - 1. */
+    private long reversalDelta(int from, int to) {
+      int a = tour[(from + size - 1) % size];
+      int b = tour[from];
+      int c = tour[to];
+      int d = tour[(to + 1) % size];
+      if (symmetric) {
+        return add(graph.getWeightAt(a, c), graph.getWeightAt(b, d))
+            - add(graph.getWeightAt(a, b), graph.getWeightAt(c, d));
+      }
+      refresh();
+      long added = add(add(graph.getWeightAt(a, c), graph.getWeightAt(b, d)),
+          backward[to] - backward[from]);
+      long removed = add(add(graph.getWeightAt(a, b), graph.getWeightAt(c, d)),
+          forward[to] - forward[from]);
+      return added - removed;
+    }
+
+    private void reverse(int from, int to) {
+      for (; from < to; ++from, --to) {
+        int tmp = tour[from];
+        tour[from] = tour[to];
+        tour[to] = tmp;
+      }
+    }
+
+    /** Change in cost from moving the stop at position FROM to just after the one at AFTER. */
+    private long relocationDelta(int from, int after) {
+      int p = tour[(from + size - 1) % size];
+      int v = tour[from];
+      int q = tour[(from + 1) % size];
+      int x = tour[after];
+      int y = tour[(after + 1) % size];
+      if (y == v) {
+        return 0;
+      }
+      // Both sides are sums, so that their difference cannot overflow.
+      long added = add(add(graph.getWeightAt(x, v), graph.getWeightAt(v, y)),
+          graph.getWeightAt(p, q));
+      long removed = add(add(graph.getWeightAt(p, v), graph.getWeightAt(v, q)),
+          graph.getWeightAt(x, y));
+      return added - removed;
+    }
+
+    private void relocate(int from, int after) {
+      int v = tour[from];
+      if (after > from) {
+        System.arraycopy(tour, from + 1, tour, from, after - from);
+        tour[after] = v;
+      } else {
+        System.arraycopy(tour, after + 1, tour, after + 2, from - after - 1);
+        tour[after + 1] = v;
+      }
+    }
+
+    /** Bring the prefix sums up to date with the tour. */
+    private void refresh() {
+      if (dirty >= size) {
+        return;
+      }
+      for (int k = Math.max(dirty, 1); k < size; ++k) {
+        forward[k] = add(forward[k - 1], graph.getWeightAt(tour[k - 1], tour[k]));
+        backward[k] = add(backward[k - 1], graph.getWeightAt(tour[k], tour[k - 1]));
+      }
+      dirty = size;
+    }
+  }
+
+  private static boolean isSymmetric(IndexedGraph<?, ?> graph) {
+    for (int i = 0; i < graph.size(); ++i) {
+      for (int j = i + 1; j < graph.size(); ++j) {
+        if (graph.getWeightAt(i, j) != graph.getWeightAt(j, i)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static long add(long a, long b) {
+    return IndexedGraph.add(a, b);
+  }
+}
@@ -0,0 +1,200 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-26
+
+package me.psanders.graph.path;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/** Limits on how long a strategy may search before it returns the best cycle found so far.
+ *
+ * <p>A budget may combine a wall-clock deadline, a cap on the number of candidate tours scored,
+ * and a number of generations without improvement after which an evolutionary search is taken to
+ * have converged. Any thread may also cancel it. Whichever limit is reached first ends the search.
+ * A budget is used up by a single solve, and strategies may charge it from several threads.
+ *
+ * <p>What counts as an evaluation depends on the strategy: a tour scored by the genetic
+ * algorithm, a vertex examined by local search, or a node of the branch and bound tree. Strategies
+ * that cannot stop early, such as <code>HeldKarpOptimizationStrategy</code>, ignore the budget.
+ *
+ * <p>A budget also carries an optional <code>IncumbentListener</code>. Strategies that honor
+ * budgets report each better cycle they find to it as they go.
+ *
+ * <code>
+ * SolveBudget budget = new SolveBudget.Builder()
+ *     .timeout(2, TimeUnit.SECONDS)
+ *     .stallGenerations(20)
+ *     .build();
+ * </code>
+ */
+public final class SolveBudget {
+
+  private static final long NONE = Long.MAX_VALUE;
+
+  private final boolean timed;
+  private final long deadline;
+  private final long maxEvaluations;
+  private final int stallGenerations;
+  private final long started;
+  private final IncumbentListener listener;
+
+  private final LongAdder evaluations;
+  private final SolveBudget parent;
+  private volatile boolean cancelled;
+
+  // The cost of the last cycle reported to the listener. Guarded by this budget's lock.
+  private long reported = Long.MAX_VALUE;
+
+  private SolveBudget(boolean timed, long deadline, long maxEvaluations, int stallGenerations,
+      long started, IncumbentListener listener, LongAdder evaluations, SolveBudget parent) {
+    this.timed = timed;
+    this.deadline = deadline;
+    this.maxEvaluations = maxEvaluations;
+    this.stallGenerations = stallGenerations;
+    this.started = started;
+    this.listener = listener;
+    this.evaluations = evaluations;
+    this.parent = parent;
+  }
+
+  /** Returns a budget with no limits, which ends only when cancelled. */
+  public static SolveBudget unlimited() {
+    return new Builder().build();
+  }
+
+  /** Ask the search to stop and return the best cycle it has found. */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /** Returns true if this budget, or the budget it was forked from, has been cancelled. */
+  public boolean isCancelled() {
+    return cancelled || (parent != null && parent.isCancelled());
+  }
+
+  /** Returns a budget with the same limits that also draws on this one's evaluations.
+   *
+   * <p>Cancelling this budget cancels the fork, but cancelling the fork leaves this budget alone,
+   * so a solver can stop the searches it started without stopping its caller. Cycles reported to
+   * the fork go to this budget's listener.
+   */
+  SolveBudget fork() {
+    return fork(null);
+  }
+
+  /** Returns a fork, as above, whose own listener hears of each better cycle before this one's.
+   *
+   * <p>This lets a solver running several searches at once learn of their progress as they go.
+   */
+  SolveBudget fork(IncumbentListener listener) {
+    return new SolveBudget(timed, deadline, maxEvaluations, stallGenerations, started, listener,
+        evaluations, this);
+  }
+
+  /** Report a cycle a strategy has found, if it is cheaper than every cycle reported so far.
+   *
+   * @param cycle Makes the cycle; only called if there is a listener to hand it to
+   */
+  void improved(long cost, int generation, Supplier<? extends Cycle<?, ?>> cycle) {
+    if (listener == null) {
+      if (parent != null) {
+        parent.improved(cost, generation, cycle);
+      }
+      return;
+    }
+    synchronized (this) {
+      if (cost >= reported) {
+        return;
+      }
+      reported = cost;
+      Cycle<?, ?> found = cycle.get();
+      long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+      listener.improved(found, cost, generation, elapsed);
+      if (parent != null) {
+        parent.improved(cost, generation, () -> found);
+      }
+    }
+  }
+
+  /** Returns true if the budget sets any limit that a search will reach on its own. */
+  public boolean isBounded() {
+    return timed || maxEvaluations != NONE || stallGenerations != Integer.MAX_VALUE;
+  }
+
+  /** Returns true once the search has been cancelled, run past its deadline, or used up its
+   * evaluations.
+   */
+  public boolean isExhausted() {
+    return isCancelled()
+        || (timed && System.nanoTime() - deadline >= 0)
+        || (maxEvaluations != NONE && evaluations.sum() >= maxEvaluations);
+  }
+
+  /** Returns true if this many generations without improvement means the search has converged. */
+  public boolean isStalled(int generationsWithoutImprovement) {
+    return generationsWithoutImprovement >= stallGenerations;
+  }
+
+  /** Record that a strategy has spent some evaluations. */
+  public void charge(long count) {
+    evaluations.add(count);
+  }
+
+  /** Returns the number of evaluations spent so far. */
+  public long getEvaluations() {
+    return evaluations.sum();
+  }
+
+  /** Collects the limits of a budget. Every limit is unset until given. */
+  public static final class Builder {
+
+    private long timeoutNanos = NONE;
+    private long maxEvaluations = NONE;
+    private int stallGenerations = Integer.MAX_VALUE;
+    private IncumbentListener listener;
+
+    /** Stop once this much time has passed since <code>build</code> was called. */
+    public Builder timeout(long duration, TimeUnit unit) {
+      if (duration < 0) {
+        throw new IllegalArgumentException("Timeout must not be negative: " + duration);
+      }
+      this.timeoutNanos = unit.toNanos(duration);
+      return this;
+    }
+
+    /** Stop once this many evaluations have been spent. */
+    public Builder maxEvaluations(long maxEvaluations) {
+      if (maxEvaluations < 0) {
+        throw new IllegalArgumentException("Evaluations must not be negative: " + maxEvaluations);
+      }
+      this.maxEvaluations = maxEvaluations;
+      return this;
+    }
+
+    /** Stop an evolutionary search after this many generations without a better cycle. */
+    public Builder stallGenerations(int stallGenerations) {
+      if (stallGenerations < 1) {
+        throw new IllegalArgumentException(
+            "Stall limit must be at least one generation: " + stallGenerations);
+      }
+      this.stallGenerations = stallGenerations;
+      return this;
+    }
+
+    /** Report each better cycle to the listener as the search finds it. */
+    public Builder listener(IncumbentListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    public SolveBudget build() {
+      // Timeouts too long to represent from now are as good as none.
+      long now = System.nanoTime();
+      boolean timed = timeoutNanos < NONE / 2;
+      long deadline = timed ? now + timeoutNanos : 0;
+      return new SolveBudget(timed, deadline, maxEvaluations, stallGenerations, now, listener,
+          new LongAdder(), null);
+    }
+  }
+}
@@ -0,0 +1,20 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-27
+
+package me.psanders.graph.path;
+
+import me.psanders.graph.IndexedGraph;
+
+/** Builds a reasonable tour from scratch, to seed a strategy that would otherwise start from a
+ * random one. See <code>TourConstructions</code> for the standard heuristics.
+ */
+public interface TourConstruction {
+
+  /** Returns a tour of the graph as a permutation of its vertex indices, starting at a vertex.
+   *
+   * <p>Heuristics that grow a tour from one vertex start from the given one, so calling this with
+   * different starts gives a diverse set of tours. The others simply rotate their tour to begin
+   * there.
+   */
+  int[] build(IndexedGraph<?, ?> graph, int start);
+}
@@ -0,0 +1,427 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-27
+
+package me.psanders.graph.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import me.psanders.graph.IndexedGraph;
+
+/** The standard construction heuristics for tours.
+ *
+ * <p>Roughly, from fastest and worst to slowest and best on planar instances: a space-filling
+ * curve is 25% or more above optimal, nearest neighbor about 25%, cheapest insertion about 15-20%
+ * and greedy edge about 15-20%. Any of them is a far better start than a random tour.
+ */
+public final class TourConstructions {
+
+  /** From the start, always travel to the nearest vertex not yet visited. O(n^2). */
+  public static final TourConstruction NEAREST_NEIGHBOR = TourConstructions::nearestNeighbor;
+
+  /** Take edges from cheapest to dearest, skipping any that would give a vertex a third edge or
+   * close a cycle early. O(n^2 log n). The start vertex only rotates the result.
+   */
+  public static final TourConstruction GREEDY_EDGE = TourConstructions::greedyEdge;
+
+  /** From the start, repeatedly insert whichever vertex adds least to the tour where it adds
+   * least. O(n^2) in practice, O(n^3) at worst.
+   */
+  public static final TourConstruction CHEAPEST_INSERTION = TourConstructions::cheapestInsertion;
+
+  // Space-filling curve: the points are placed on a grid of 2^BITS by 2^BITS cells.
+  private static final int BITS = 16;
+  private static final int MAX_CURVE_NODES = 1 << 20;
+
+  private TourConstructions() {}
+
+  /** Visit the vertices in the order of a Hilbert curve through their coordinates.
+   *
+   * <p>This only looks at the coordinates, never the graph, so it takes O(n log n) time and is
+   * the only choice for very large instances. The coordinates are treated as planar, which is
+   * close enough for longitude and latitude over a region the size of a country.
+   *
+   * @param xs The x coordinate, for example the longitude, of each vertex index
+   * @param ys The y coordinate, for example the latitude, of each vertex index
+   */
+  public static TourConstruction spaceFillingCurve(double[] xs, double[] ys) {
+    if (xs.length != ys.length) {
+      throw new IllegalArgumentException(
+          "Got " + xs.length + " x coordinates but " + ys.length + " y coordinates.");
+    }
+    if (xs.length > MAX_CURVE_NODES) {
+      throw new IllegalArgumentException(
+          "Space-filling curves support at most " + MAX_CURVE_NODES + " nodes.");
+    }
+    final double[] x = xs.clone();
+    final double[] y = ys.clone();
+    return (graph, start) -> {
+      if (graph.size() != x.length) {
+        throw new IllegalArgumentException(
+            "Have coordinates for " + x.length + " nodes, but the graph has " + graph.size());
+      }
+      return rotate(hilbertOrder(x, y), start);
+    };
+  }
+
+  /** Pick up from an earlier tour, for a graph whose stops have changed since.
+   *
+   * <p>Stops of the earlier tour keep their order and those no longer in the graph are dropped.
+   * Each stop it lacks is then inserted where it adds least, so after an edit of a few stops a
+   * good tour stays good and a solver started from it has little left to do. O(n) for each stop
+   * inserted. If none of the earlier stops remain, this is cheapest insertion.
+   *
+   * @param previous The labels of the earlier tour, in order
+   */
+  public static <L> TourConstruction warmStart(List<L> previous) {
+    final List<L> order = new ArrayList<L>(previous);
+    return (graph, start) -> {
+      @SuppressWarnings("unchecked")
+      IndexedGraph<L, ?> labelled = (IndexedGraph<L, ?>) graph;
+      return warmStart(labelled, order, start);
+    };
+  }
+
+  private static <L> int[] warmStart(IndexedGraph<L, ?> graph, List<L> previous, int start) {
+    int size = graph.size();
+    int[] next = new int[size];
+    boolean[] inTour = new boolean[size];
+    int first = -1;
+    int last = -1;
+    for (L label : previous) {
+      int v = graph.getIndex(label);
+      if (v < 0 || inTour[v]) {
+        continue;
+      }
+      if (first < 0) {
+        first = v;
+      } else {
+        next[last] = v;
+      }
+      inTour[v] = true;
+      last = v;
+    }
+    if (first < 0) {
+      return cheapestInsertion(graph, start);
+    }
+    next[last] = first;
+
+    for (int v = 0; v < size; ++v) {
+      if (inTour[v]) {
+        continue;
+      }
+      int before = first;
+      long bestCost = Long.MAX_VALUE;
+      int a = first;
+      do {
+        long cost = insertionCost(graph, a, v, next[a]);
+        if (cost < bestCost) {
+          bestCost = cost;
+          before = a;
+        }
+        a = next[a];
+      } while (a != first);
+      next[v] = next[before];
+      next[before] = v;
+      inTour[v] = true;
+    }
+
+    int[] tour = new int[size];
+    for (int i = 0, v = start; i < size; ++i, v = next[v]) {
+      tour[i] = v;
+    }
+    return tour;
+  }
+
+  private static int[] nearestNeighbor(IndexedGraph<?, ?> graph, int start) {
+    int size = graph.size();
+    int[] tour = new int[size];
+    boolean[] visited = new boolean[size];
+    if (size == 0) {
+      return tour;
+    }
+
+    tour[0] = start;
+    visited[start] = true;
+    for (int i = 1; i < size; ++i) {
+      int current = tour[i - 1];
+      int next = -1;
+      for (int j = 0; j < size; ++j) {
+        if (!visited[j] && (next < 0
+            || graph.getWeightAt(current, j) < graph.getWeightAt(current, next))) {
+          next = j;
+        }
+      }
+      tour[i] = next;
+      visited[next] = true;
+    }
+    return tour;
+  }
+
+  private static int[] greedyEdge(IndexedGraph<?, ?> graph, int start) {
+    int size = graph.size();
+    if (size < 3) {
+      return rotate(identity(size), start);
+    }
+
+    // Undirected edge {i, j} with i < j is numbered i * size + j. Pack each edge's weight above its
+    // number, as for the space-filling curve, so one primitive sort orders the edges.
+    long[] keys = new long[size * (size - 1) / 2];
+    long heaviest = 0;
+    for (int i = 0, k = 0; i < size; ++i) {
+      for (int j = i + 1; j < size; ++j, ++k) {
+        keys[k] = closeness(graph, i, j);
+        heaviest = Math.max(heaviest, keys[k]);
+      }
+    }
+    int bits = 64 - Long.numberOfLeadingZeros((long) size * size - 1);
+    if (heaviest >= 1L << (63 - bits)) {
+      // Weights this large do not fit above the edge numbers, but their ranks do.
+      long[] sorted = keys.clone();
+      Arrays.sort(sorted);
+      for (int k = 0; k < keys.length; ++k) {
+        keys[k] = Arrays.binarySearch(sorted, keys[k]);
+      }
+    }
+    for (int i = 0, k = 0; i < size; ++i) {
+      for (int j = i + 1; j < size; ++j, ++k) {
+        keys[k] = (keys[k] << bits) | (i * size + j);
+      }
+    }
+    Arrays.sort(keys);
+
+    int[] adjacent = new int[2 * size];
+    Arrays.fill(adjacent, -1);
+    int[] component = identity(size);
+    int added = 0;
+    long mask = (1L << bits) - 1;
+    for (long key : keys) {
+      int edge = (int) (key & mask);
+      int i = edge / size;
+      int j = edge % size;
+      if (adjacent[2 * i + 1] >= 0 || adjacent[2 * j + 1] >= 0) {
+        continue;
+      }
+      int rootI = find(component, i);
+      int rootJ = find(component, j);
+      if (rootI == rootJ) {
+        continue;
+      }
+      component[rootI] = rootJ;
+      connect(adjacent, i, j);
+      if (++added == size - 1) {
+        break;
+      }
+    }
+
+    // What is left is a single path; join its two ends.
+    int first = -1;
+    for (int v = 0; v < size; ++v) {
+      if (adjacent[2 * v + 1] < 0) {
+        if (first < 0) {
+          first = v;
+        } else {
+          connect(adjacent, first, v);
+          break;
+        }
+      }
+    }
+    return readCycle(graph, adjacent, start);
+  }
+
+  private static int[] cheapestInsertion(IndexedGraph<?, ?> graph, int start) {
+    int size = graph.size();
+    int[] next = new int[size];
+    boolean[] inTour = new boolean[size];
+    if (size == 0) {
+      return next;
+    }
+
+    // For each vertex outside the tour, the vertex after which it is cheapest to insert it.
+    int[] bestAfter = new int[size];
+    long[] bestCost = new long[size];
+
+    next[start] = start;
+    inTour[start] = true;
+    for (int v = 0; v < size; ++v) {
+      bestAfter[v] = start;
+      bestCost[v] = insertionCost(graph, start, v, start);
+    }
+
+    for (int step = 1; step < size; ++step) {
+      int vertex = -1;
+      for (int v = 0; v < size; ++v) {
+        if (!inTour[v] && (vertex < 0 || bestCost[v] < bestCost[vertex])) {
+          vertex = v;
+        }
+      }
+      int before = bestAfter[vertex];
+      int after = next[before];
+      next[before] = vertex;
+      next[vertex] = after;
+      inTour[vertex] = true;
+
+      // Only the edge (before, after) is gone; everything else just gained two candidates.
+      for (int v = 0; v < size; ++v) {
+        if (inTour[v]) {
+          continue;
+        }
+        if (bestAfter[v] == before) {
+          bestCost[v] = Long.MAX_VALUE;
+          int a = start;
+          do {
+            offerInsertion(graph, v, a, next[a], bestAfter, bestCost);
+            a = next[a];
+          } while (a != start);
+        } else {
+          offerInsertion(graph, v, before, vertex, bestAfter, bestCost);
+          offerInsertion(graph, v, vertex, after, bestAfter, bestCost);
+        }
+      }
+    }
+
+    int[] tour = new int[size];
+    for (int i = 0, v = start; i < size; ++i, v = next[v]) {
+      tour[i] = v;
+    }
+    return tour;
+  }
+
+  private static void offerInsertion(
+      IndexedGraph<?, ?> graph, int v, int a, int b, int[] bestAfter, long[] bestCost) {
+    long cost = insertionCost(graph, a, v, b);
+    if (cost < bestCost[v]) {
+      bestCost[v] = cost;
+      bestAfter[v] = a;
+    }
+  }
+
+  private static long insertionCost(IndexedGraph<?, ?> graph, int a, int v, int b) {
+    return IndexedGraph.add(graph.getWeightAt(a, v), graph.getWeightAt(v, b))
+        - graph.getWeightAt(a, b);
+  }
+
+  /** Sort the vertices by their distance along a Hilbert curve over the bounding square. */
+  private static int[] hilbertOrder(double[] xs, double[] ys) {
+    int size = xs.length;
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (int v = 0; v < size; ++v) {
+      minX = Math.min(minX, xs[v]);
+      minY = Math.min(minY, ys[v]);
+      maxX = Math.max(maxX, xs[v]);
+      maxY = Math.max(maxY, ys[v]);
+    }
+    double extent = Math.max(maxX - minX, maxY - minY);
+    double scale = extent > 0 ? ((1 << BITS) - 1) / extent : 0;
+
+    // Pack each vertex's distance along the curve above its index, so one sort orders both.
+    long[] keys = new long[size];
+    for (int v = 0; v < size; ++v) {
+      int x = (int) ((xs[v] - minX) * scale);
+      int y = (int) ((ys[v] - minY) * scale);
+      keys[v] = (hilbertDistance(x, y) << 20) | v;
+    }
+    Arrays.sort(keys);
+
+    int[] tour = new int[size];
+    for (int i = 0; i < size; ++i) {
+      tour[i] = (int) (keys[i] & (MAX_CURVE_NODES - 1));
+    }
+    return tour;
+  }
+
+  /** Distance of a grid cell along the Hilbert curve, after the usual iterative formulation. */
+  private static long hilbertDistance(int x, int y) {
+    int n = 1 << BITS;
+    long distance = 0;
+    for (int s = n / 2; s > 0; s /= 2) {
+      int rx = (x & s) > 0 ? 1 : 0;
+      int ry = (y & s) > 0 ? 1 : 0;
+      distance += (long) s * s * ((3 * rx) ^ ry);
+      // Rotate the quadrant so that the curve inside it runs the standard way.
+      if (ry == 0) {
+        if (rx == 1) {
+          x = n - 1 - x;
+          y = n - 1 - y;
+        }
+        int tmp = x;
+        x = y;
+        y = tmp;
+      }
+    }
+    return distance;
+  }
+
+  private static long closeness(IndexedGraph<?, ?> graph, int i, int j) {
+    return Math.min(graph.getWeightAt(i, j), graph.getWeightAt(j, i));
+  }
+
+  private static int find(int[] component, int v) {
+    while (component[v] != v) {
+      component[v] = component[component[v]];
+      v = component[v];
+    }
+    return v;
+  }
+
+  private static void connect(int[] adjacent, int a, int b) {
+    adjacent[adjacent[2 * a] < 0 ? 2 * a : 2 * a + 1] = b;
+    adjacent[adjacent[2 * b] < 0 ? 2 * b : 2 * b + 1] = a;
+  }
+
+  /** Read an undirected cycle, given as two neighbors per vertex, in its cheaper direction. */
+  private static int[] readCycle(IndexedGraph<?, ?> graph, int[] adjacent, int start) {
+    int size = adjacent.length / 2;
+    int[] tour = new int[size];
+    long forward = 0;
+    long backward = 0;
+    int previous = adjacent[2 * start];
+    int current = start;
+    for (int i = 0; i < size; ++i) {
+      tour[i] = current;
+      int next = adjacent[2 * current] == previous ? adjacent[2 * current + 1]
+          : adjacent[2 * current];
+      forward = IndexedGraph.add(forward, graph.getWeightAt(current, next));
+      backward = IndexedGraph.add(backward, graph.getWeightAt(next, current));
+      previous = current;
+      current = next;
+    }
+    if (backward < forward) {
+      // Keep the start in front and walk the rest the other way.
+      for (int i = 1, j = size - 1; i < j; ++i, --j) {
+        int tmp = tour[i];
+        tour[i] = tour[j];
+        tour[j] = tmp;
+      }
+    }
+    return tour;
+  }
+
+  private static int[] identity(int size) {
+    int[] tour = new int[size];
+    for (int i = 0; i < size; ++i) {
+      tour[i] = i;
+    }
+    return tour;
+  }
+
+  private static int[] rotate(int[] tour, int start) {
+    int size = tour.length;
+    int offset = 0;
+    while (offset < size && tour[offset] != start) {
+      ++offset;
+    }
+    if (offset == size) {
+      return tour;
+    }
+    int[] rotated = new int[size];
+    for (int i = 0; i < size; ++i) {
+      rotated[i] = tour[(offset + i) % size];
+    }
+    return rotated;
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-12
+
+package me.psanders.graph.path;
+
+import java.util.SplittableRandom;
+
+import me.psanders.graph.IndexedGraph;
+
+/** Operations on cycles stored as runs of vertex indices inside a larger int array.
+ *
+ * <p>A tour of <code>length</code> vertices occupies <code>tours[offset]</code> through
+ * <code>tours[offset + length - 1]</code>, and the last vertex connects back to the first. None
+ * of these methods allocate, so they may be used freely in the inner loops of the optimizers.
+ */
+final class Tours {
+
+  private Tours() {}
+
+  /** Fill a tour with a uniformly random permutation of the vertices 0 to length - 1. */
+  static void shuffle(int[] tours, int offset, int length, SplittableRandom random) {
+    for (int i = 0; i < length; ++i) {
+      tours[offset + i] = i;
+    }
+    // Same procedure as Collections.shuffle: Fisher-Yates from the back.
+    for (int i = length - 1; i > 0; --i) {
+      int j = random.nextInt(i + 1);
+      int tmp = tours[offset + i];
+      tours[offset + i] = tours[offset + j];
+      tours[offset + j] = tmp;
+    }
+  }
+
+  /** Returns the total cost of a tour, including the edge from its last vertex to its first.
+   *
+   * <p>The sum saturates, see <code>IndexedGraph.add</code>.
+   */
+  static long cost(IndexedGraph<?, ?> graph, int[] tours, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    long cost = graph.getWeightAt(tours[offset + length - 1], tours[offset]);
+    for (int i = 1; i < length; ++i) {
+      cost = IndexedGraph.add(cost, graph.getWeightAt(tours[offset + i - 1], tours[offset + i]));
+    }
+    return cost;
+  }
+
+  /** Returns the cost of a tour after a move that changed it by DELTA.
+   *
+   * <p>Deltas are exact while neither the tour nor the move involves an unreachable edge. Past
+   * that the costs have saturated, see <code>IndexedGraph.add</code>, so the tour is summed again.
+   */
+  static long update(IndexedGraph<?, ?> graph, long cost, long delta, int[] tours, int offset,
+      int length) {
+    if (cost >= IndexedGraph.UNREACHABLE || delta >= IndexedGraph.UNREACHABLE) {
+      return cost(graph, tours, offset, length);
+    }
+    return cost + delta;
+  }
+
+  /** Exchange the vertices at positions A and B of a tour.
+   *
+   * @return The change in the cost of the tour
+   */
+  static long swap(IndexedGraph<?, ?> graph, int[] tours, int offset, int length, int a, int b) {
+    if (a == b) {
+      return 0;
+    }
+    long before = edgesAround(graph, tours, offset, length, a, b);
+    int tmp = tours[offset + a];
+    tours[offset + a] = tours[offset + b];
+    tours[offset + b] = tmp;
+    return edgesAround(graph, tours, offset, length, a, b) - before;
+  }
+
+  /** Apply a random double-bridge move: cut the tour into A B C D and reconnect it as A C B D.
+   *
+   * <p>No 2-opt or Or-opt move undoes this in one step, but it keeps all but four edges, so it is
+   * a cheap way to make a variant of a good tour that is still good.
+   */
+  static void doubleBridge(int[] tours, int offset, int length, SplittableRandom random) {
+    if (length < 8) {
+      return;
+    }
+    // Cut points 0 < i < j < k < length, so every piece is non-empty.
+    int i = 1 + random.nextInt(length - 3);
+    int j = i + 1 + random.nextInt(length - i - 2);
+    int k = j + 1 + random.nextInt(length - j - 1);
+
+    // Exchanging the adjacent blocks B and C is three reversals: of each, then of both.
+    reverse(tours, offset + i, offset + j - 1);
+    reverse(tours, offset + j, offset + k - 1);
+    reverse(tours, offset + i, offset + k - 1);
+  }
+
+  private static void reverse(int[] tours, int from, int to) {
+    for (; from < to; ++from, --to) {
+      int tmp = tours[from];
+      tours[from] = tours[to];
+      tours[to] = tmp;
+    }
+  }
+
+  /** Sum the edges entering and leaving positions A and B, counting shared edges once. */
+  private static long edgesAround(
+      IndexedGraph<?, ?> graph, int[] tours, int offset, int length, int a, int b) {
+    // Edge k leaves position k.
+    int e0 = (a + length - 1) % length;
+    int e1 = a;
+    int e2 = (b + length - 1) % length;
+    int e3 = b;
+
+    long sum = IndexedGraph.add(
+        edge(graph, tours, offset, length, e0), edge(graph, tours, offset, length, e1));
+    if (e2 != e0 && e2 != e1) {
+      sum = IndexedGraph.add(sum, edge(graph, tours, offset, length, e2));
+    }
+    if (e3 != e0 && e3 != e1 && e3 != e2) {
+      sum = IndexedGraph.add(sum, edge(graph, tours, offset, length, e3));
+    }
+    return sum;
+  }
+
+  private static long edge(IndexedGraph<?, ?> graph, int[] tours, int offset, int length, int k) {
+    return graph.getWeightAt(tours[offset + k], tours[offset + (k + 1) % length]);
+  }
+}
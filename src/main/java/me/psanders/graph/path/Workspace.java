@@ -0,0 +1,68 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-02-01
+
+package me.psanders.graph.path;
+
+import java.util.Arrays;
+
+/** Working arrays that one thread reuses from one solve to the next.
+ *
+ * <p>A search of a dozen stops allocates a dozen small arrays, which for thousands of such
+ * searches costs more than the searching. A workspace keeps the arrays and hands them out again:
+ * after each <code>reset</code>, the k-th array of a type that is asked for is the k-th one handed
+ * out last time, replaced only if it is too short. A solver that asks for its arrays in the same
+ * order every time therefore allocates only when a graph is larger than any it has seen.
+ *
+ * <p>Arrays may be longer than asked for, and hold whatever their last user left in them. They
+ * stay valid until the next <code>reset</code>. A workspace must not be used by more than one
+ * thread at a time.
+ */
+final class Workspace {
+
+  private int[][] ints = new int[0][];
+  private long[][] longs = new long[0][];
+  private boolean[][] booleans = new boolean[0][];
+  private int intsTaken;
+  private int longsTaken;
+  private int booleansTaken;
+
+  /** Make every array available again, for a new solve. */
+  void reset() {
+    intsTaken = 0;
+    longsTaken = 0;
+    booleansTaken = 0;
+  }
+
+  /** Returns an int array of at least the given length, not handed out since the last reset. */
+  int[] ints(int length) {
+    if (intsTaken == ints.length) {
+      ints = Arrays.copyOf(ints, intsTaken + 1);
+    }
+    if (ints[intsTaken] == null || ints[intsTaken].length < length) {
+      ints[intsTaken] = new int[length];
+    }
+    return ints[intsTaken++];
+  }
+
+  /** Returns a long array of at least the given length, not handed out since the last reset. */
+  long[] longs(int length) {
+    if (longsTaken == longs.length) {
+      longs = Arrays.copyOf(longs, longsTaken + 1);
+    }
+    if (longs[longsTaken] == null || longs[longsTaken].length < length) {
+      longs[longsTaken] = new long[length];
+    }
+    return longs[longsTaken++];
+  }
+
+  /** Returns a boolean array of at least the given length, not handed out since the last reset. */
+  boolean[] booleans(int length) {
+    if (booleansTaken == booleans.length) {
+      booleans = Arrays.copyOf(booleans, booleansTaken + 1);
+    }
+    if (booleans[booleansTaken] == null || booleans[booleansTaken].length < length) {
+      booleans[booleansTaken] = new boolean[length];
+    }
+    return booleans[booleansTaken++];
+  }
+}
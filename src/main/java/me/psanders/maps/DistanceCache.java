@@ -0,0 +1,306 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-02
+
+package me.psanders.maps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.maps.model.Distance;
+import com.google.maps.model.DistanceMatrixElement;
+import com.google.maps.model.DistanceMatrixElementStatus;
+import com.google.maps.model.Duration;
+
+/** A persistent cache of distance matrix elements, one for each pair of places.
+ *
+ * <p>Elements are keyed by the origin and destination exactly as the user typed them, together
+ * with the route options they were fetched under, so that the same trip asked for again the same
+ * way need not go to the API at all. Each element keeps the addresses Google resolved the two
+ * places to, which <code>LocationGraphFactory</code> needs to tell duplicate places apart.
+ *
+ * <p>The whole cache is held in memory and backed by an append-only log: every element put is
+ * written to the end of the file, and reopening the file replays the log, later records winning.
+ * A log cut short by a crash loses only its last, partial record. Elements older than the
+ * time-to-live are ignored. Once the cache holds more than its maximum number of elements, or the
+ * log holds more than twice as many records as the cache has live elements, the oldest elements
+ * are evicted and the log is rewritten without them.
+ *
+ * <p>All methods are synchronized, so one cache may serve concurrent requests.
+ */
+public class DistanceCache {
+
+  static final long DEFAULT_TTL_MILLIS = 30L * 24 * 60 * 60 * 1000;
+  static final int DEFAULT_MAX_ENTRIES = 1000000;
+
+  // "DCv1": changing the record layout means changing this, which discards old caches.
+  private static final int MAGIC = 0x44437631;
+  // "DC", the part of the header shared by every version.
+  private static final int FAMILY = 0x4443;
+
+  private final File file;
+  private final long ttlMillis;
+  private final int maxEntries;
+  private final Clock clock;
+
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+  private DataOutputStream log;
+  private int records;
+
+  /** Open the cache in a file with the default time-to-live and size. */
+  public DistanceCache(File file) throws IOException {
+    this(file, DEFAULT_TTL_MILLIS, DEFAULT_MAX_ENTRIES);
+  }
+
+  /** Open the cache in a file, creating the file if there is none.
+   *
+   * @param ttlMillis How long an element stays usable after it was fetched
+   * @param maxEntries The most elements to keep; the oldest beyond this are evicted
+   * @throws IOException If the file cannot be used, or holds something other than a cache
+   */
+  public DistanceCache(File file, long ttlMillis, int maxEntries) throws IOException {
+    this(file, ttlMillis, maxEntries, Clock.systemUTC());
+  }
+
+  DistanceCache(File file, long ttlMillis, int maxEntries, Clock clock) throws IOException {
+    if (ttlMillis <= 0 || maxEntries <= 0) {
+      throw new IllegalArgumentException(
+          "Time-to-live and size must be positive: " + ttlMillis + ", " + maxEntries);
+    }
+    this.file = file;
+    this.ttlMillis = ttlMillis;
+    this.maxEntries = maxEntries;
+    this.clock = clock;
+
+    boolean clean = load();
+    if (!clean || entries.size() > maxEntries) {
+      compact();
+    } else {
+      open(file.length() == 0);
+    }
+  }
+
+  /** Returns the live element for a pair of places, or null if there is none. */
+  public synchronized Entry get(String origin, String destination, String options) {
+    String key = key(origin, destination, options);
+    Entry entry = entries.get(key);
+    if (entry != null && isExpired(entry)) {
+      entries.remove(key);
+      return null;
+    }
+    return entry;
+  }
+
+  /** Add an element fetched just now for a pair of places, replacing any older one.
+   *
+   * @return The entry as cached
+   */
+  public synchronized Entry put(String origin, String destination, String options,
+      String originAddress, String destinationAddress, DistanceMatrixElement element)
+      throws IOException {
+    return put(origin, destination, options, originAddress, destinationAddress, element.status,
+        element.distance == null ? 0 : element.distance.inMeters,
+        element.duration == null ? 0 : element.duration.inSeconds);
+  }
+
+  /** Add an element fetched just now, given by its status, distance and duration.
+   *
+   * @return The entry as cached
+   */
+  public synchronized Entry put(String origin, String destination, String options,
+      String originAddress, String destinationAddress, DistanceMatrixElementStatus status,
+      long meters, long seconds) throws IOException {
+    Entry entry = new Entry(origin, destination, options, originAddress, destinationAddress,
+        status, meters, seconds, clock.millis());
+    entries.put(key(origin, destination, options), entry);
+    write(log, entry);
+    ++records;
+
+    if (entries.size() > maxEntries || records > 2 * Math.max(entries.size(), maxEntries / 2)) {
+      compact();
+    }
+    return entry;
+  }
+
+  /** Write any buffered records to the file. */
+  public synchronized void flush() throws IOException {
+    log.flush();
+  }
+
+  /** Flush and close the file. The cache cannot be used afterwards. */
+  public synchronized void close() throws IOException {
+    log.close();
+  }
+
+  /** Returns the number of elements held, including any that have expired but not been read. */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** One cached element: the resolved addresses of a pair of places and the leg between them. */
+  public static final class Entry {
+
+    private final String origin;
+    private final String destination;
+    private final String options;
+    private final String originAddress;
+    private final String destinationAddress;
+    private final DistanceMatrixElementStatus status;
+    private final long meters;
+    private final long seconds;
+    private final long fetchedMillis;
+
+    Entry(String origin, String destination, String options, String originAddress,
+        String destinationAddress, DistanceMatrixElementStatus status, long meters, long seconds,
+        long fetchedMillis) {
+      this.origin = origin;
+      this.destination = destination;
+      this.options = options;
+      this.originAddress = originAddress;
+      this.destinationAddress = destinationAddress;
+      this.status = status;
+      this.meters = meters;
+      this.seconds = seconds;
+      this.fetchedMillis = fetchedMillis;
+    }
+
+    public String getOriginAddress() {
+      return originAddress;
+    }
+
+    public String getDestinationAddress() {
+      return destinationAddress;
+    }
+
+    /** Returns a new element equivalent to the one that was cached. */
+    public DistanceMatrixElement toElement() {
+      DistanceMatrixElement element = new DistanceMatrixElement();
+      element.status = status;
+      if (status == DistanceMatrixElementStatus.OK) {
+        element.distance = new Distance();
+        element.distance.inMeters = meters;
+        element.duration = new Duration();
+        element.duration.inSeconds = seconds;
+      }
+      return element;
+    }
+  }
+
+  private boolean isExpired(Entry entry) {
+    return clock.millis() - entry.fetchedMillis >= ttlMillis;
+  }
+
+  private static String key(String origin, String destination, String options) {
+    return origin + '\u0000' + destination + '\u0000' + options;
+  }
+
+  /** Replay the log into memory, returning false if it was damaged and needs rewriting.
+   *
+   * @throws IOException If the file is not a cache at all, which we must not overwrite
+   */
+  private boolean load() throws IOException {
+    if (!file.exists() || file.length() == 0) {
+      return true;
+    }
+    try (PushbackInputStream stream = new PushbackInputStream(
+        new BufferedInputStream(new FileInputStream(file)))) {
+      DataInputStream in = new DataInputStream(stream);
+      int header = file.length() < 4 ? 0 : in.readInt();
+      if (header >>> 16 != FAMILY) {
+        throw new IOException(file + " is not a distance cache.");
+      }
+      if (header != MAGIC) {
+        // A cache of another version, which we can only discard.
+        return false;
+      }
+      for (int next = stream.read(); next >= 0; next = stream.read()) {
+        stream.unread(next);
+        Entry entry = read(in);
+        ++records;
+        if (!isExpired(entry)) {
+          entries.put(key(entry.origin, entry.destination, entry.options), entry);
+        }
+      }
+      return true;
+    } catch (EOFException | UTFDataFormatException | IllegalArgumentException e) {
+      // A record cut off part way, or a status we no longer know.
+      return false;
+    }
+  }
+
+  /** Evict expired and excess elements and rewrite the log with only the rest. */
+  private void compact() throws IOException {
+    List<Entry> live = new ArrayList<Entry>();
+    for (Entry entry : entries.values()) {
+      if (!isExpired(entry)) {
+        live.add(entry);
+      }
+    }
+    // Keep three quarters of the maximum so that compaction does not happen on every put.
+    int keep = entries.size() > maxEntries ? maxEntries - maxEntries / 4 : live.size();
+    if (live.size() > keep) {
+      live.sort((a, b) -> Long.compare(b.fetchedMillis, a.fetchedMillis));
+      live = live.subList(0, keep);
+    }
+
+    if (log != null) {
+      log.close();
+    }
+    File tmp = new File(file.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(tmp)))) {
+      out.writeInt(MAGIC);
+      for (Entry entry : live) {
+        write(out, entry);
+      }
+    }
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    entries.clear();
+    for (Entry entry : live) {
+      entries.put(key(entry.origin, entry.destination, entry.options), entry);
+    }
+    records = live.size();
+    open(false);
+  }
+
+  private void open(boolean empty) throws IOException {
+    log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    if (empty) {
+      log.writeInt(MAGIC);
+    }
+  }
+
+  private static void write(DataOutputStream out, Entry entry) throws IOException {
+    out.writeUTF(entry.origin);
+    out.writeUTF(entry.destination);
+    out.writeUTF(entry.options);
+    out.writeUTF(entry.originAddress);
+    out.writeUTF(entry.destinationAddress);
+    out.writeUTF(entry.status.name());
+    out.writeLong(entry.meters);
+    out.writeLong(entry.seconds);
+    out.writeLong(entry.fetchedMillis);
+  }
+
+  private static Entry read(DataInputStream in) throws IOException {
+    return new Entry(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+        DistanceMatrixElementStatus.valueOf(in.readUTF()), in.readLong(), in.readLong(),
+        in.readLong());
+  }
+}
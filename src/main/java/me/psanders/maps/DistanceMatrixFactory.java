@@ -3,7 +3,7 @@
 package me.psanders.maps;
 
 
-import com.google.maps.DirectionsApi;
+import com.google.maps.DirectionsApi.RouteRestriction;
 import com.google.maps.DistanceMatrixApi;
 import com.google.maps.DistanceMatrixApiRequest;
 import com.google.maps.GeoApiContext;
@@ -12,57 +12,402 @@ import com.google.maps.model.DistanceMatrix;
 import com.google.maps.model.TravelMode;
 import org.apache.commons.cli.CommandLine;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
-public class DistanceMatrixFactory {
+public class DistanceMatrixFactory implements DistanceProvider {
 
+  // Requests in flight at once, and the element rate they share. Both are well inside the limits
+  // of a standard key; a premium key may raise them through the full constructor.
+  static final int PARALLELISM = 4;
+  static final int ELEMENTS_PER_SECOND = 1000;
+
+  // Exactly one of these is set: the context for requests made through the client library by
+  // fetch, or the endpoint for requests streamed by fetchTile.
   private GeoApiContext context;
+  private StreamingEndpoint endpoint;
   private String[] places;
   private CommandLine flags;
+  private TravelMode mode;
+  private DistanceCache cache;
+  private int parallelism;
+  private TokenBucket bucket;
 
   public DistanceMatrixFactory(GeoApiContext context, String[] places, CommandLine flags) {
+    this(context, places, flags, null);
+  }
+
+  /** Construct a factory that streams each response into its table, rather than going through
+   * the client library. See <code>fetchTile</code>.
+   *
+   * @param cache Holds elements from earlier requests and receives the ones fetched; null for none
+   */
+  public DistanceMatrixFactory(StreamingEndpoint endpoint, String[] places, CommandLine flags,
+      DistanceCache cache) {
+    this(endpoint, places, flags, cache, PARALLELISM,
+        new TokenBucket(ELEMENTS_PER_SECOND, ELEMENTS_PER_SECOND));
+  }
+
+  /** Construct a factory that only asks the API for pairs of places missing from a cache.
+   *
+   * @param cache Holds elements from earlier requests and receives the ones fetched; null for none
+   */
+  public DistanceMatrixFactory(GeoApiContext context, String[] places, CommandLine flags,
+      DistanceCache cache) {
+    this(context, places, flags, cache, PARALLELISM,
+        new TokenBucket(ELEMENTS_PER_SECOND, ELEMENTS_PER_SECOND));
+  }
+
+  /** Construct a factory with its own limits on how hard it may use the API.
+   *
+   * @param parallelism The most requests to have in flight at once
+   * @param bucket Paces the requests, taking one permit for each element; may be shared
+   */
+  public DistanceMatrixFactory(GeoApiContext context, String[] places, CommandLine flags,
+      DistanceCache cache, int parallelism, TokenBucket bucket) {
+    this(context, null, places, flags, cache, parallelism, bucket);
+  }
+
+  /** Construct a streaming factory with its own limits on how hard it may use the API. */
+  public DistanceMatrixFactory(StreamingEndpoint endpoint, String[] places, CommandLine flags,
+      DistanceCache cache, int parallelism, TokenBucket bucket) {
+    this(null, endpoint, places, flags, cache, parallelism, bucket);
+  }
+
+  private DistanceMatrixFactory(GeoApiContext context, StreamingEndpoint endpoint,
+      String[] places, CommandLine flags, DistanceCache cache, int parallelism,
+      TokenBucket bucket) {
     this.context = context;
+    this.endpoint = endpoint;
     this.places = places;
     this.flags = flags;
+    this.mode = getMode(flags);
+    this.cache = cache;
+    this.parallelism = parallelism;
+    this.bucket = bucket;
   }
 
-  /** Get the distance matrix containing the distance between each pair of places passed in.
+  /** Get the distances and travel times between each pair of places passed in.
    *
    * <p>Flags are used to control the API Request. For more details, see `getOptions`.
    *
+   * <p>With a cache, only the pairs it lacks are requested. Places whose rows lack the same
+   * destinations are requested together, so adding a stop to a cached trip costs one request for
+   * the new column and one for the new row, rather than the whole matrix again.
+   *
+   * <p>Each block of pairs is cut into tiles small enough for one request and fetched
+   * concurrently, see <code>TiledMatrixFetcher</code>, and each tile is written into the table
+   * as it arrives. See <code>fetchTile</code> for how a tile is read.
    */
-  public DistanceMatrix build()
+  @Override
+  public DistanceTable build()
       throws IllegalStateException, InterruptedException, ApiException, IOException {
-    DistanceMatrixApiRequest request = DistanceMatrixApi.
-        getDistanceMatrix(context, places, places);
-
-    if (flags.hasOption("scenic")) {
-      request = request.avoid(DirectionsApi.RouteRestriction.HIGHWAYS)
-          .avoid(DirectionsApi.RouteRestriction.TOLLS);
-    }
-    if (flags.hasOption("no-fee")) {
-      request = request.avoid(DirectionsApi.RouteRestriction.TOLLS)
-          .avoid(DirectionsApi.RouteRestriction.FERRIES);
-    }
-    if (flags.hasOption("mode")) {
-      switch (flags.getOptionValue("mode")) {
-        case "driving":
-          request = request.mode(TravelMode.DRIVING);
-          break;
-        case "transit":
-          request = request.mode(TravelMode.TRANSIT);
-          break;
-        case "bicycling":
-          request = request.mode(TravelMode.BICYCLING);
-          break;
-        case "walking":
-          request = request.mode(TravelMode.WALKING);
-          break;
-        default:
-          System.out.println("Invalid transportation mode. Options include:");
-          System.out.println("    driving, transit, bicycling, walking");
+    int size = places.length;
+    DistanceTable table = new DistanceTable(places);
+    if (size == 0) {
+      // There are no tiles, but the request still tells us whether the key is any good.
+      fetchTile(places, places);
+      return table;
+    }
+
+    int[] all = range(0, size);
+    fill(table, all, all);
+    return table;
+  }
+
+  /** Extend a table built earlier with one more place, fetching only the legs to and from it.
+   *
+   * <p>That is 2n-1 elements for a table of n places afterwards, where <code>build</code> would
+   * fetch all n^2 of them again. Dropping a place needs no request at all; see
+   * <code>DistanceTable.withoutPlace</code>.
+   *
+   * @return A new table, the given one unchanged
+   */
+  public DistanceTable addPlace(DistanceTable table, String place)
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    int last = table.size();
+    DistanceTable grown = table.withPlace(place);
+    fill(grown, new int[] {last}, range(0, last + 1));
+    fill(grown, range(0, last), new int[] {last});
+    return grown;
+  }
+
+  /** Fill in the legs from ROWS to COLUMNS, from the cache where it has them. */
+  private void fill(DistanceTable table, int[] rows, int[] columns)
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    int[][] each = new int[rows.length][];
+    Arrays.fill(each, columns);
+    fill(table, rows, each);
+  }
+
+  /** Fill in the legs from each of ROWS to its own COLUMNS, from the cache where it has them.
+   *
+   * <p>Rows that lack the same columns are fetched together, as one block of tiles, and the tiles
+   * of all the blocks are fetched concurrently.
+   *
+   * @param columns The columns wanted for <code>rows[k]</code> are <code>columns[k]</code>
+   */
+  void fill(DistanceTable table, int[] rows, int[][] columns)
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    String options = getOptionsKey();
+
+    // Group the rows by the columns they are missing.
+    Map<List<Integer>, List<Integer>> missing = new LinkedHashMap<List<Integer>, List<Integer>>();
+    for (int k = 0; k < rows.length; ++k) {
+      int i = rows[k];
+      List<Integer> lacking = new ArrayList<Integer>();
+      for (int j : columns[k]) {
+        DistanceCache.Entry entry = cache == null ? null
+            : cache.get(table.getPlace(i), table.getPlace(j), options);
+        if (entry == null) {
+          lacking.add(j);
+        } else {
+          table.setAddress(i, entry.getOriginAddress());
+          table.set(i, j, entry.toElement());
+        }
+      }
+      if (!lacking.isEmpty()) {
+        missing.computeIfAbsent(lacking, key -> new ArrayList<Integer>()).add(i);
       }
     }
+
+    List<int[][]> blocks = new ArrayList<int[][]>();
+    for (Map.Entry<List<Integer>, List<Integer>> group : missing.entrySet()) {
+      blocks.add(new int[][] {toArray(group.getValue()), toArray(group.getKey())});
+    }
+    new TiledMatrixFetcher(this::fetchTile, parallelism, bucket).fetch(table.getPlaces(), blocks,
+        (tileRows, tileColumns, tile) -> store(table, options, tileRows, tileColumns, tile));
+    if (cache != null) {
+      cache.flush();
+    }
+  }
+
+  /** Returns the places this factory was constructed with, as they are sent to the API. */
+  String[] getPlaces() {
+    return places.clone();
+  }
+
+  /** Ask the API for one tile of the matrix, between some origins and some destinations.
+   *
+   * <p>A factory constructed with a <code>StreamingEndpoint</code> makes the request here and
+   * streams its response through <code>DistanceMatrixReader</code> straight into the tile's
+   * primitive arrays, so the elements never exist as objects. Otherwise, as when a subclass
+   * answers from somewhere other than the network, the tile is copied from what
+   * <code>fetch</code> returns. It is called for several tiles at once, from the fetcher's
+   * threads.
+   *
+   * <p>Streamed requests keep to the endpoint's query rate as well as the fetcher's element rate,
+   * and one that fails with a server error is sent again, after a backoff that doubles each time,
+   * up to the endpoint's number of retries. An error response throws the same
+   * <code>ApiException</code> the client library would.
+   */
+  MatrixTile fetchTile(String[] origins, String[] destinations)
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    if (endpoint == null) {
+      return MatrixTile.of(fetch(origins, destinations));
+    }
+    URL url = getUrl(origins, destinations);
+    long backoff = TiledMatrixFetcher.INITIAL_BACKOFF_MILLIS;
+    for (int retries = 0; ; ++retries) {
+      endpoint.acquire();
+      try (Reader in = open(url)) {
+        return DistanceMatrixReader.read(in, origins.length, destinations.length);
+      } catch (ServerErrorException e) {
+        if (retries == endpoint.getMaxRetries()) {
+          throw e;
+        }
+        TimeUnit.MILLISECONDS.sleep(backoff);
+        backoff *= 2;
+      }
+    }
+  }
+
+  /** Ask the API for the matrix between some origins and some destinations.
+   *
+   * <p>This goes to the network through the client library, and the request carries the options
+   * chosen by the flags.
+   */
+  protected DistanceMatrix fetch(String[] origins, String[] destinations)
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    DistanceMatrixApiRequest request = DistanceMatrixApi.
+        getDistanceMatrix(context, origins, destinations);
+
+    for (RouteRestriction restriction : getRestrictions()) {
+      request = request.avoid(restriction);
+    }
+    if (mode != null) {
+      request = request.mode(mode);
+    }
     return request.await();
   }
-}
\ No newline at end of file
+
+  /** Returns the URL of a streamed request with the options chosen by the flags. */
+  URL getUrl(String[] origins, String[] destinations) throws IOException {
+    StringBuilder query = new StringBuilder()
+        .append("origins=").append(encode(String.join("|", origins)))
+        .append("&destinations=").append(encode(String.join("|", destinations)));
+    if (mode != null) {
+      query.append("&mode=").append(mode.toUrlValue());
+    }
+    Set<RouteRestriction> restrictions = getRestrictions();
+    if (!restrictions.isEmpty()) {
+      List<String> avoid = new ArrayList<String>();
+      for (RouteRestriction restriction : restrictions) {
+        avoid.add(restriction.toUrlValue());
+      }
+      query.append("&avoid=").append(encode(String.join("|", avoid)));
+    }
+    return endpoint.getUrl(query.toString());
+  }
+
+  /** Send a request and return its response as it streams in. This is the only method that
+   * goes to the network without the client library.
+   *
+   * @throws ApiException If the request failed and the response says why
+   * @throws ServerErrorException If the server failed without saying why, and may not next time
+   * @throws IOException If the request failed for any other reason
+   */
+  Reader open(URL url) throws ApiException, IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(endpoint.getConnectTimeoutMillis());
+    connection.setReadTimeout(endpoint.getReadTimeoutMillis());
+    int code = connection.getResponseCode();
+    if (code != HttpURLConnection.HTTP_OK) {
+      ApiException error = null;
+      InputStream body = connection.getErrorStream();
+      if (body != null) {
+        try (Reader in = reader(body)) {
+          error = DistanceMatrixReader.readError(in);
+        }
+      }
+      connection.disconnect();
+      if (error != null) {
+        throw error;
+      }
+      String message = "The Distance Matrix API answered with HTTP status " + code + ".";
+      if (code >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+        throw new ServerErrorException(message);
+      }
+      throw new IOException(message);
+    }
+    return reader(connection.getInputStream());
+  }
+
+  /** A request that failed on the server's side, which the client library would retry. */
+  static final class ServerErrorException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    ServerErrorException(String message) {
+      super(message);
+    }
+  }
+
+  private static Reader reader(InputStream in) {
+    return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+  }
+
+  private Set<RouteRestriction> getRestrictions() {
+    Set<RouteRestriction> restrictions = new LinkedHashSet<RouteRestriction>();
+    if (flags != null && flags.hasOption("scenic")) {
+      restrictions.add(RouteRestriction.HIGHWAYS);
+      restrictions.add(RouteRestriction.TOLLS);
+    }
+    if (flags != null && flags.hasOption("no-fee")) {
+      restrictions.add(RouteRestriction.TOLLS);
+      restrictions.add(RouteRestriction.FERRIES);
+    }
+    return restrictions;
+  }
+
+  /** Returns the mode chosen by the flags, or null for Google's default.
+   *
+   * <p>This is resolved once, when the factory is constructed, so that an invalid mode is
+   * reported once rather than for every tile.
+   */
+  private static TravelMode getMode(CommandLine flags) {
+    if (flags == null || !flags.hasOption("mode")) {
+      return null;
+    }
+    switch (flags.getOptionValue("mode")) {
+      case "driving":
+        return TravelMode.DRIVING;
+      case "transit":
+        return TravelMode.TRANSIT;
+      case "bicycling":
+        return TravelMode.BICYCLING;
+      case "walking":
+        return TravelMode.WALKING;
+      default:
+        System.out.println("Invalid transportation mode. Options include:");
+        System.out.println("    driving, transit, bicycling, walking");
+        return null;
+    }
+  }
+
+  /** Returns a string that differs between any two sets of flags that give different routes. */
+  String getOptionsKey() {
+    StringBuilder key = new StringBuilder("mode=");
+    if (flags != null && flags.hasOption("mode")) {
+      key.append(flags.getOptionValue("mode"));
+    }
+    if (flags != null && flags.hasOption("scenic")) {
+      key.append(";scenic");
+    }
+    if (flags != null && flags.hasOption("no-fee")) {
+      key.append(";no-fee");
+    }
+    return key.toString();
+  }
+
+  /** Write one fetched tile into the table, and into the cache if there is one. */
+  private void store(DistanceTable table, String options, int[] rows, int[] columns,
+      MatrixTile tile) throws IOException {
+    tile.writeTo(table, rows, columns);
+    if (cache == null) {
+      return;
+    }
+    for (int a = 0; a < rows.length; ++a) {
+      for (int b = 0; b < columns.length; ++b) {
+        cache.put(table.getPlace(rows[a]), table.getPlace(columns[b]), options,
+            tile.getOriginAddress(a), tile.getDestinationAddress(b), tile.getStatus(a, b),
+            tile.getMeters(a, b), tile.getSeconds(a, b));
+      }
+    }
+  }
+
+  private static String encode(String value) throws IOException {
+    return URLEncoder.encode(value, "UTF-8");
+  }
+
+  private static int[] range(int from, int to) {
+    int[] range = new int[to - from];
+    for (int k = 0; k < range.length; ++k) {
+      range[k] = from + k;
+    }
+    return range;
+  }
+
+  private static int[] toArray(List<Integer> indices) {
+    int[] array = new int[indices.size()];
+    for (int k = 0; k < array.length; ++k) {
+      array[k] = indices.get(k);
+    }
+    return array;
+  }
+}
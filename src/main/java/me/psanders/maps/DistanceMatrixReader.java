@@ -0,0 +1,202 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-07
+
+package me.psanders.maps;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.maps.errors.ApiException;
+import com.google.maps.model.DistanceMatrixElementStatus;
+
+/** Reads a Distance Matrix API response into a <code>MatrixTile</code> as it streams in.
+ *
+ * <p>The client library reads the whole response into a tree of objects, one
+ * <code>DistanceMatrixElement</code> with a <code>Distance</code> and a <code>Duration</code> for
+ * each element, which the table then copies out and drops. Here the response is read a token at a
+ * time and each element's distance, duration and status go straight into the tile's arrays, so
+ * nothing is kept per element but the numbers. Fields we do not use, such as the text of each
+ * distance, are skipped without being decoded.
+ */
+final class DistanceMatrixReader {
+
+  private DistanceMatrixReader() {}
+
+  /** Read a response to a request for the given numbers of origins and destinations.
+   *
+   * @throws ApiException If the response's status is not OK, as the client library would throw
+   * @throws IOException If the response is not well formed or not the size requested
+   */
+  static MatrixTile read(Reader in, int origins, int destinations)
+      throws ApiException, IOException {
+    MatrixTile tile = new MatrixTile(origins, destinations);
+    String status = null;
+    String message = null;
+    int rows = 0;
+
+    JsonReader json = new JsonReader(in);
+    json.beginObject();
+    while (json.hasNext()) {
+      switch (json.nextName()) {
+        case "status":
+          status = json.nextString();
+          break;
+        case "error_message":
+          message = json.nextString();
+          break;
+        case "origin_addresses":
+          readAddresses(json, tile, true);
+          break;
+        case "destination_addresses":
+          readAddresses(json, tile, false);
+          break;
+        case "rows":
+          json.beginArray();
+          for (; json.hasNext(); ++rows) {
+            check(rows < origins, "more than " + origins + " rows");
+            readRow(json, tile, rows);
+          }
+          json.endArray();
+          break;
+        default:
+          json.skipValue();
+      }
+    }
+    json.endObject();
+
+    check(status != null, "no status");
+    ApiException error = ApiException.from(status, message);
+    if (error != null) {
+      throw error;
+    }
+    check(rows == origins, rows + " rows rather than " + origins);
+    return tile;
+  }
+
+  /** Returns the error an error response names, or null if it names none.
+   *
+   * <p>Responses the API fails with usually carry the same status and message as those of a
+   * request it refused, which say more than the HTTP status does. A body that is not such an
+   * object, such as an HTML error page, names no error.
+   */
+  static ApiException readError(Reader in) {
+    String status = null;
+    String message = null;
+    try {
+      JsonReader json = new JsonReader(in);
+      json.beginObject();
+      while (json.hasNext()) {
+        switch (json.nextName()) {
+          case "status":
+            status = json.nextString();
+            break;
+          case "error_message":
+            message = json.nextString();
+            break;
+          default:
+            json.skipValue();
+        }
+      }
+    } catch (IOException | IllegalStateException e) {
+      // Not JSON, or not an object of strings where we expect them; keep what we have read.
+    }
+    return status == null ? null : ApiException.from(status, message);
+  }
+
+  private static void readAddresses(JsonReader json, MatrixTile tile, boolean origins)
+      throws IOException {
+    int limit = origins ? tile.getOrigins() : tile.getDestinations();
+    json.beginArray();
+    for (int k = 0; json.hasNext(); ++k) {
+      check(k < limit, "more than " + limit + " addresses");
+      if (origins) {
+        tile.setOriginAddress(k, json.nextString());
+      } else {
+        tile.setDestinationAddress(k, json.nextString());
+      }
+    }
+    json.endArray();
+  }
+
+  private static void readRow(JsonReader json, MatrixTile tile, int a) throws IOException {
+    int elements = 0;
+    json.beginObject();
+    while (json.hasNext()) {
+      if (!json.nextName().equals("elements")) {
+        json.skipValue();
+        continue;
+      }
+      json.beginArray();
+      for (; json.hasNext(); ++elements) {
+        check(elements < tile.getDestinations(),
+            "more than " + tile.getDestinations() + " elements in a row");
+        readElement(json, tile, a, elements);
+      }
+      json.endArray();
+    }
+    json.endObject();
+    check(elements == tile.getDestinations(),
+        elements + " elements in a row rather than " + tile.getDestinations());
+  }
+
+  private static void readElement(JsonReader json, MatrixTile tile, int a, int b)
+      throws IOException {
+    DistanceMatrixElementStatus status = null;
+    long meters = 0;
+    long seconds = 0;
+    json.beginObject();
+    while (json.hasNext()) {
+      switch (json.nextName()) {
+        case "status":
+          status = toStatus(json.nextString());
+          break;
+        case "distance":
+          meters = readValue(json);
+          break;
+        case "duration":
+          seconds = readValue(json);
+          break;
+        default:
+          json.skipValue();
+      }
+    }
+    json.endObject();
+    check(status != null, "an element without a status");
+    tile.set(a, b, status, meters, seconds);
+  }
+
+  /** Returns the "value" of a distance or duration, skipping its "text". */
+  private static long readValue(JsonReader json) throws IOException {
+    long value = 0;
+    json.beginObject();
+    while (json.hasNext()) {
+      if (json.nextName().equals("value") && json.peek() == JsonToken.NUMBER) {
+        value = json.nextLong();
+      } else {
+        json.skipValue();
+      }
+    }
+    json.endObject();
+    return value;
+  }
+
+  private static DistanceMatrixElementStatus toStatus(String status) {
+    switch (status) {
+      case "OK":
+        return DistanceMatrixElementStatus.OK;
+      case "NOT_FOUND":
+        return DistanceMatrixElementStatus.NOT_FOUND;
+      default:
+        // Any other status, such as a route too long to compute, still means there is no leg.
+        return DistanceMatrixElementStatus.ZERO_RESULTS;
+    }
+  }
+
+  private static void check(boolean condition, String problem) throws IOException {
+    if (!condition) {
+      throw new IOException("Malformed distance matrix response: " + problem + ".");
+    }
+  }
+}
@@ -0,0 +1,24 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-05
+
+package me.psanders.maps;
+
+import java.io.IOException;
+
+import com.google.maps.errors.ApiException;
+
+/** A source of the distance and travel time between every ordered pair of some places.
+ *
+ * <p><code>DistanceMatrixFactory</code> asks Google, which is exact but costs quota and needs
+ * the network. <code>HaversineDistanceProvider</code> estimates from coordinates, which is free
+ * and instant, for large offline studies and for screening routes before spending quota.
+ */
+public interface DistanceProvider {
+
+  /** Returns the table of every ordered pair of places.
+   *
+   * <p>Offline providers throw only <code>IOException</code>, for unreadable input.
+   */
+  DistanceTable build()
+      throws IllegalStateException, InterruptedException, ApiException, IOException;
+}
@@ -0,0 +1,173 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-03
+
+package me.psanders.maps;
+
+import java.util.Arrays;
+
+import com.google.maps.model.DistanceMatrixElement;
+import com.google.maps.model.DistanceMatrixElementStatus;
+import me.psanders.graph.IndexedGraph;
+
+/** The distance and travel time between every ordered pair of some places, in primitive arrays.
+ *
+ * <p>Both metrics are kept row-major in a flat <code>long[]</code>, laid out as the weights of a
+ * <code>LongMatrixGraph</code>, so that either array can become a graph's weights without being
+ * copied. Legs the API could not route are <code>IndexedGraph.UNREACHABLE</code> in both.
+ *
+ * <p>Requests for different parts of the table may fill it from several threads at once, as long
+ * as no two write the same element and the table is only read once they have all finished.
+ */
+public final class DistanceTable {
+
+  private final String[] places;
+  private final String[] addresses;
+  private final long[] meters;
+  private final long[] seconds;
+
+  /** Construct an empty table for the places given, every leg unreachable until set. */
+  public DistanceTable(String[] places) {
+    int size = places.length;
+    this.places = places.clone();
+    this.addresses = new String[size];
+    this.meters = new long[size * size];
+    this.seconds = new long[size * size];
+    Arrays.fill(meters, IndexedGraph.UNREACHABLE);
+    Arrays.fill(seconds, IndexedGraph.UNREACHABLE);
+    for (int i = 0; i < size; ++i) {
+      meters[i * size + i] = 0;
+      seconds[i * size + i] = 0;
+    }
+  }
+
+  private DistanceTable(String[] places, String[] addresses) {
+    this(places, addresses, new long[places.length * places.length],
+        new long[places.length * places.length]);
+  }
+
+  /** Construct a table around weights computed elsewhere, which it takes without copying. */
+  DistanceTable(String[] places, String[] addresses, long[] meters, long[] seconds) {
+    this.places = places;
+    this.addresses = addresses;
+    this.meters = meters;
+    this.seconds = seconds;
+  }
+
+  /** Returns a table with one more place at the end, its legs unreachable until set.
+   *
+   * <p>The legs among the existing places are copied a row at a time; none are fetched again.
+   */
+  public DistanceTable withPlace(String place) {
+    int size = places.length;
+    String[] grown = Arrays.copyOf(places, size + 1);
+    grown[size] = place;
+    DistanceTable table = new DistanceTable(grown, Arrays.copyOf(addresses, size + 1));
+    for (int i = 0; i < size; ++i) {
+      System.arraycopy(meters, i * size, table.meters, i * (size + 1), size);
+      System.arraycopy(seconds, i * size, table.seconds, i * (size + 1), size);
+      table.set(i, size, IndexedGraph.UNREACHABLE, IndexedGraph.UNREACHABLE);
+    }
+    for (int j = 0; j < size; ++j) {
+      table.set(size, j, IndexedGraph.UNREACHABLE, IndexedGraph.UNREACHABLE);
+    }
+    return table;
+  }
+
+  /** Returns a table without the place at index k, the places after it moving down by one. */
+  public DistanceTable withoutPlace(int k) {
+    int size = places.length;
+    String[] shrunk = new String[size - 1];
+    String[] shrunkAddresses = new String[size - 1];
+    for (int i = 0, to = 0; i < size; ++i) {
+      if (i != k) {
+        shrunk[to] = places[i];
+        shrunkAddresses[to++] = addresses[i];
+      }
+    }
+    DistanceTable table = new DistanceTable(shrunk, shrunkAddresses);
+    for (int i = 0, to = 0; i < size; ++i) {
+      if (i == k) {
+        continue;
+      }
+      // Each row is the columns before k followed by the columns after it.
+      int from = i * size;
+      int into = to * (size - 1);
+      System.arraycopy(meters, from, table.meters, into, k);
+      System.arraycopy(meters, from + k + 1, table.meters, into + k, size - k - 1);
+      System.arraycopy(seconds, from, table.seconds, into, k);
+      System.arraycopy(seconds, from + k + 1, table.seconds, into + k, size - k - 1);
+      ++to;
+    }
+    return table;
+  }
+
+  /** Returns the index of a place as it was asked for, or -1 if it is not in the table. */
+  public int indexOf(String place) {
+    for (int i = 0; i < places.length; ++i) {
+      if (places[i].equals(place)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the number of places. */
+  public int size() {
+    return places.length;
+  }
+
+  /** Returns a place as it was asked for. */
+  public String getPlace(int i) {
+    return places[i];
+  }
+
+  /** Returns the address Google resolved a place to, or null if it has not been fetched. */
+  public String getAddress(int i) {
+    return addresses[i];
+  }
+
+  public long getMeters(int i, int j) {
+    return meters[i * places.length + j];
+  }
+
+  public long getSeconds(int i, int j) {
+    return seconds[i * places.length + j];
+  }
+
+  /** Returns the distances in meters, row-major. The array is the table's own, not a copy. */
+  public long[] getMeters() {
+    return meters;
+  }
+
+  /** Returns the travel times in seconds, row-major. The array is the table's own, not a copy. */
+  public long[] getSeconds() {
+    return seconds;
+  }
+
+  String[] getPlaces() {
+    return places.clone();
+  }
+
+  void setAddress(int i, String address) {
+    addresses[i] = address;
+  }
+
+  /** Store the leg from place i to place j as returned by the API. */
+  void set(int i, int j, DistanceMatrixElement element) {
+    if (i == j) {
+      return;
+    }
+    if (element.status == DistanceMatrixElementStatus.OK) {
+      set(i, j, element.distance.inMeters, element.duration.inSeconds);
+    } else {
+      // The solver will optimize away from this leg if the cost is arbitrarily high.
+      set(i, j, IndexedGraph.UNREACHABLE, IndexedGraph.UNREACHABLE);
+    }
+  }
+
+  void set(int i, int j, long meters, long seconds) {
+    int k = i * places.length + j;
+    this.meters[k] = meters;
+    this.seconds[k] = seconds;
+  }
+}
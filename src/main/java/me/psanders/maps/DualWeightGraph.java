@@ -0,0 +1,137 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-08
+
+package me.psanders.maps;
+
+import java.util.List;
+
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.LongMatrixGraph;
+
+/** A graph of places that keeps both the distance and the travel time of every leg.
+ *
+ * <p>Solvers see one weight per leg, chosen by an <code>Objective</code>: the distance, the time,
+ * or a blend of the two. Both metrics are kept in flat primitive arrays, row-major like the
+ * weights of <code>LongMatrixGraph</code>, so <code>withObjective</code> can weigh the same legs
+ * another way without asking the API again, and the totals of either metric can be reported for
+ * a tour chosen by the other. Optimizing distance or time uses the metric's own array as the
+ * weights; only a blend needs an array of its own.
+ */
+public class DualWeightGraph<L> extends LongMatrixGraph<L> {
+
+  /** How the two metrics of a leg combine into the one weight a solver sees. */
+  public static final class Objective {
+
+    public static final Objective DISTANCE = new Objective(1, 0);
+    public static final Objective TIME = new Objective(0, 1);
+
+    private final double perMeter;
+    private final double perSecond;
+
+    private Objective(double perMeter, double perSecond) {
+      this.perMeter = perMeter;
+      this.perSecond = perSecond;
+    }
+
+    /** Returns an objective that weighs each leg as PER_METER times its distance in meters plus
+     * PER_SECOND times its travel time in seconds.
+     */
+    public static Objective blend(double perMeter, double perSecond) {
+      if (!(perMeter >= 0) || !(perSecond >= 0) || perMeter + perSecond == 0) {
+        throw new IllegalArgumentException(
+            "Weights must not be negative, nor both zero: " + perMeter + ", " + perSecond);
+      }
+      return new Objective(perMeter, perSecond);
+    }
+
+    /** Returns the weights of the legs under this objective. */
+    long[] weigh(long[] meters, long[] seconds) {
+      if (seconds.length != meters.length) {
+        throw new IllegalArgumentException(
+            "Got " + meters.length + " distances but " + seconds.length + " times.");
+      }
+      if (perSecond == 0 && perMeter == 1) {
+        return meters;
+      }
+      if (perMeter == 0 && perSecond == 1) {
+        return seconds;
+      }
+      long[] weights = new long[meters.length];
+      for (int k = 0; k < weights.length; ++k) {
+        if (meters[k] == IndexedGraph.UNREACHABLE || seconds[k] == IndexedGraph.UNREACHABLE) {
+          weights[k] = IndexedGraph.UNREACHABLE;
+        } else {
+          weights[k] = Math.min(IndexedGraph.UNREACHABLE,
+              Math.round(perMeter * meters[k] + perSecond * seconds[k]));
+        }
+      }
+      return weights;
+    }
+
+    @Override
+    public String toString() {
+      return perMeter + "/m + " + perSecond + "/s";
+    }
+  }
+
+  private final List<L> labels;
+  private final long[] meters;
+  private final long[] seconds;
+  private final Objective objective;
+
+  /** Construct a graph from both metrics of every leg, which it takes without copying.
+   *
+   * @param labels Labels of the vertices, in index order, distinct
+   * @param meters Row-major distances of <code>labels.size()</code> squared legs
+   * @param seconds Row-major travel times, laid out as the distances
+   * @param objective Chooses the weight that solvers see
+   */
+  public DualWeightGraph(List<L> labels, long[] meters, long[] seconds, Objective objective) {
+    super(labels, objective.weigh(meters, seconds));
+    this.labels = labels;
+    this.meters = meters;
+    this.seconds = seconds;
+    this.objective = objective;
+  }
+
+  /** Returns a graph of the same legs weighed by another objective, sharing their storage. */
+  public DualWeightGraph<L> withObjective(Objective objective) {
+    return new DualWeightGraph<L>(labels, meters, seconds, objective);
+  }
+
+  public Objective getObjective() {
+    return objective;
+  }
+
+  public long getMetersAt(int start, int end) {
+    return meters[start * size() + end];
+  }
+
+  public long getSecondsAt(int start, int end) {
+    return seconds[start * size() + end];
+  }
+
+  /** Returns the distance of a tour, including the leg back to its start. */
+  public long getTotalMeters(List<L> tour) {
+    return total(meters, tour);
+  }
+
+  /** Returns the travel time of a tour, including the leg back to its start. */
+  public long getTotalSeconds(List<L> tour) {
+    return total(seconds, tour);
+  }
+
+  private long total(long[] metric, List<L> tour) {
+    int length = tour.size();
+    long total = 0;
+    for (int k = 0; k < length; ++k) {
+      int i = getIndex(tour.get(k));
+      int j = getIndex(tour.get((k + 1) % length));
+      if (i < 0 || j < 0) {
+        throw new IllegalArgumentException("Not a tour of this graph: " + tour);
+      }
+      total = IndexedGraph.add(total, metric[i * size() + j]);
+    }
+    return total;
+  }
+}
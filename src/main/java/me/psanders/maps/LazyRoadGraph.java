@@ -0,0 +1,274 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-06
+
+package me.psanders.maps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.google.maps.errors.ApiException;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.LongMatrixGraph;
+
+/** A graph that starts from estimated weights and fetches real road weights only where they
+ * matter.
+ *
+ * <p>Most of the n^2 legs of a trip never appear in a good tour: a good tour almost only travels
+ * between near neighbors. So every weight starts as an estimate, such as the great-circle
+ * distances of <code>HaversineDistanceProvider</code>, and <code>fetchCandidates</code> replaces
+ * the estimates from each place to its k nearest places with real ones. Any other leg is fetched
+ * in one batch for a whole tour through <code>fetchTour</code>, or queued when it is asked for by
+ * label through <code>getWeight</code> and fetched with the other queued legs by
+ * <code>fetchPending</code>. The API is asked for each leg at most once, so a solve costs O(n k)
+ * elements rather than n^2.
+ *
+ * <p>Solvers read <code>getWeightAt</code>, which never goes to the network: it returns the real
+ * weight if it has been fetched and the estimate otherwise. <code>refine</code> runs a solver,
+ * fetches the legs of its tour that were only estimated, and solves again until the tour's cost
+ * is entirely real. Weights change only in the fetch methods, which must not run during a solve.
+ */
+public class LazyRoadGraph implements IndexedGraph<String, Long> {
+
+  private final DistanceMatrixFactory factory;
+  private final boolean byTime;
+  private final int size;
+  private final long[] weights;
+  private final LongMatrixGraph<String> graph;
+
+  // Guarded by this.
+  private final DistanceTable roads;
+  private final boolean[] known;
+  private final Set<Integer> pending = new LinkedHashSet<Integer>();
+  private int fetched;
+
+  /** Construct a graph of estimates, nothing fetched yet.
+   *
+   * @param factory Fetches the real weights. Its places must be the estimates' places in the same
+   *     order, such as "LAT,LNG" strings, which the API accepts as places.
+   * @param estimates The starting weights, whose addresses label the vertices
+   * @param byTime Weigh legs by travel time rather than distance, as the "fast" flag does
+   */
+  public LazyRoadGraph(DistanceMatrixFactory factory, DistanceTable estimates, boolean byTime) {
+    String[] places = factory.getPlaces();
+    if (places.length != estimates.size()) {
+      throw new IllegalArgumentException("Got " + places.length + " places to fetch but "
+          + estimates.size() + " places estimated.");
+    }
+    this.factory = factory;
+    this.byTime = byTime;
+    this.size = places.length;
+    this.weights = (byTime ? estimates.getSeconds() : estimates.getMeters()).clone();
+    List<String> labels = new ArrayList<String>();
+    for (int i = 0; i < size; ++i) {
+      labels.add(estimates.getAddress(i));
+    }
+    this.graph = new LongMatrixGraph<String>(labels, weights);
+    this.roads = new DistanceTable(places);
+    this.known = new boolean[size * size];
+    for (int i = 0; i < size; ++i) {
+      known[i * size + i] = true;
+    }
+  }
+
+  /** Fetch the real weights from each place to its K nearest places by estimate.
+   *
+   * @return The number of legs fetched
+   */
+  public int fetchCandidates(int k)
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    int count = Math.max(0, Math.min(k, size - 1));
+    int[] origins = new int[size];
+    int[][] destinations = new int[size][];
+    Integer[] others = new Integer[size];
+    for (int i = 0; i < size; ++i) {
+      final int from = i;
+      for (int j = 0; j < size; ++j) {
+        others[j] = j;
+      }
+      // Sorting puts i itself first, at distance zero.
+      Arrays.sort(others, (a, b) -> Long.compare(weights[from * size + a],
+          weights[from * size + b]));
+      origins[i] = i;
+      destinations[i] = new int[count];
+      for (int r = 0, taken = 0; taken < count; ++r) {
+        if (others[r] != i) {
+          destinations[i][taken++] = others[r];
+        }
+      }
+    }
+    return fetch(origins, destinations);
+  }
+
+  /** Fetch the real weights of every leg of a tour, including the one back to the start.
+   *
+   * @return The number of legs fetched, zero if the tour's cost was already entirely real
+   */
+  public int fetchTour(List<String> tour)
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    int length = tour.size();
+    int[] origins = new int[length];
+    int[][] destinations = new int[length][];
+    for (int k = 0; k < length; ++k) {
+      origins[k] = indexOf(tour.get(k));
+      destinations[k] = new int[] {indexOf(tour.get((k + 1) % length))};
+    }
+    return fetch(origins, destinations);
+  }
+
+  /** Fetch every leg that <code>getWeight</code> has queued, in one batch.
+   *
+   * <p>If the fetch fails, the legs stay queued for the next call.
+   *
+   * @return The number of legs fetched
+   */
+  public synchronized int fetchPending()
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    int[] origins = new int[pending.size()];
+    int[][] destinations = new int[pending.size()][];
+    int k = 0;
+    for (int leg : pending) {
+      origins[k] = leg / size;
+      destinations[k++] = new int[] {leg % size};
+    }
+    int count = fetch(origins, destinations);
+    pending.clear();
+    return count;
+  }
+
+  /** Solve until the solver's tour is priced entirely by real weights, or for MAX_ROUNDS.
+   *
+   * <p>Each round after the first only fetches the legs of the last tour that were estimates,
+   * so a solver that can start from its previous tour converges in a round or two.
+   *
+   * @param solver Returns a tour of this graph, by label
+   * @return The last tour found
+   */
+  public List<String> refine(Function<? super LazyRoadGraph, List<String>> solver, int maxRounds)
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    List<String> tour = solver.apply(this);
+    for (int round = 1; round < maxRounds && fetchTour(tour) > 0; ++round) {
+      tour = solver.apply(this);
+    }
+    return tour;
+  }
+
+  /** Returns whether the weight from vertex i to vertex j is real rather than estimated. */
+  public synchronized boolean isFetched(int i, int j) {
+    return known[i * size + j];
+  }
+
+  /** Returns the number of legs fetched so far. */
+  public synchronized int getFetchedCount() {
+    return fetched;
+  }
+
+  /** Returns the number of legs queued by <code>getWeight</code> and not yet fetched. */
+  public synchronized int getPendingCount() {
+    return pending.size();
+  }
+
+  @Override
+  public Set<String> getNodes() {
+    return graph.getNodes();
+  }
+
+  /** Returns the real weight of a leg if it has been fetched, and otherwise its estimate.
+   *
+   * <p>This never goes to the network. A leg that is only estimated is queued, and
+   * <code>fetchPending</code> fetches every queued leg in one request.
+   */
+  @Override
+  public Long getWeight(String start, String end) {
+    int i = graph.getIndex(start);
+    int j = graph.getIndex(end);
+    if (i < 0 || j < 0) {
+      return null;
+    }
+    synchronized (this) {
+      if (!known[i * size + j]) {
+        pending.add(i * size + j);
+      }
+      return weights[i * size + j];
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int getIndex(String label) {
+    return graph.getIndex(label);
+  }
+
+  @Override
+  public String getLabel(int index) {
+    return graph.getLabel(index);
+  }
+
+  @Override
+  public long getWeightAt(int start, int end) {
+    return weights[start * size + end];
+  }
+
+  /** Fetch the legs from each origin to its destinations that are not yet real, in one batch.
+   *
+   * <p>Legs asked for twice, or already fetched, are fetched only once.
+   */
+  private synchronized int fetch(int[] origins, int[][] destinations)
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    Map<Integer, Set<Integer>> wanted = new LinkedHashMap<Integer, Set<Integer>>();
+    for (int k = 0; k < origins.length; ++k) {
+      for (int j : destinations[k]) {
+        if (!known[origins[k] * size + j]) {
+          wanted.computeIfAbsent(origins[k], key -> new LinkedHashSet<Integer>()).add(j);
+        }
+      }
+    }
+    if (wanted.isEmpty()) {
+      return 0;
+    }
+
+    int[] rows = new int[wanted.size()];
+    int[][] columns = new int[wanted.size()][];
+    int r = 0;
+    for (Map.Entry<Integer, Set<Integer>> row : wanted.entrySet()) {
+      rows[r] = row.getKey();
+      columns[r] = new int[row.getValue().size()];
+      int c = 0;
+      for (int j : row.getValue()) {
+        columns[r][c++] = j;
+      }
+      ++r;
+    }
+    factory.fill(roads, rows, columns);
+
+    int count = 0;
+    for (int k = 0; k < rows.length; ++k) {
+      int i = rows[k];
+      for (int j : columns[k]) {
+        weights[i * size + j] = byTime ? roads.getSeconds(i, j) : roads.getMeters(i, j);
+        known[i * size + j] = true;
+        ++count;
+      }
+    }
+    fetched += count;
+    return count;
+  }
+
+  private int indexOf(String label) {
+    int index = graph.getIndex(label);
+    if (index < 0) {
+      throw new IllegalArgumentException("No such place: " + label);
+    }
+    return index;
+  }
+}
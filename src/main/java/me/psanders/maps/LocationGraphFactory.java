@@ -5,23 +5,28 @@ package me.psanders.maps;
 
 import java.io.IOException;
 import java.net.ConnectException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 
 import com.google.maps.errors.OverDailyLimitException;
 import com.google.maps.errors.OverQueryLimitException;
-import me.psanders.graph.MatrixGraph;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.maps.DualWeightGraph.Objective;
 import org.apache.commons.cli.CommandLine;
 
-import com.google.maps.model.DistanceMatrix;
-import com.google.maps.model.DistanceMatrixElement;
 import com.google.maps.errors.ApiException;
 
 public class LocationGraphFactory {
 
-  private DistanceMatrixFactory factory;
+  private DistanceProvider factory;
   private CommandLine flags;
 
-  public LocationGraphFactory(DistanceMatrixFactory factory, CommandLine flags) {
+  /** Construct a factory for graphs of the places that a provider has distances for.
+   *
+   * @param factory Usually a <code>DistanceMatrixFactory</code>, which asks Google
+   */
+  public LocationGraphFactory(DistanceProvider factory, CommandLine flags) {
     this.factory = factory;
     this.flags = flags;
   }
@@ -29,73 +34,100 @@ public class LocationGraphFactory {
   /** Render the request and flags into a Location Graph for the optimizer.
    *
    */
-  public MatrixGraph<String, Long> build() {
-    DistanceMatrix distMatrix = getMatrix();
-    if (distMatrix == null) {
+  public DualWeightGraph<String> build() {
+    DistanceTable table = getTable();
+    if (table == null) {
       return null;
     }
+    return build(table);
+  }
 
-    // Generate the list of labels to look up matrix indices.
-    HashMap<String, Integer> labels = new HashMap<String, Integer>();
-    for (int i = 0; i < distMatrix.originAddresses.length; ++i) {
-      labels.put(distMatrix.originAddresses[i], i);
+  /** Render a table fetched earlier into a Location Graph, for example after a stop is added.
+   *
+   * <p>The graph keeps both the distances and the times of the table, weighed by the objective
+   * that the flags choose, so a caller can weigh them another way with
+   * <code>withObjective</code>. It shares the table's storage unless places had to be merged, so
+   * the table must not be changed while the graph is in use.
+   */
+  public DualWeightGraph<String> build(DistanceTable table) {
+    // Generate the list of labels to look up matrix indices. Google may resolve two of our places
+    // to the same address, in which case we keep only the first row and column for that address.
+    HashSet<String> seen = new HashSet<String>();
+    List<String> labels = new ArrayList<String>();
+    List<Integer> rows = new ArrayList<Integer>();
+    for (int i = 0; i < table.size(); ++i) {
+      if (seen.add(table.getAddress(i))) {
+        labels.add(table.getAddress(i));
+        rows.add(i);
+      }
     }
 
-    // Convert the DistanceMatrix object to a 2D array for the MatrixGraph.
-    Long[][] matrix =
-        new Long[distMatrix.originAddresses.length][distMatrix.originAddresses.length];
-
-    for (int i = 0; i < distMatrix.originAddresses.length; ++i) {
-      for (int j = 0; j < distMatrix.originAddresses.length; ++j) {
-        if (i == j) continue;  // Skip the diagonal axis.
+    // The table is already laid out as the graph's weights, so we only copy to drop duplicates.
+    int size = labels.size();
+    long[] meters = table.getMeters();
+    long[] seconds = table.getSeconds();
+    if (size < table.size()) {
+      meters = compact(meters, table.size(), rows);
+      seconds = compact(seconds, table.size(), rows);
+    }
 
-        Long weight = getElementWeight(distMatrix.rows[i].elements[j]);
-        if (weight == null) {
-          System.out.println("We couldn't resolve the leg between \""
-              + distMatrix.originAddresses[i] + "\" and \"" + distMatrix.destinationAddresses[j]
-              + "\", so we're trying to route around it.");
-          matrix[i][j] = Long.MAX_VALUE / 2;
-        } else {
-          matrix[i][j] = weight;
+    for (int i = 0; i < size; ++i) {
+      for (int j = 0; j < size; ++j) {
+        if (i != j && meters[i * size + j] == IndexedGraph.UNREACHABLE) {
+          System.out.println("We couldn't resolve the leg between \"" + labels.get(i)
+              + "\" and \"" + labels.get(j) + "\", so we're trying to route around it.");
         }
       }
     }
 
-    return new MatrixGraph<>(labels, matrix);
+    return new DualWeightGraph<String>(labels, meters, seconds, getObjective());
   }
 
-  /** Retrieve the weight of a given element.
+  /** Keep only the given rows and the same columns of a row-major matrix. */
+  private static long[] compact(long[] matrix, int from, List<Integer> rows) {
+    int size = rows.size();
+    long[] compacted = new long[size * size];
+    for (int i = 0; i < size; ++i) {
+      for (int j = 0; j < size; ++j) {
+        compacted[i * size + j] = matrix[rows.get(i) * from + rows.get(j)];
+      }
+    }
+    return compacted;
+  }
+
+  /** Choose how to weigh every leg.
    *
-   * <p>This will depend upon a variety of factors. First, we must consult element and ensure that
-   * a route was found. If that connection was intractable then we return null. In the graph
-   * encoding found in `build`, we handle these cases by using an arbitrarily large weight for
-   * those connections, as our algorithm assumes a connected graph.
+   * <p>This will depend upon a variety of factors. First, legs for which no route was found are
+   * already <code>IndexedGraph.UNREACHABLE</code> in the table. We use an arbitrarily large
+   * weight for those connections, as our algorithm assumes a connected graph.
    *
    * <p>Second, we consult the flags. If the "fast" flag is present then we will score the leg
-   * by time. Otherwise, we will score it by distance as the default setting. We choose this
-   * default because road-trips are not expected to be rushed experiences, but distance will
-   * influence the fuel spent on the trip.
+   * by time. If the "blend" flag is present, we score it by its distance plus the flag's number
+   * of meters for each second it takes. Otherwise, we will score it by distance as the default
+   * setting. We choose this default because road-trips are not expected to be rushed
+   * experiences, but distance will influence the fuel spent on the trip.
    *
    */
-  private Long getElementWeight(DistanceMatrixElement element) {
-    switch (element.status) {
-      case NOT_FOUND:
-      case ZERO_RESULTS:
-        // The algorithm will optimize away from this leg if the cost is arbitrarily high.
-        return null;
-      default:
-        if (flags.hasOption("fast")) {
-          return element.duration.inSeconds;
-        } else {
-          return element.distance.inMeters;
-        }
+  private Objective getObjective() {
+    if (flags.hasOption("fast")) {
+      return Objective.TIME;
+    }
+    if (flags.hasOption("blend")) {
+      try {
+        return Objective.blend(1, Double.parseDouble(flags.getOptionValue("blend")));
+      } catch (IllegalArgumentException e) {
+        System.out.println("The blend must be a number of meters no less than zero, so we're "
+            + "scoring by distance alone.");
+      }
     }
+    return Objective.DISTANCE;
   }
 
-  /** Get the distance matrix between our various locations, handling error cases.
+  /** Get the distance table between our various locations, handling error cases.
    *
    * <p><code>Over*Limit</code> indicates that an account has made more requests in a time frame
-   * than its billed rate allows, and we must wait for it to cool down.
+   * than its billed rate allows, and we must wait for it to cool down. The factory already retries
+   * a tile refused for its rate, so one that reaches us here has been refused repeatedly.
    *
    * <p>Connect Exceptions indicate network failure.
    *
@@ -103,7 +135,7 @@ public class LocationGraphFactory {
    * occur except if the key passed in is bad or absent.
    *
    */
-  private DistanceMatrix getMatrix() {
+  private DistanceTable getTable() {
     try {
       return factory.build();
     } catch (OverDailyLimitException | OverQueryLimitException e) {
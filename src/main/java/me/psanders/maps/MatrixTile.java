@@ -0,0 +1,124 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-07
+
+package me.psanders.maps;
+
+import java.util.Arrays;
+
+import com.google.maps.model.DistanceMatrix;
+import com.google.maps.model.DistanceMatrixElement;
+import com.google.maps.model.DistanceMatrixElementStatus;
+import me.psanders.graph.IndexedGraph;
+
+/** One response of the API, its elements held in primitive arrays rather than as objects.
+ *
+ * <p>The arrays are allocated up front from the size of the request, row-major like those of
+ * <code>DistanceTable</code>, and <code>DistanceMatrixReader</code> writes each element into them
+ * as it is read. A tile of 100 elements is then five arrays rather than several hundred objects.
+ * Statuses are kept as the ordinals of <code>DistanceMatrixElementStatus</code>.
+ */
+final class MatrixTile {
+
+  private static final DistanceMatrixElementStatus[] STATUSES =
+      DistanceMatrixElementStatus.values();
+
+  private final String[] originAddresses;
+  private final String[] destinationAddresses;
+  private final long[] meters;
+  private final long[] seconds;
+  private final byte[] statuses;
+
+  /** Construct a tile of the given size, every element NOT_FOUND until set. */
+  MatrixTile(int origins, int destinations) {
+    this.originAddresses = new String[origins];
+    this.destinationAddresses = new String[destinations];
+    this.meters = new long[origins * destinations];
+    this.seconds = new long[origins * destinations];
+    this.statuses = new byte[origins * destinations];
+    Arrays.fill(statuses, (byte) DistanceMatrixElementStatus.NOT_FOUND.ordinal());
+  }
+
+  /** Returns a tile holding the same elements as a response parsed by the client library. */
+  static MatrixTile of(DistanceMatrix matrix) {
+    MatrixTile tile =
+        new MatrixTile(matrix.originAddresses.length, matrix.destinationAddresses.length);
+    for (int a = 0; a < tile.getOrigins(); ++a) {
+      tile.setOriginAddress(a, matrix.originAddresses[a]);
+      for (int b = 0; b < tile.getDestinations(); ++b) {
+        DistanceMatrixElement element = matrix.rows[a].elements[b];
+        tile.set(a, b, element.status,
+            element.distance == null ? 0 : element.distance.inMeters,
+            element.duration == null ? 0 : element.duration.inSeconds);
+      }
+    }
+    for (int b = 0; b < tile.getDestinations(); ++b) {
+      tile.setDestinationAddress(b, matrix.destinationAddresses[b]);
+    }
+    return tile;
+  }
+
+  int getOrigins() {
+    return originAddresses.length;
+  }
+
+  int getDestinations() {
+    return destinationAddresses.length;
+  }
+
+  String getOriginAddress(int a) {
+    return originAddresses[a];
+  }
+
+  String getDestinationAddress(int b) {
+    return destinationAddresses[b];
+  }
+
+  DistanceMatrixElementStatus getStatus(int a, int b) {
+    return STATUSES[statuses[a * getDestinations() + b]];
+  }
+
+  long getMeters(int a, int b) {
+    return meters[a * getDestinations() + b];
+  }
+
+  long getSeconds(int a, int b) {
+    return seconds[a * getDestinations() + b];
+  }
+
+  void setOriginAddress(int a, String address) {
+    originAddresses[a] = address;
+  }
+
+  void setDestinationAddress(int b, String address) {
+    destinationAddresses[b] = address;
+  }
+
+  void set(int a, int b, DistanceMatrixElementStatus status, long meters, long seconds) {
+    int k = a * getDestinations() + b;
+    this.statuses[k] = (byte) status.ordinal();
+    this.meters[k] = meters;
+    this.seconds[k] = seconds;
+  }
+
+  /** Write the tile into a table, origin a as place <code>rows[a]</code> and destination b as
+   * place <code>columns[b]</code>.
+   */
+  void writeTo(DistanceTable table, int[] rows, int[] columns) {
+    for (int a = 0; a < rows.length; ++a) {
+      int i = rows[a];
+      table.setAddress(i, originAddresses[a]);
+      for (int b = 0; b < columns.length; ++b) {
+        int j = columns[b];
+        if (i == j) {
+          continue;
+        }
+        if (getStatus(a, b) == DistanceMatrixElementStatus.OK) {
+          table.set(i, j, getMeters(a, b), getSeconds(a, b));
+        } else {
+          // The solver will optimize away from this leg if the cost is arbitrarily high.
+          table.set(i, j, IndexedGraph.UNREACHABLE, IndexedGraph.UNREACHABLE);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,173 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-07
+
+package me.psanders.maps;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/** Where and how <code>DistanceMatrixFactory</code> sends the requests whose responses it
+ * streams.
+ *
+ * <p>Streamed requests go around the client library, so a <code>GeoApiContext</code> can do
+ * nothing for them. This holds the settings of one that they need instead: the credentials, the
+ * address of the API, the timeouts, how many times to retry a server error and how many requests
+ * may be sent each second. The defaults are the context's.
+ *
+ * <code>
+ * StreamingEndpoint endpoint = new StreamingEndpoint.Builder().apiKey(key).build();
+ * DistanceTable table = new DistanceMatrixFactory(endpoint, places, flags, cache).build();
+ * </code>
+ */
+public final class StreamingEndpoint {
+
+  static final String BASE_URL = "https://maps.googleapis.com";
+  static final String PATH = "/maps/api/distancematrix/json";
+
+  private final String apiKey;
+  private final String clientId;
+  private final byte[] secret;
+  private final String baseUrl;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private final int maxRetries;
+  private final TokenBucket queries;
+
+  private StreamingEndpoint(Builder builder) {
+    this.apiKey = builder.apiKey;
+    this.clientId = builder.clientId;
+    this.secret = builder.secret;
+    this.baseUrl = builder.baseUrl;
+    this.connectTimeoutMillis = builder.connectTimeoutMillis;
+    this.readTimeoutMillis = builder.readTimeoutMillis;
+    this.maxRetries = builder.maxRetries;
+    this.queries = new TokenBucket(builder.queriesPerSecond, builder.queriesPerSecond);
+  }
+
+  /** Returns the URL of a request, given its query string, with the credentials added. */
+  URL getUrl(String query) throws IOException {
+    if (clientId == null) {
+      return new URL(baseUrl + PATH + "?" + query + "&key=" + encode(apiKey));
+    }
+    String signed = PATH + "?" + query + "&client=" + encode(clientId);
+    return new URL(baseUrl + signed + "&signature=" + sign(signed));
+  }
+
+  /** Returns the signature of a request's path and query, which the API checks against the
+   * client ID's secret.
+   */
+  String sign(String pathAndQuery) throws IOException {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA1");
+      mac.init(new SecretKeySpec(secret, "HmacSHA1"));
+      byte[] signature = mac.doFinal(pathAndQuery.getBytes(StandardCharsets.UTF_8));
+      return Base64.getUrlEncoder().encodeToString(signature);
+    } catch (GeneralSecurityException e) {
+      throw new IOException("Could not sign the request.", e);
+    }
+  }
+
+  /** Wait until the query rate allows one more request. */
+  void acquire() throws InterruptedException {
+    queries.acquire(1);
+  }
+
+  int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  int getReadTimeoutMillis() {
+    return readTimeoutMillis;
+  }
+
+  /** Returns how many times a request that failed with a server error is sent again. */
+  int getMaxRetries() {
+    return maxRetries;
+  }
+
+  private static String encode(String value) throws IOException {
+    return URLEncoder.encode(value, "UTF-8");
+  }
+
+  /** Builds an endpoint. Either an API key or a client ID is required. */
+  public static final class Builder {
+
+    private String apiKey;
+    private String clientId;
+    private byte[] secret;
+    private String baseUrl = BASE_URL;
+    private int connectTimeoutMillis = 10000;
+    private int readTimeoutMillis = 10000;
+    private int maxRetries = 3;
+    private int queriesPerSecond = 50;
+
+    public Builder apiKey(String apiKey) {
+      this.apiKey = apiKey;
+      return this;
+    }
+
+    /** Sign requests as a premium client instead of sending an API key.
+     *
+     * @param cryptographicSecret The client ID's signing secret, in URL-safe base 64
+     */
+    public Builder enterpriseCredentials(String clientId, String cryptographicSecret) {
+      this.clientId = clientId;
+      this.secret = Base64.getUrlDecoder().decode(cryptographicSecret);
+      return this;
+    }
+
+    /** Send requests to another host, such as a test server, given as scheme and authority. */
+    public Builder baseUrl(String baseUrl) {
+      this.baseUrl = baseUrl;
+      return this;
+    }
+
+    public Builder connectTimeout(long timeout, TimeUnit unit) {
+      this.connectTimeoutMillis = toMillis(timeout, unit);
+      return this;
+    }
+
+    public Builder readTimeout(long timeout, TimeUnit unit) {
+      this.readTimeoutMillis = toMillis(timeout, unit);
+      return this;
+    }
+
+    /** Send a request that failed with a server error up to this many more times. */
+    public Builder maxRetries(int maxRetries) {
+      if (maxRetries < 0) {
+        throw new IllegalArgumentException("Retries cannot be negative: " + maxRetries);
+      }
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /** Send at most this many requests each second, however many elements they hold. */
+    public Builder queryRateLimit(int queriesPerSecond) {
+      this.queriesPerSecond = queriesPerSecond;
+      return this;
+    }
+
+    public StreamingEndpoint build() {
+      if (apiKey == null && clientId == null) {
+        throw new IllegalStateException("Must provide either an API key or a client ID.");
+      }
+      return new StreamingEndpoint(this);
+    }
+
+    private static int toMillis(long timeout, TimeUnit unit) {
+      long millis = unit.toMillis(timeout);
+      if (millis < 0 || millis > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Timeout out of range: " + timeout + " " + unit);
+      }
+      return (int) millis;
+    }
+  }
+}
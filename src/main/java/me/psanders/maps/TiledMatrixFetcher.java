@@ -0,0 +1,168 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-03
+
+package me.psanders.maps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.maps.errors.ApiException;
+import com.google.maps.errors.OverQueryLimitException;
+
+/** Fetches a block of a distance table as many small requests, several at a time.
+ *
+ * <p>The API limits each request to <code>MAX_ORIGINS</code> origins,
+ * <code>MAX_DESTINATIONS</code> destinations and <code>MAX_ELEMENTS</code> elements, so a matrix
+ * of more than ten places cannot be fetched in one request. We cut the block into tiles within
+ * those limits and send up to <code>parallelism</code> of them at once, each taking one permit
+ * per element from a token bucket first so that together they stay within the key's rate. A tile
+ * refused with <code>OverQueryLimitException</code> is retried after a backoff that doubles each
+ * time, up to <code>MAX_ATTEMPTS</code> attempts. Each tile is written straight into the table as
+ * it arrives.
+ */
+final class TiledMatrixFetcher {
+
+  static final int MAX_ORIGINS = 25;
+  static final int MAX_DESTINATIONS = 25;
+  static final int MAX_ELEMENTS = 100;
+
+  static final int MAX_ATTEMPTS = 5;
+  static final long INITIAL_BACKOFF_MILLIS = 500;
+
+  /** Makes one request of the API. */
+  interface TileSource {
+    MatrixTile fetch(String[] origins, String[] destinations)
+        throws InterruptedException, ApiException, IOException;
+  }
+
+  /** Receives each tile once it has arrived. */
+  interface TileSink {
+    void accept(int[] rows, int[] columns, MatrixTile tile) throws IOException;
+  }
+
+  private final TileSource source;
+  private final int parallelism;
+  private final TokenBucket bucket;
+  private final long backoffMillis;
+
+  TiledMatrixFetcher(TileSource source, int parallelism, TokenBucket bucket) {
+    this(source, parallelism, bucket, INITIAL_BACKOFF_MILLIS);
+  }
+
+  TiledMatrixFetcher(TileSource source, int parallelism, TokenBucket bucket, long backoffMillis) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Need at least one request at a time: " + parallelism);
+    }
+    this.source = source;
+    this.parallelism = parallelism;
+    this.bucket = bucket;
+    this.backoffMillis = backoffMillis;
+  }
+
+  /** Fetch the legs from every place in ROWS to every place in COLUMNS.
+   *
+   * <p>If any tile fails for good, the rest are abandoned and its exception is thrown.
+   *
+   * @param places The places that the indices in ROWS and COLUMNS refer to
+   */
+  void fetch(String[] places, int[] rows, int[] columns, TileSink sink)
+      throws InterruptedException, ApiException, IOException {
+    fetch(places, Collections.singletonList(new int[][] {rows, columns}), sink);
+  }
+
+  /** Fetch several blocks at once, each a pair of arrays of rows and columns.
+   *
+   * <p>The tiles of all the blocks share the same requests in flight, so many small blocks, such
+   * as one row each, are fetched as concurrently as one large one.
+   */
+  void fetch(String[] places, List<int[][]> blocks, TileSink sink)
+      throws InterruptedException, ApiException, IOException {
+    List<int[][]> tiles = new ArrayList<int[][]>();
+    for (int[][] block : blocks) {
+      cut(block[0], block[1], tiles);
+    }
+    if (tiles.isEmpty()) {
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tiles.size()));
+    try {
+      List<Future<?>> pending = new ArrayList<Future<?>>();
+      for (int[][] tile : tiles) {
+        pending.add(executor.submit(() -> {
+          MatrixTile result = fetchTile(select(places, tile[0]), select(places, tile[1]));
+          sink.accept(tile[0], tile[1], result);
+          return null;
+        }));
+      }
+      for (Future<?> future : pending) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof ApiException) {
+        throw (ApiException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Cut one block into tiles within the request limits. */
+  private static void cut(int[] rows, int[] columns, List<int[][]> tiles) {
+    int width = Math.min(columns.length, MAX_DESTINATIONS);
+    int height = Math.max(1, Math.min(MAX_ORIGINS, MAX_ELEMENTS / Math.max(1, width)));
+    for (int r = 0; r < rows.length; r += height) {
+      for (int c = 0; c < columns.length; c += width) {
+        tiles.add(new int[][] {
+            slice(rows, r, Math.min(rows.length, r + height)),
+            slice(columns, c, Math.min(columns.length, c + width))});
+      }
+    }
+  }
+
+  private MatrixTile fetchTile(String[] origins, String[] destinations)
+      throws InterruptedException, ApiException, IOException {
+    long backoff = backoffMillis;
+    for (int attempt = 1; ; ++attempt) {
+      bucket.acquire(origins.length * destinations.length);
+      try {
+        return source.fetch(origins, destinations);
+      } catch (OverQueryLimitException e) {
+        if (attempt == MAX_ATTEMPTS) {
+          throw e;
+        }
+        TimeUnit.MILLISECONDS.sleep(backoff);
+        backoff *= 2;
+      }
+    }
+  }
+
+  private static int[] slice(int[] indices, int from, int to) {
+    int[] slice = new int[to - from];
+    System.arraycopy(indices, from, slice, 0, slice.length);
+    return slice;
+  }
+
+  private static String[] select(String[] places, int[] indices) {
+    String[] selected = new String[indices.length];
+    for (int k = 0; k < indices.length; ++k) {
+      selected[k] = places[indices[k]];
+    }
+    return selected;
+  }
+}
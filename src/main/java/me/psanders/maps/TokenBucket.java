@@ -0,0 +1,58 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-03
+
+package me.psanders.maps;
+
+import java.util.concurrent.TimeUnit;
+
+/** Limits how fast permits are handed out, allowing short bursts.
+ *
+ * <p>The bucket holds up to <code>burst</code> permits and refills at a steady rate. Taking
+ * permits that are not there yet reserves them and sleeps until they would have arrived, so
+ * callers are served in the order they asked and none of them spins.
+ */
+public final class TokenBucket {
+
+  private final double permitsPerNano;
+  private final double burst;
+
+  // Guarded by this. May go negative, when permits have been promised ahead of time.
+  private double available;
+  private long refilled;
+
+  /** Construct a bucket that starts full.
+   *
+   * @param permitsPerSecond The steady rate at which permits are handed out
+   * @param burst The most permits that may be taken at once after a quiet spell
+   */
+  public TokenBucket(double permitsPerSecond, int burst) {
+    if (!(permitsPerSecond > 0) || burst < 1) {
+      throw new IllegalArgumentException(
+          "Rate and burst must be positive: " + permitsPerSecond + ", " + burst);
+    }
+    this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.burst = burst;
+    this.available = burst;
+    this.refilled = System.nanoTime();
+  }
+
+  /** Take some permits, waiting until the rate allows it.
+   *
+   * <p>Requests for more than the burst are allowed, and simply wait longer.
+   */
+  public void acquire(int permits) throws InterruptedException {
+    long wait = reserve(permits);
+    if (wait > 0) {
+      TimeUnit.NANOSECONDS.sleep(wait);
+    }
+  }
+
+  /** Take the permits now, returning how many nanoseconds the caller must wait to use them. */
+  private synchronized long reserve(int permits) {
+    long now = System.nanoTime();
+    available = Math.min(burst, available + (now - refilled) * permitsPerNano);
+    refilled = now;
+    available -= permits;
+    return available >= 0 ? 0 : (long) Math.ceil(-available / permitsPerNano);
+  }
+}
@@ -0,0 +1,200 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-24
+
+package me.psanders.utils;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/** Lexicographic permutations of int arrays, stepped in place.
+ *
+ * <p><code>next</code> works on any array of ints, including ones with repeated values, and takes
+ * amortized O(1) time without allocating. The remaining methods number the permutations of
+ * <code>0, 1, ..., n - 1</code> by their position in lexicographic order, so that the whole space
+ * of permutations, or any range of it, may be divided exactly between threads or processes.
+ *
+ * <p>For example, the permutations of <code>[0, 1, 2]</code> have ranks
+ * <code>[0, 1, 2] = 0, [0, 2, 1] = 1, [1, 0, 2] = 2, ... [2, 1, 0] = 5</code>.
+ */
+public final class IntPermuter {
+
+  /** The longest permutation whose rank fits in a long: 20! < 2^63 < 21!. */
+  public static final int MAX_LENGTH = 20;
+
+  private IntPermuter() {}
+
+  /** Rearrange an array into the next larger permutation of its values, if there is one.
+   *
+   * <p>If the values are already in non-increasing order there is no larger permutation, and the
+   * array is left as it is.
+   *
+   * @return Whether the array was advanced
+   */
+  public static boolean next(int[] permutation) {
+    // Find the last value which is less than its successor. Everything after it is non-increasing.
+    int j = permutation.length - 2;
+    while (j >= 0 && permutation[j] >= permutation[j + 1]) {
+      --j;
+    }
+    if (j < 0) {
+      return false;
+    }
+
+    // Swap it with the last value in the tail that exceeds it, which leaves the tail
+    // non-increasing, so reversing the tail sorts it.
+    int k = permutation.length - 1;
+    while (permutation[k] <= permutation[j]) {
+      --k;
+    }
+    swap(permutation, j, k);
+    for (int a = j + 1, b = permutation.length - 1; a < b; ++a, --b) {
+      swap(permutation, a, b);
+    }
+    return true;
+  }
+
+  /** Returns the number of permutations of N distinct values, i.e., N factorial. */
+  public static long count(int n) {
+    checkLength(n);
+    long count = 1;
+    for (int i = 2; i <= n; ++i) {
+      count *= i;
+    }
+    return count;
+  }
+
+  /** Returns the position of a permutation of <code>0, ..., n - 1</code> in lexicographic order.
+   *
+   * <p>This is its Lehmer code read as a number in the factorial number system.
+   */
+  public static long rank(int[] permutation) {
+    int n = permutation.length;
+    checkLength(n);
+    long rank = 0;
+    for (int i = 0; i < n; ++i) {
+      int smallerAfter = 0;
+      for (int j = i + 1; j < n; ++j) {
+        if (permutation[j] < permutation[i]) {
+          ++smallerAfter;
+        }
+      }
+      rank = rank * (n - i) + smallerAfter;
+    }
+    return rank;
+  }
+
+  /** Write the permutation of <code>0, ..., dest.length - 1</code> with the given rank. */
+  public static void unrank(long rank, int[] dest) {
+    int n = dest.length;
+    if (rank < 0 || rank >= count(n)) {
+      throw new IllegalArgumentException("No permutation of " + n + " values has rank " + rank);
+    }
+
+    // Extract the digits of the factorial number system, least significant first.
+    for (int i = n - 1; i >= 0; --i) {
+      dest[i] = (int) (rank % (n - i));
+      rank /= n - i;
+    }
+    // Digit i counts the unused values smaller than the one at position i.
+    boolean[] used = new boolean[n];
+    for (int i = 0; i < n; ++i) {
+      int value = 0;
+      for (int skip = dest[i]; used[value] || skip > 0; ++value) {
+        if (!used[value]) {
+          --skip;
+        }
+      }
+      used[value] = true;
+      dest[i] = value;
+    }
+  }
+
+  /** Returns a Spliterator over every permutation of <code>0, ..., n - 1</code>. */
+  public static Spliterator<int[]> spliterator(int n) {
+    return spliterator(n, 0, count(n));
+  }
+
+  /** Returns a Spliterator over the permutations of <code>0, ..., n - 1</code> ranked From to To.
+   *
+   * <p>To keep iteration allocation-free, every permutation is delivered in the same array, which
+   * is advanced in place after the consumer returns. Consumers must copy it to keep it. Splits
+   * are exact halves of the remaining range of ranks, so a parallel stream over the spliterator
+   * divides the work evenly.
+   *
+   * @param from Rank of the first permutation, inclusive
+   * @param to Rank of the last permutation, exclusive
+   */
+  public static Spliterator<int[]> spliterator(int n, long from, long to) {
+    if (from < 0 || to > count(n) || from > to) {
+      throw new IllegalArgumentException(
+          "Invalid range [" + from + ", " + to + ") of the " + count(n) + " permutations.");
+    }
+    return new RangeSpliterator(n, from, to);
+  }
+
+  private static void checkLength(int n) {
+    if (n < 0 || n > MAX_LENGTH) {
+      throw new IllegalArgumentException(
+          "Permutations of " + n + " values cannot be ranked; the limit is " + MAX_LENGTH + ".");
+    }
+  }
+
+  private static void swap(int[] array, int i, int j) {
+    int tmp = array[i];
+    array[i] = array[j];
+    array[j] = tmp;
+  }
+
+  private static final class RangeSpliterator implements Spliterator<int[]> {
+
+    private final int[] permutation;
+    private long next;
+    private long end;
+    private boolean started;
+
+    RangeSpliterator(int n, long from, long to) {
+      this.permutation = new int[n];
+      this.next = from;
+      this.end = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super int[]> action) {
+      if (next >= end) {
+        return false;
+      }
+      if (started) {
+        next(permutation);
+      } else {
+        unrank(next, permutation);
+        started = true;
+      }
+      ++next;
+      action.accept(permutation);
+      return true;
+    }
+
+    @Override
+    public Spliterator<int[]> trySplit() {
+      long mid = next + (end - next) / 2;
+      if (mid == next) {
+        return null;
+      }
+      // The prefix goes to the new spliterator, as the Spliterator contract requires for ORDERED.
+      Spliterator<int[]> prefix = new RangeSpliterator(permutation.length, next, mid);
+      next = mid;
+      started = false;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return end - next;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+  }
+}
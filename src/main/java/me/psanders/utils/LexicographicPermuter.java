@@ -7,6 +7,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
 
 /** Iterator over the lexicographic permutations of a list.
  *
@@ -19,6 +21,9 @@ import java.util.List;
  *
  * <p>NOTE: The first permutation returned will always be the permutation passed in.
  *
+ * <p>This is a thin adapter over <code>IntPermuter</code>: each item is replaced by the rank of
+ * its value among the distinct values, and those ranks are permuted in place. Each permutation
+ * is returned as a new list, and the list passed in is not modified.
  */
 public class LexicographicPermuter<T extends Comparable<T>> implements Iterable<List<T>> {
   
@@ -35,95 +40,48 @@ public class LexicographicPermuter<T extends Comparable<T>> implements Iterable<
 
   private class PermutationIterator implements Iterator<List<T>> {
 
+    // The distinct values of the items in ascending order, and the index into it of each item.
+    private List<T> values;
+    private int[] permutation;
+    private boolean hasNext;
+
+    PermutationIterator() {
+      hasNext = items != null;
+      if (hasNext) {
+        values = new ArrayList<T>(new TreeSet<T>(items));
+        permutation = new int[items.size()];
+        for (int i = 0; i < permutation.length; ++i) {
+          permutation[i] = Collections.binarySearch(values, items.get(i));
+        }
+      }
+    }
+
     /** Return whether the last permutation has already been given.
      *
-     * <p>When a larger permutation does not exist, the new permutation is set to null. Thus, this
-     * is false only when items is null.
+     * <p>This is false only when the items were null, or once the permutation in non-increasing
+     * order, which has no larger permutation, has been returned.
      *
      */
     @Override
     public boolean hasNext() {
-      return items != null;
+      return hasNext;
     }
 
-    /** Return the next largest permutation of a items if it exists, otherwise null.
-     *
-     * <p>We return the current ordering and update to the least reordering of the elements which is
-     * greater than the current ordering. Such an ordering exists so long as the elements are not
-     * sorted in non-increasing order.
-     *
-     * <p>If the elements are sorted in non-increasing order, there is no valid permutation greater
-     * than the current permutation, so we update to null.
+    /** Return the current ordering and advance to the next larger one, if it exists.
      *
      */
     @Override
     public List<T> next() {
-      // Find the least significant digit which is less than its successor.
-      int j = getLastLessThanSuccessor();
-
-      // Find the smallest value greater than the value at j which succeeds j. Note, due to the way
-      // we selected j, j+1 is a safe starting value.
-      int k = getLeastLargerValueInTail(j);
-
-      List<T> old = new ArrayList(items);
-      if (j < 0) {
-        // If there is no index j satisfying the above constraint, then we have reached the largest
-        // lexicographic permutation.
-        items = null;
-        return old;
-      }
-      // Swap the values at j and k, sorting all values after j.
-      Collections.swap(items, j, k);
-      Collections.sort(items.subList(j+1, items.size()));
-
-      return old;
-    }
-
-    /** Get the index of the last value which has a strictly smaller value than its successor.
-     *
-     * <p>For example, in the list <code>[1, 2, 3, 4, 3]</code>, this would be `2` because
-     * `3 < 4` but `4 >= 3`.
-     *
-     */
-    private int getLastLessThanSuccessor() {
-      int j = items.size() - 2;  // Begin at the second to last element, since the last element has
-      // no successor.
-      while (j >= 0) {
-        if (items.get(j).compareTo(items.get(j + 1)) < 0) {
-          break;
-        }
-        --j;
+      if (!hasNext) {
+        throw new NoSuchElementException();
       }
 
-      return j;
-    }
-
-    /** Find the index of the smallest value after j which exceeds the element at j.
-     *
-     * <p>We search the sublist <code>items[j+1:]</code> for elements strictly greater than `j`
-     * which are strictly less than the current value of `k`.
-     *
-     * <p>For an initial value, we set `k = j + 1` because `j` was chosen such that its immediate
-     * successor would be strictly greater, so we can guarantee that `j+1` would be valid.
-     *
-     * <p>If the value of `j` passed in is invalid then we return -1 to prevent looping forever
-     * or producing invalid results without generating an error.
-     */
-    private int getLeastLargerValueInTail(int j) {
-      if (j < 0) {
-        return -1;
+      List<T> current = new ArrayList<T>(permutation.length);
+      for (int index: permutation) {
+        current.add(values.get(index));
       }
-      int k = j + 1;
-      for (int i = j + 2; i < items.size(); ++i) {
-        T atI = items.get(i);
-        T atJ = items.get(j);
-        T atK = items.get(k);
-        if (atI.compareTo(atK) < 0 && atI.compareTo(atJ) > 0) {
-          k = i;
-        }
-      }
-      return k;
+      hasNext = IntPermuter.next(permutation);
+      return current;
     }
   }
 }
-
@@ -5,6 +5,7 @@ package me.psanders.graph;
 
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -26,6 +27,45 @@ public class GraphTest {
     testFidelity(new TestGraphFactory().getLinkedGraph());
   }
 
+  @Test
+  public void longMatrixGraphIsIndexedInLabelOrder() {
+    LongMatrixGraph<String> graph = new TestGraphFactory().getLongMatrixGraph();
+
+    assertEquals(4, graph.size());
+    assertEquals(2, graph.getIndex("c"));
+    assertEquals(-1, graph.getIndex("e"));
+    assertEquals("d", graph.getLabel(3));
+    assertEquals(4, graph.getWeightAt(2, 3));
+    assertEquals(Long.valueOf(4), graph.getWeight("c", "d"));
+    assertNull(graph.getWeight("c", "e"));
+  }
+
+  @Test
+  public void adapterMatchesUnderlyingGraph() {
+    Graph<String, Integer> graph = new TestGraphFactory().getMatrixGraph();
+    IndexedGraph<String, Integer> indexed = IndexedGraphAdapter.of(graph);
+
+    assertEquals(4, indexed.size());
+    for (int i = 0; i < indexed.size(); ++i) {
+      for (int j = 0; j < indexed.size(); ++j) {
+        Integer weight = graph.getWeight(indexed.getLabel(i), indexed.getLabel(j));
+        if (weight != null) {
+          assertEquals(weight.longValue(), indexed.getWeightAt(i, j));
+        } else if (i == j) {
+          assertEquals(0, indexed.getWeightAt(i, j));
+        } else {
+          assertEquals(IndexedGraph.UNREACHABLE, indexed.getWeightAt(i, j));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void adapterReturnsIndexedGraphsUnchanged() {
+    LongMatrixGraph<String> graph = new TestGraphFactory().getLongMatrixGraph();
+    assertSame(graph, IndexedGraphAdapter.of(graph));
+  }
+
   // If this fails then our insertion functions do not match our retrieval functions
   // i.e., `Graph.getWeight(X,Y)` searches
   private void testFidelity(Graph graph) {
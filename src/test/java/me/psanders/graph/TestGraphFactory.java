@@ -2,6 +2,7 @@
 
 package me.psanders.graph;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -50,4 +51,15 @@ class TestGraphFactory {
     };
     return new MatrixGraph(vertices, adjMatrix);
   }
-}
\ No newline at end of file
+
+  LongMatrixGraph<String> getLongMatrixGraph() {
+    long x = IndexedGraph.UNREACHABLE;
+    long[] weights = {
+        0, 2, 3, x,
+        1, 0, 2, 3,
+        x, 3, 0, 4,
+        1, x, x, 0
+    };
+    return new LongMatrixGraph<String>(Arrays.asList("a", "b", "c", "d"), weights);
+  }
+}
@@ -0,0 +1,66 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-29
+
+package me.psanders.graph.path;
+
+import java.util.HashSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import me.psanders.graph.Graph;
+import me.psanders.graph.LongMatrixGraph;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AntColonyOptimizationStrategyTest {
+
+  @Test
+  public void withinFivePercentOfOptimal() {
+    Graph<Integer, Integer> graph = new TestGraphFactory().getMatrixGraph();
+    Cycle cycle = new AntColonyOptimizationStrategy(new SplittableRandom(0))
+        .getOptimalCycle(graph);
+    Assert.assertEquals(graph.getNodes(), new HashSet(cycle.getOrder()));
+    Assert.assertTrue(0.95*(double) cycle.getCost() < TestGraphFactory.OPTIMAL_COST);
+  }
+
+  @Test
+  public void closeToLocalSearchOnAsymmetricTrips() {
+    LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(80, false, 0);
+    Cycle colony = new AntColonyOptimizationStrategy(new SplittableRandom(0))
+        .getOptimalCycle(plane);
+    Cycle local = new LocalSearchOptimizationStrategy().getOptimalCycle(plane);
+    Assert.assertEquals(plane.getNodes(), new HashSet(colony.getOrder()));
+    Assert.assertTrue(colony.getCost() < 1.05*(double) local.getCost());
+  }
+
+  @Test
+  public void reproducibleWithSeedOnAnyPool() {
+    LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(40, false, 1);
+    ForkJoinPool wide = new ForkJoinPool(4);
+    SolveBudget budget = new SolveBudget.Builder().maxEvaluations(2000).build();
+    Cycle sequential = new AntColonyOptimizationStrategy(new SplittableRandom(5), null, 8)
+        .getOptimalCycle(plane, budget);
+    Cycle parallel = new AntColonyOptimizationStrategy(new SplittableRandom(5), wide, 8)
+        .getOptimalCycle(plane, new SolveBudget.Builder().maxEvaluations(2000).build());
+    wide.shutdown();
+    Assert.assertEquals(sequential.getOrder(), parallel.getOrder());
+  }
+
+  @Test
+  public void handlesTinyGraphs() {
+    for (int size = 1; size <= 5; ++size) {
+      LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(size, false, 0);
+      Cycle cycle = new AntColonyOptimizationStrategy(new SplittableRandom(0))
+          .getOptimalCycle(plane);
+      Assert.assertEquals(size, cycle.getOrder().size());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void needsAnAnt() {
+    new AntColonyOptimizationStrategy(new SplittableRandom(0), null, 0);
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-02-01
+
+package me.psanders.graph.path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.psanders.graph.LongMatrixGraph;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BatchSolverTest {
+
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+
+  @After
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  private List<LongMatrixGraph<Integer>> getGraphs(int count) {
+    List<LongMatrixGraph<Integer>> graphs = new ArrayList<LongMatrixGraph<Integer>>();
+    for (int i = 0; i < count; ++i) {
+      graphs.add(new TestGraphFactory().getRandomPlane(5 + i % 20, i % 2 == 0, i));
+    }
+    return graphs;
+  }
+
+  @Test
+  public void solutionsAreInInputOrder() {
+    List<LongMatrixGraph<Integer>> graphs = getGraphs(200);
+    List<BatchSolver.Solution<Integer, Long>> solutions = new BatchSolver<Integer, Long>(
+        pool, LocalSearchOptimizationStrategy::new).solve(graphs);
+
+    Assert.assertEquals(graphs.size(), solutions.size());
+    for (int i = 0; i < graphs.size(); ++i) {
+      Cycle expected = new LocalSearchOptimizationStrategy().getOptimalCycle(graphs.get(i));
+      Assert.assertEquals(expected.getOrder(), solutions.get(i).getCycle().getOrder());
+      Assert.assertTrue(solutions.get(i).getElapsedNanos() > 0);
+    }
+  }
+
+  @Test
+  public void reusesOneStrategyPerWorker() {
+    AtomicInteger made = new AtomicInteger();
+    BatchSolver<Integer, Long> solver = new BatchSolver<Integer, Long>(pool, () -> {
+      made.incrementAndGet();
+      return new LocalSearchOptimizationStrategy<Integer, Long>();
+    });
+    solver.solve(getGraphs(100));
+    solver.solve(getGraphs(100));
+    // The workers, and the caller if it helps with the batch.
+    Assert.assertTrue(made.get() <= pool.getParallelism() + 1);
+  }
+
+  @Test
+  public void eachGraphGetsItsOwnBudget() {
+    AtomicInteger budgets = new AtomicInteger();
+    new BatchSolver<Integer, Long>(pool, LocalSearchOptimizationStrategy::new)
+        .solve(getGraphs(50), () -> {
+          budgets.incrementAndGet();
+          return new SolveBudget.Builder().maxEvaluations(1000).build();
+        });
+    Assert.assertEquals(50, budgets.get());
+  }
+
+  @Test
+  public void reusedWorkspaceMatchesFreshArrays() {
+    // Largest first, so later solves run in arrays longer than they need and left dirty.
+    List<LongMatrixGraph<Integer>> graphs = getGraphs(40);
+    graphs.sort((a, b) -> b.getNodes().size() - a.getNodes().size());
+    Workspace workspace = new Workspace();
+    for (int i = 0; i < graphs.size(); ++i) {
+      SolveBudget budget = new SolveBudget.Builder().maxEvaluations(20000).build();
+      Cycle expected = new SimulatedAnnealingOptimizationStrategy<Integer, Long>(
+          new SplittableRandom(i)).getOptimalCycle(graphs.get(i), budget);
+      budget = new SolveBudget.Builder().maxEvaluations(20000).build();
+      Cycle reused = new SimulatedAnnealingOptimizationStrategy<Integer, Long>(
+          new SplittableRandom(i)).getOptimalCycle(graphs.get(i), budget, workspace);
+      Assert.assertEquals(expected.getOrder(), reused.getOrder());
+
+      expected = new LocalSearchOptimizationStrategy<Integer, Long>()
+          .getOptimalCycle(graphs.get(i));
+      reused = new LocalSearchOptimizationStrategy<Integer, Long>()
+          .getOptimalCycle(graphs.get(i), null, workspace);
+      Assert.assertEquals(expected.getOrder(), reused.getOrder());
+    }
+  }
+
+  @Test
+  public void emptyBatchGivesNoSolutions() {
+    Assert.assertTrue(new BatchSolver<Integer, Long>(pool, LocalSearchOptimizationStrategy::new)
+        .solve(new ArrayList<LongMatrixGraph<Integer>>()).isEmpty());
+  }
+}
@@ -0,0 +1,61 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-19
+
+package me.psanders.graph.path;
+
+import java.util.HashSet;
+
+import me.psanders.graph.LongMatrixGraph;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BranchAndBoundOptimizationStrategyTest {
+
+  @Test
+  public void findsOptimalCycle() {
+    Cycle<Integer, Integer> cycle = new BranchAndBoundOptimizationStrategy<Integer, Integer>()
+        .getOptimalCycle(new TestGraphFactory().getMatrixGraph());
+
+    Assert.assertEquals(TestGraphFactory.OPTIMAL_COST, cycle.getCost());
+  }
+
+  @Test
+  public void agreesWithHeldKarp() {
+    for (long seed = 0; seed < 4; ++seed) {
+      boolean symmetric = seed % 2 == 0;
+      LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(13, symmetric, seed);
+      long exact = new HeldKarpOptimizationStrategy<Integer, Long>().getOptimalCycle(graph)
+          .getCost();
+
+      Assert.assertEquals(exact,
+          new BranchAndBoundOptimizationStrategy<Integer, Long>().getOptimalCycle(graph).getCost());
+    }
+  }
+
+  @Test
+  public void neverWorseThanLocalSearch() {
+    LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(30, true, 0);
+    Cycle<Integer, Long> exact =
+        new BranchAndBoundOptimizationStrategy<Integer, Long>().getOptimalCycle(graph);
+
+    Assert.assertEquals(30, new HashSet(exact.getOrder()).size());
+    Assert.assertTrue(exact.getCost() <= new LocalSearchOptimizationStrategy<Integer, Long>()
+        .getOptimalCycle(graph).getCost());
+  }
+
+  @Test(timeout = 20000)
+  public void agreesWithHeldKarpAcrossUnreachableLegs() {
+    for (long seed = 0; seed < 20; ++seed) {
+      LongMatrixGraph<Integer> graph =
+          new TestGraphFactory().getRandomPlane(8, seed % 2 == 0, seed, 0.45);
+      long exact = new HeldKarpOptimizationStrategy<Integer, Long>().getOptimalCycle(graph)
+          .getCost();
+
+      Assert.assertEquals(exact,
+          new BranchAndBoundOptimizationStrategy<Integer, Long>().getOptimalCycle(graph).getCost());
+    }
+  }
+}
@@ -0,0 +1,37 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-22
+
+package me.psanders.graph.path;
+
+import java.util.concurrent.ForkJoinPool;
+
+import me.psanders.graph.LongMatrixGraph;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BruteForceOptimizationStrategyTest {
+
+  @Test
+  public void parallelFindsOptimalCycle() {
+    Cycle<Integer, Integer> cycle = new BruteForceOptimizationStrategy<Integer, Integer>(
+        ForkJoinPool.commonPool()).getOptimalCycle(new TestGraphFactory().getMatrixGraph());
+
+    Assert.assertEquals(TestGraphFactory.OPTIMAL_COST, cycle.getCost());
+  }
+
+  @Test
+  public void parallelAgreesWithSequential() {
+    for (long seed = 0; seed < 4; ++seed) {
+      LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(7, false, seed);
+      long sequential = new BruteForceOptimizationStrategy<Integer, Long>().getOptimalCycle(graph)
+          .getCost();
+      long parallel = new BruteForceOptimizationStrategy<Integer, Long>(ForkJoinPool.commonPool())
+          .getOptimalCycle(graph).getCost();
+
+      Assert.assertEquals(sequential, parallel);
+    }
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-25
+
+package me.psanders.graph.path;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import me.psanders.graph.LongMatrixGraph;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CrossoverOperatorTest {
+
+  private static final int SIZE = 25;
+  private static final int TRIALS = 200;
+
+  private final CrossoverOperator[] operators = {
+      new OrderCrossover(), new PartiallyMappedCrossover(), new EdgeAssemblyCrossover()
+  };
+
+  @Test
+  public void childrenArePermutations() {
+    for (boolean symmetric : new boolean[] {true, false}) {
+      LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(SIZE, symmetric, 0);
+      SplittableRandom random = new SplittableRandom(0);
+      int[] first = new int[SIZE];
+      int[] second = new int[SIZE];
+      int[] child = new int[SIZE];
+      for (CrossoverOperator operator : operators) {
+        for (int trial = 0; trial < TRIALS; ++trial) {
+          Tours.shuffle(first, 0, SIZE, random);
+          Tours.shuffle(second, 0, SIZE, random);
+          operator.recombine(graph, first, second, child, random);
+
+          int[] sorted = child.clone();
+          Arrays.sort(sorted);
+          for (int i = 0; i < SIZE; ++i) {
+            Assert.assertEquals(i, sorted[i]);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void identicalParentsGiveTheSameCycle() {
+    LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(SIZE, true, 0);
+    SplittableRandom random = new SplittableRandom(1);
+    int[] parent = new int[SIZE];
+    int[] child = new int[SIZE];
+    for (CrossoverOperator operator : operators) {
+      Tours.shuffle(parent, 0, SIZE, random);
+      operator.recombine(graph, parent, parent.clone(), child, random);
+      Assert.assertEquals(Tours.cost(graph, parent, 0, SIZE), Tours.cost(graph, child, 0, SIZE));
+    }
+  }
+
+  @Test
+  public void edgeAssemblyChildIsNoWorseThanTheParentsOnAverage() {
+    LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(SIZE, true, 2);
+    SplittableRandom random = new SplittableRandom(2);
+    CrossoverOperator operator = new EdgeAssemblyCrossover();
+    int[] first = new int[SIZE];
+    int[] second = new int[SIZE];
+    int[] child = new int[SIZE];
+    long parents = 0;
+    long children = 0;
+    for (int trial = 0; trial < TRIALS; ++trial) {
+      Tours.shuffle(first, 0, SIZE, random);
+      Tours.shuffle(second, 0, SIZE, random);
+      operator.recombine(graph, first, second, child, random);
+      parents += Math.max(Tours.cost(graph, first, 0, SIZE), Tours.cost(graph, second, 0, SIZE));
+      children += Tours.cost(graph, child, 0, SIZE);
+    }
+    Assert.assertTrue(children < parents);
+  }
+}
@@ -0,0 +1,192 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-10
+
+package me.psanders.graph.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.IndexedGraphAdapter;
+import me.psanders.graph.LongMatrixGraph;
+import me.psanders.graph.MatrixGraph;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CycleTest {
+
+  private static final int SIZE = 12;
+  private static final int MOVES = 2000;
+
+  private Graph<Integer, Integer> graph;
+  private List<Integer> order;
+
+  /**
+   * Create an asymmetric graph, so that reversing a segment changes the cost of its interior.
+   */
+  @Before
+  public void setUp() {
+    Random random = new Random(0);
+    Integer[][] matrix = new Integer[SIZE][SIZE];
+    HashMap<Integer, Integer> labels = new HashMap();
+    order = new ArrayList<Integer>();
+    for (int i = 0; i < SIZE; ++i) {
+      labels.put(i, i);
+      order.add(i);
+      for (int j = 0; j < SIZE; ++j) {
+        matrix[i][j] = random.nextInt(100);
+      }
+    }
+    graph = new MatrixGraph(labels, matrix);
+  }
+
+  @Test
+  public void incrementalCostMatchesRecomputedCost() {
+    checkMoves(new Cycle<Integer, Integer>(graph, order));
+    checkMoves(new Cycle<Integer, Integer>(IndexedGraphAdapter.of(graph), order));
+  }
+
+  @Test
+  public void incrementalPathCostMatchesRecomputedCost() {
+    checkMoves(new Path<Integer, Integer>(graph, order));
+    checkMoves(new Path<Integer, Integer>(IndexedGraphAdapter.of(graph), order));
+  }
+
+  @Test
+  public void incrementalCostOnSymmetricGraphs() {
+    Random random = new Random(3);
+    Integer[][] matrix = new Integer[SIZE][SIZE];
+    HashMap<Integer, Integer> labels = new HashMap();
+    for (int i = 0; i < SIZE; ++i) {
+      labels.put(i, i);
+      for (int j = 0; j <= i; ++j) {
+        matrix[i][j] = i == j ? 0 : random.nextInt(100);
+        matrix[j][i] = matrix[i][j];
+      }
+    }
+    graph = new MatrixGraph(labels, matrix);
+    checkMoves(new Cycle<Integer, Integer>(graph, order));
+    checkMoves(new Cycle<Integer, Integer>(IndexedGraphAdapter.of(graph), order));
+    checkMoves(new Path<Integer, Integer>(graph, order));
+  }
+
+  @Test
+  public void symmetricReversalsPriceOnlyTheBoundaryEdges() {
+    Integer[][] matrix = new Integer[SIZE][SIZE];
+    HashMap<Integer, Integer> labels = new HashMap();
+    for (int i = 0; i < SIZE; ++i) {
+      labels.put(i, i);
+      for (int j = 0; j < SIZE; ++j) {
+        matrix[i][j] = Math.abs(i - j);
+      }
+    }
+    int[] priced = new int[1];
+    Cycle<Integer, Integer> cycle = new Cycle<Integer, Integer>(
+        IndexedGraphAdapter.of(new MatrixGraph(labels, matrix)), order) {
+      @Override
+      protected long getWeightBetween(int from, int to) {
+        ++priced[0];
+        return super.getWeightBetween(from, to);
+      }
+    };
+    cycle.getCost();
+    cycle.reverse(0, 1);
+
+    priced[0] = 0;
+    cycle.reverse(1, SIZE - 2);
+    Assert.assertEquals(4, priced[0]);
+  }
+
+  @Test
+  public void copiesAreIndependent() {
+    Cycle<Integer, Integer> original = new Cycle<Integer, Integer>(graph, order);
+    long cost = original.getCost();
+
+    Cycle<Integer, Integer> copy = new Cycle<Integer, Integer>(original);
+    copy.reverse(2, 7);
+
+    Assert.assertEquals(cost, original.getCost());
+    Assert.assertEquals(order, original.getOrder());
+  }
+
+  @Test
+  public void comparesUnreachableLegsWithoutOverflow() {
+    IndexedGraph<Integer, Integer> indexed = IndexedGraphAdapter.of(graph);
+    Cycle<Integer, Integer> cheap = new Cycle<Integer, Integer>(indexed, order);
+    Cycle<Integer, Integer> expensive = new Cycle<Integer, Integer>(indexed, order) {
+      @Override
+      public long getCost() {
+        return IndexedGraph.UNREACHABLE;
+      }
+    };
+
+    Assert.assertTrue(cheap.compareTo(expensive) < 0);
+    Assert.assertTrue(expensive.compareTo(cheap) > 0);
+  }
+
+  @Test
+  public void unreachableLegsSaturateRatherThanWrap() {
+    // About half the legs are unreachable, so every tour crosses several of them.
+    Random random = new Random(2);
+    long[] weights = new long[SIZE * SIZE];
+    for (int k = 0; k < weights.length; ++k) {
+      weights[k] = random.nextBoolean() ? IndexedGraph.UNREACHABLE : random.nextInt(100);
+    }
+    IndexedGraph<Integer, Long> gaps =
+        new LongMatrixGraph<Integer>(new ArrayList<Integer>(order), weights);
+    Cycle<Integer, Long> cycle = new Cycle<Integer, Long>(gaps, order);
+    Assert.assertEquals(Long.MAX_VALUE, cycle.getCost());
+
+    for (int i = 0; i < MOVES; ++i) {
+      int a = random.nextInt(SIZE);
+      int b = random.nextInt(SIZE);
+      switch (i % 3) {
+        case 0:
+          cycle.swap(a, b);
+          break;
+        case 1:
+          cycle.relocate(a, b);
+          break;
+        default:
+          cycle.reverse(Math.min(a, b), Math.max(a, b));
+      }
+      long cost = cycle.getCost();
+      Assert.assertTrue(cost >= 0);
+      Assert.assertEquals(new Cycle<Integer, Long>(gaps, cycle.getOrder()).getCost(), cost);
+    }
+  }
+
+  private void checkMoves(Path<Integer, Integer> path) {
+    Random random = new Random(1);
+    for (int i = 0; i < MOVES; ++i) {
+      int a = random.nextInt(SIZE);
+      int b = random.nextInt(SIZE);
+      long before = path.getCost();
+      long delta;
+      switch (i % 3) {
+        case 0:
+          delta = path.swap(a, b);
+          break;
+        case 1:
+          delta = path.relocate(a, b);
+          break;
+        default:
+          delta = path.reverse(Math.min(a, b), Math.max(a, b));
+      }
+
+      Path<Integer, Integer> fresh = path instanceof Cycle
+          ? new Cycle<Integer, Integer>(graph, path.getOrder())
+          : new Path<Integer, Integer>(graph, path.getOrder());
+      Assert.assertEquals(fresh.getCost(), path.getCost());
+      Assert.assertEquals(before + delta, path.getCost());
+    }
+  }
+}
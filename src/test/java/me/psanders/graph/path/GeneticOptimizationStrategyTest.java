@@ -11,7 +11,13 @@ import org.junit.Test;
 import org.junit.runners.JUnit4;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import me.psanders.graph.LongMatrixGraph;
 
 @RunWith(JUnit4.class)
 public class GeneticOptimizationStrategyTest {
@@ -57,4 +63,101 @@ public class GeneticOptimizationStrategyTest {
     Assert.assertTrue(0.95*cost < OPTIMAL_COST);
   }
 
-}
\ No newline at end of file
+  @Test
+  public void visitsEveryNodeOnce() {
+    Cycle genetic = new GeneticOptimizationStrategy(new Random(0)).getOptimalCycle(graph);
+    Assert.assertEquals(graph.getNodes(), new HashSet(genetic.getOrder()));
+    Assert.assertEquals(MATRIX.length, genetic.getOrder().size());
+  }
+
+  @Test
+  public void islandsWithinFivePercentOfOptimal() {
+    ForkJoinPool pool = new ForkJoinPool(2);
+    Cycle genetic = new GeneticOptimizationStrategy(new SplittableRandom(0), pool, 4)
+        .getOptimalCycle(graph);
+    pool.shutdown();
+    Assert.assertEquals(graph.getNodes(), new HashSet(genetic.getOrder()));
+    Assert.assertTrue(0.95*(double) genetic.getCost() < OPTIMAL_COST);
+  }
+
+  @Test
+  public void islandsAreReproducibleWithSeed() {
+    ForkJoinPool small = new ForkJoinPool(1);
+    ForkJoinPool large = new ForkJoinPool(4);
+    Cycle first = new GeneticOptimizationStrategy(new SplittableRandom(7), small, 4)
+        .getOptimalCycle(graph);
+    Cycle second = new GeneticOptimizationStrategy(new SplittableRandom(7), large, 4)
+        .getOptimalCycle(graph);
+    small.shutdown();
+    large.shutdown();
+    Assert.assertEquals(first.getOrder(), second.getOrder());
+  }
+
+  @Test
+  public void crossoverWithinFivePercentOfOptimal() {
+    Cycle ox = new GeneticOptimizationStrategy(new Random(0), OrderCrossover::new)
+        .getOptimalCycle(graph);
+    Cycle eax = new GeneticOptimizationStrategy(new Random(0), EdgeAssemblyCrossover::new)
+        .getOptimalCycle(graph);
+    Assert.assertTrue(0.95*(double) ox.getCost() < OPTIMAL_COST);
+    Assert.assertTrue(0.95*(double) eax.getCost() < OPTIMAL_COST);
+  }
+
+  @Test
+  public void edgeAssemblyBeatsMutationOnLargerTrips() {
+    LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(60, true, 0);
+    Cycle mutation = new GeneticOptimizationStrategy(new Random(0)).getOptimalCycle(plane);
+    Cycle eax = new GeneticOptimizationStrategy(new Random(0), EdgeAssemblyCrossover::new)
+        .getOptimalCycle(plane);
+    Cycle local = new LocalSearchOptimizationStrategy().getOptimalCycle(plane);
+    Assert.assertTrue(eax.getCost() < mutation.getCost());
+    Assert.assertTrue(eax.getCost() < 1.05*(double) local.getCost());
+  }
+
+  @Test
+  public void seedingConvergesSoonerToBetterCycles() {
+    LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(80, true, 0);
+    SolveBudget random = new SolveBudget.Builder().stallGenerations(20).build();
+    SolveBudget seeded = new SolveBudget.Builder().stallGenerations(20).build();
+    Cycle shuffled = new GeneticOptimizationStrategy(new Random(0), OrderCrossover::new)
+        .getOptimalCycle(plane, random);
+    Cycle constructed = new GeneticOptimizationStrategy(new Random(0), OrderCrossover::new)
+        .seededBy(TourConstructions.GREEDY_EDGE)
+        .getOptimalCycle(plane, seeded);
+    Assert.assertTrue(constructed.getCost() < shuffled.getCost());
+    Assert.assertTrue(seeded.getEvaluations() < random.getEvaluations());
+  }
+
+  @Test
+  public void memeticBeatsPlainCrossover() {
+    LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(60, true, 0);
+    Cycle plain = new GeneticOptimizationStrategy(new Random(0), OrderCrossover::new)
+        .getOptimalCycle(plane, new SolveBudget.Builder().stallGenerations(10).build());
+    Cycle memetic = new GeneticOptimizationStrategy(new Random(0), OrderCrossover::new)
+        .memetic(3 * 60)
+        .getOptimalCycle(plane, new SolveBudget.Builder().stallGenerations(10).build());
+    Cycle local = new LocalSearchOptimizationStrategy().getOptimalCycle(plane);
+    Assert.assertEquals(plane.getNodes(), new HashSet(memetic.getOrder()));
+    Assert.assertTrue(memetic.getCost() < plain.getCost());
+    Assert.assertTrue(memetic.getCost() <= local.getCost());
+  }
+
+  @Test
+  public void deadlineEndsMemeticSearch() {
+    // Unlimited searches of 300 stops take seconds a generation unless they watch the deadline.
+    LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(300, true, 0);
+    SolveBudget budget = new SolveBudget.Builder().timeout(100, TimeUnit.MILLISECONDS).build();
+    long start = System.nanoTime();
+    Cycle cycle = new GeneticOptimizationStrategy(new Random(0), OrderCrossover::new)
+        .memetic(Long.MAX_VALUE)
+        .getOptimalCycle(plane, budget);
+    Assert.assertEquals(300, cycle.getOrder().size());
+    Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void memeticRejectsNegativeLimit() {
+    new GeneticOptimizationStrategy(new Random(0)).memetic(-1);
+  }
+
+}
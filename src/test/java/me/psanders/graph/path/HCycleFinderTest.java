@@ -0,0 +1,103 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-31
+
+package me.psanders.graph.path;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.psanders.graph.Graph;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class HCycleFinderTest {
+
+  private final Graph plane = new TestGraphFactory().getRandomPlane(60, true, 0);
+  private final Graph matrix = new TestGraphFactory().getMatrixGraph();
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void reportsEachImprovingCycle() throws Exception {
+    List<Long> costs = Collections.synchronizedList(new ArrayList<Long>());
+    SolveBudget budget = new SolveBudget.Builder()
+        .listener((cycle, cost, generation, elapsed) -> {
+          Assert.assertEquals(cost, cycle.getCost());
+          costs.add(cost);
+        })
+        .build();
+    Cycle result = new HCycleFinder(plane,
+        new SimulatedAnnealingOptimizationStrategy(new SplittableRandom(0)))
+        .getOptimalCycleAsync(budget, executor)
+        .get(60, TimeUnit.SECONDS);
+
+    Assert.assertTrue(costs.size() > 1);
+    for (int i = 1; i < costs.size(); ++i) {
+      Assert.assertTrue(costs.get(i) < costs.get(i - 1));
+    }
+    Assert.assertEquals(result.getCost(), (long) costs.get(costs.size() - 1));
+  }
+
+  @Test
+  public void reportsTheResultOfStrategiesThatIgnoreBudgets() {
+    AtomicReference<Cycle> reported = new AtomicReference<Cycle>();
+    SolveBudget budget = new SolveBudget.Builder()
+        .listener((cycle, cost, generation, elapsed) -> reported.set(cycle))
+        .build();
+    Cycle result = new HCycleFinder(matrix, new HeldKarpOptimizationStrategy())
+        .getOptimalCycleAsync(budget, executor).join();
+    Assert.assertEquals(TestGraphFactory.OPTIMAL_COST, result.getCost());
+    Assert.assertEquals(result.getCost(), reported.get().getCost());
+  }
+
+  @Test(timeout = 60000)
+  public void cancellingTheBudgetKeepsTheBestSoFar() {
+    AtomicReference<SolveBudget> holder = new AtomicReference<SolveBudget>();
+    SolveBudget budget = new SolveBudget.Builder()
+        .timeout(1, TimeUnit.HOURS)
+        .listener((cycle, cost, generation, elapsed) -> {
+          if (generation >= 3) {
+            holder.get().cancel();
+          }
+        })
+        .build();
+    holder.set(budget);
+    Cycle result = new HCycleFinder(plane, new GeneticOptimizationStrategy(new Random(0)))
+        .getOptimalCycleAsync(budget, executor).join();
+    Assert.assertEquals(60, result.getOrder().size());
+  }
+
+  @Test(timeout = 60000)
+  public void cancellingTheFutureStopsTheSearch() throws Exception {
+    SolveBudget budget = new SolveBudget.Builder().timeout(1, TimeUnit.HOURS).build();
+    CompletableFuture<Cycle<String, Long>> future = new HCycleFinder(plane,
+        new GeneticOptimizationStrategy(new Random(0))).getOptimalCycleAsync(budget, executor);
+    future.cancel(true);
+    Assert.assertTrue(budget.isCancelled());
+
+    // The only worker is free again once the search has stopped.
+    Assert.assertTrue(executor.submit(() -> true).get());
+  }
+
+  @Test
+  public void missingGraphGivesNoCycle() {
+    Assert.assertNull(new HCycleFinder(null, new HeldKarpOptimizationStrategy())
+        .getOptimalCycleAsync(SolveBudget.unlimited()).join());
+  }
+}
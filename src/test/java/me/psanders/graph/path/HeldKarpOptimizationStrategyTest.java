@@ -0,0 +1,64 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-17
+
+package me.psanders.graph.path;
+
+import java.util.HashSet;
+
+import me.psanders.graph.LongMatrixGraph;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class HeldKarpOptimizationStrategyTest {
+
+  @Test
+  public void findsOptimalCycle() {
+    Cycle<Integer, Integer> cycle = new HeldKarpOptimizationStrategy<Integer, Integer>()
+        .getOptimalCycle(new TestGraphFactory().getMatrixGraph());
+
+    Assert.assertEquals(TestGraphFactory.OPTIMAL_COST, cycle.getCost());
+    Assert.assertEquals(TestGraphFactory.MATRIX.length, new HashSet(cycle.getOrder()).size());
+  }
+
+  @Test
+  public void agreesWithBruteForce() {
+    for (long seed = 0; seed < 5; ++seed) {
+      LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(8, false, seed);
+      long exact = new BruteForceOptimizationStrategy<Integer, Long>().getOptimalCycle(graph)
+          .getCost();
+
+      Assert.assertEquals(exact,
+          new HeldKarpOptimizationStrategy<Integer, Long>().getOptimalCycle(graph).getCost());
+    }
+  }
+
+  @Test
+  public void solvesTwentyNodes() {
+    LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(20, true, 0);
+    Cycle<Integer, Long> exact =
+        new HeldKarpOptimizationStrategy<Integer, Long>().getOptimalCycle(graph);
+    Cycle<Integer, Long> local =
+        new LocalSearchOptimizationStrategy<Integer, Long>().getOptimalCycle(graph);
+
+    Assert.assertEquals(20, new HashSet(exact.getOrder()).size());
+    Assert.assertTrue(exact.getCost() <= local.getCost());
+  }
+
+  @Test
+  public void handlesTinyGraphs() {
+    for (int size = 1; size <= 3; ++size) {
+      LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(size, false, 0);
+      Assert.assertEquals(size, new HeldKarpOptimizationStrategy<Integer, Long>()
+          .getOptimalCycle(graph).getOrder().size());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsLargeGraphs() {
+    new HeldKarpOptimizationStrategy<Integer, Long>().getOptimalCycle(
+        new TestGraphFactory().getRandomPlane(HeldKarpOptimizationStrategy.MAX_NODES + 1, true, 0));
+  }
+}
@@ -0,0 +1,66 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-15
+
+package me.psanders.graph.path;
+
+import java.util.HashSet;
+
+import me.psanders.graph.LongMatrixGraph;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LocalSearchOptimizationStrategyTest {
+
+  private static final int SIZE = 200;
+
+  @Test
+  public void visitsEveryNodeOnce() {
+    LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(SIZE, false, 0);
+    Cycle<Integer, Long> cycle =
+        new LocalSearchOptimizationStrategy<Integer, Long>().getOptimalCycle(graph);
+
+    Assert.assertEquals(SIZE, cycle.getOrder().size());
+    Assert.assertEquals(graph.getNodes(), new HashSet<Integer>(cycle.getOrder()));
+  }
+
+  /** A tour with no crossing edges and no misplaced stops beats every nearest-neighbor tour. */
+  @Test
+  public void improvesOnNearestNeighbor() {
+    LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(SIZE, true, 0);
+    long best = new LocalSearchOptimizationStrategy<Integer, Long>().getOptimalCycle(graph)
+        .getCost();
+
+    // Compare with a nearest-neighbor tour that has no opportunity to improve itself.
+    long nearest = new LocalSearchOptimizationStrategy<Integer, Long>(0).getOptimalCycle(graph)
+        .getCost();
+    Assert.assertTrue(best < nearest);
+  }
+
+  @Test
+  public void withinTenPercentOfOptimalOnAsymmetricGraph() {
+    Cycle<Integer, Integer> cycle = new LocalSearchOptimizationStrategy<Integer, Integer>()
+        .getOptimalCycle(new TestGraphFactory().getMatrixGraph());
+    Assert.assertTrue(0.9 * cycle.getCost() <= TestGraphFactory.OPTIMAL_COST);
+  }
+
+  /** Sums through unreachable legs saturate, so moves that touch them must not be trusted. */
+  @Test(timeout = 10000)
+  public void terminatesWithUnreachableLegs() {
+    for (long seed = 0; seed < 10; ++seed) {
+      LongMatrixGraph<Integer> symmetric =
+          new TestGraphFactory().getRandomPlane(30, true, seed, 0.2);
+      Cycle<Integer, Long> cycle =
+          new LocalSearchOptimizationStrategy<Integer, Long>().getOptimalCycle(symmetric);
+      Assert.assertEquals(30, new HashSet<Integer>(cycle.getOrder()).size());
+      Assert.assertTrue(cycle.getCost() >= 0);
+
+      LongMatrixGraph<Integer> asymmetric =
+          new TestGraphFactory().getRandomPlane(5, false, seed, 0.4);
+      Assert.assertTrue(new LocalSearchOptimizationStrategy<Integer, Long>()
+          .getOptimalCycle(asymmetric).getCost() >= 0);
+    }
+  }
+}
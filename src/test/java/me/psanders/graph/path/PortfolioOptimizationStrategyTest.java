@@ -0,0 +1,185 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-30
+
+package me.psanders.graph.path;
+
+import java.util.HashSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.IndexedGraphAdapter;
+import me.psanders.graph.LongMatrixGraph;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PortfolioOptimizationStrategyTest {
+
+  private final ForkJoinPool executor = new ForkJoinPool(3);
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /** A heuristic that never finishes on its own, so only cancellation ends it. */
+  private static final OptimizationStrategy<Integer, Integer> STUBBORN =
+      new OptimizationStrategy<Integer, Integer>() {
+        @Override
+        public Cycle getOptimalCycle(Graph<Integer, Integer> graph) {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Cycle getOptimalCycle(Graph<Integer, Integer> graph, SolveBudget budget) {
+          while (!budget.isExhausted()) {
+            Thread.yield();
+          }
+          IndexedGraph<Integer, Integer> indexed = IndexedGraphAdapter.of(graph);
+          return new Cycle<Integer, Integer>(
+              indexed, TourConstructions.NEAREST_NEIGHBOR.build(indexed, 0));
+        }
+      };
+
+  @Test
+  public void standardPortfolioIsExactOnSmallGraphs() {
+    Cycle cycle = PortfolioOptimizationStrategy.<Integer, Integer>standard(
+        new SplittableRandom(0), executor).getOptimalCycle(new TestGraphFactory().getMatrixGraph());
+    Assert.assertEquals(TestGraphFactory.OPTIMAL_COST, cycle.getCost());
+  }
+
+  @Test
+  public void standardPortfolioBeatsLocalSearchAlone() {
+    LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(60, true, 0);
+    SolveBudget budget = new SolveBudget.Builder().stallGenerations(5).build();
+    Cycle cycle = PortfolioOptimizationStrategy.<Integer, Long>standard(
+        new SplittableRandom(0), executor).getOptimalCycle(plane, budget);
+    Cycle local = new LocalSearchOptimizationStrategy().getOptimalCycle(plane);
+    Assert.assertEquals(plane.getNodes(), new HashSet(cycle.getOrder()));
+    Assert.assertTrue(cycle.getCost() <= local.getCost());
+    Assert.assertFalse(budget.isCancelled());
+  }
+
+  @Test(timeout = 10000)
+  public void exactMemberCancelsTheOthers() {
+    Cycle cycle = new PortfolioOptimizationStrategy.Builder<Integer, Integer>(executor)
+        .heuristic(STUBBORN)
+        .exact(new HeldKarpOptimizationStrategy<Integer, Integer>(), 10)
+        .build()
+        .getOptimalCycle(new TestGraphFactory().getMatrixGraph());
+    Assert.assertEquals(TestGraphFactory.OPTIMAL_COST, cycle.getCost());
+  }
+
+  @Test
+  public void seededMembersStartFromTheHeuristicsBest() {
+    LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(40, false, 0);
+    AtomicLong seedCost = new AtomicLong(-1);
+    new PortfolioOptimizationStrategy.Builder<Integer, Long>(executor)
+        .heuristic(new LocalSearchOptimizationStrategy<Integer, Long>())
+        .seeded(seed -> graph -> {
+          IndexedGraph<Integer, Long> indexed = IndexedGraphAdapter.of(graph);
+          int[] tour = seed.build(indexed, 0);
+          seedCost.set(Tours.cost(indexed, tour, 0, tour.length));
+          return new Cycle<Integer, Long>(indexed, tour);
+        })
+        .build()
+        .getOptimalCycle(plane);
+    Assert.assertEquals(
+        new LocalSearchOptimizationStrategy().getOptimalCycle(plane).getCost(), seedCost.get());
+  }
+
+  @Test(timeout = 10000)
+  public void seededMembersStartFromImprovementsWhileTheyAreFound() {
+    LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(40, false, 0);
+    Cycle<Integer, Long> local =
+        new LocalSearchOptimizationStrategy<Integer, Long>().getOptimalCycle(plane);
+    AtomicLong seedCost = new AtomicLong(-1);
+    new PortfolioOptimizationStrategy.Builder<Integer, Long>(executor)
+        .seedDelay(1, TimeUnit.MINUTES)
+        .heuristic(new OptimizationStrategy<Integer, Long>() {
+          @Override
+          public Cycle<Integer, Long> getOptimalCycle(Graph<Integer, Long> graph) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public Cycle<Integer, Long> getOptimalCycle(Graph<Integer, Long> graph,
+              SolveBudget budget) {
+            // Report a better tour, then keep searching without finishing.
+            budget.improved(local.getCost(), 0, () -> local);
+            while (!budget.isExhausted()) {
+              Thread.yield();
+            }
+            return local;
+          }
+        })
+        .seeded(seed -> graph -> {
+          IndexedGraph<Integer, Long> indexed = IndexedGraphAdapter.of(graph);
+          int[] tour = seed.build(indexed, 0);
+          seedCost.set(Tours.cost(indexed, tour, 0, tour.length));
+          return new Cycle<Integer, Long>(indexed, tour);
+        })
+        .build()
+        .getOptimalCycle(plane,
+            new SolveBudget.Builder().timeout(500, TimeUnit.MILLISECONDS).build());
+    Assert.assertEquals(local.getCost(), seedCost.get());
+  }
+
+  @Test(timeout = 10000)
+  public void stuckHeuristicDoesNotHoldBackSeededMembers() {
+    AtomicLong seedCost = new AtomicLong(-1);
+    new PortfolioOptimizationStrategy.Builder<Integer, Integer>(executor)
+        .seedDelay(10, TimeUnit.MILLISECONDS)
+        .heuristic(STUBBORN)
+        .seeded(seed -> graph -> {
+          IndexedGraph<Integer, Integer> indexed = IndexedGraphAdapter.of(graph);
+          int[] tour = seed.build(indexed, 0);
+          seedCost.set(Tours.cost(indexed, tour, 0, tour.length));
+          return new Cycle<Integer, Integer>(indexed, tour);
+        })
+        .build()
+        .getOptimalCycle(new TestGraphFactory().getMatrixGraph(),
+            new SolveBudget.Builder().timeout(500, TimeUnit.MILLISECONDS).build());
+    Assert.assertTrue(seedCost.get() >= 0);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void failingMemberFailsTheSolve() {
+    new PortfolioOptimizationStrategy.Builder<Integer, Integer>(executor)
+        .heuristic(graph -> {
+          throw new IllegalStateException("broken");
+        })
+        .heuristic(STUBBORN)
+        .build()
+        .getOptimalCycle(new TestGraphFactory().getMatrixGraph());
+  }
+
+  @Test(timeout = 20000)
+  public void agreesWithHeldKarpAcrossUnreachableLegs() {
+    for (long seed = 0; seed < 40; ++seed) {
+      LongMatrixGraph<Integer> plane =
+          new TestGraphFactory().getRandomPlane(8, true, seed, 0.45);
+      Cycle cycle = PortfolioOptimizationStrategy.<Integer, Long>standard(
+          new SplittableRandom(seed), executor).getOptimalCycle(plane);
+      Assert.assertEquals(new HeldKarpOptimizationStrategy<Integer, Long>()
+          .getOptimalCycle(plane).getCost(), cycle.getCost());
+    }
+  }
+
+  @Test
+  public void handlesTinyGraphs() {
+    for (int size = 1; size <= 4; ++size) {
+      LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(size, false, 0);
+      Cycle cycle = PortfolioOptimizationStrategy.<Integer, Long>standard(
+          new SplittableRandom(0), executor).getOptimalCycle(plane);
+      Assert.assertEquals(size, cycle.getOrder().size());
+    }
+  }
+}
@@ -0,0 +1,76 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-28
+
+package me.psanders.graph.path;
+
+import java.util.HashSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import me.psanders.graph.Graph;
+import me.psanders.graph.LongMatrixGraph;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SimulatedAnnealingOptimizationStrategyTest {
+
+  @Test
+  public void withinFivePercentOfOptimal() {
+    Graph<Integer, Integer> graph = new TestGraphFactory().getMatrixGraph();
+    Cycle cycle = new SimulatedAnnealingOptimizationStrategy(new SplittableRandom(0))
+        .getOptimalCycle(graph);
+    Assert.assertEquals(graph.getNodes(), new HashSet(cycle.getOrder()));
+    Assert.assertTrue(0.95*(double) cycle.getCost() < TestGraphFactory.OPTIMAL_COST);
+  }
+
+  @Test
+  public void matchesLocalSearchOnLargerTrips() {
+    for (boolean symmetric : new boolean[] {true, false}) {
+      LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(80, symmetric, 0);
+      Cycle annealed = new SimulatedAnnealingOptimizationStrategy(new SplittableRandom(0))
+          .getOptimalCycle(plane);
+      Cycle local = new LocalSearchOptimizationStrategy().getOptimalCycle(plane);
+      Assert.assertEquals(plane.getNodes(), new HashSet(annealed.getOrder()));
+      Assert.assertTrue(annealed.getCost() < 1.05*(double) local.getCost());
+    }
+  }
+
+  @Test
+  public void costMatchesTour() {
+    // The cost tracked through move deltas must agree with pricing the final tour from scratch.
+    LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(40, false, 3);
+    Cycle cycle = new SimulatedAnnealingOptimizationStrategy(new SplittableRandom(3),
+        SimulatedAnnealingOptimizationStrategy.CoolingSchedule.linear(50), 20)
+        .getOptimalCycle(plane);
+    Assert.assertEquals(new Cycle(plane, cycle.getOrder()).getCost(), cycle.getCost());
+  }
+
+  @Test
+  public void deadlineEndsSearch() {
+    LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(200, true, 0);
+    SolveBudget budget = new SolveBudget.Builder().timeout(100, TimeUnit.MILLISECONDS).build();
+    long start = System.nanoTime();
+    Cycle cycle = new SimulatedAnnealingOptimizationStrategy(new SplittableRandom(0))
+        .getOptimalCycle(plane, budget);
+    Assert.assertEquals(200, cycle.getOrder().size());
+    Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+  }
+
+  @Test
+  public void handlesTinyGraphs() {
+    for (int size = 1; size <= 5; ++size) {
+      LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(size, true, 0);
+      Cycle cycle = new SimulatedAnnealingOptimizationStrategy(new SplittableRandom(0))
+          .getOptimalCycle(plane);
+      Assert.assertEquals(size, cycle.getOrder().size());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsCoolingRateAboveOne() {
+    SimulatedAnnealingOptimizationStrategy.CoolingSchedule.geometric(1.5);
+  }
+}
@@ -0,0 +1,106 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-26
+
+package me.psanders.graph.path;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import me.psanders.graph.LongMatrixGraph;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SolveBudgetTest {
+
+  private final LongMatrixGraph<Integer> plane = new TestGraphFactory().getRandomPlane(40, true, 0);
+
+  @Test
+  public void unlimitedBudgetRunsEveryGeneration() {
+    SolveBudget budget = SolveBudget.unlimited();
+    new GeneticOptimizationStrategy(new Random(0)).getOptimalCycle(plane, budget);
+    Assert.assertFalse(budget.isBounded());
+    Assert.assertEquals(
+        GeneticOptimizationStrategy.POPULATION
+            + GeneticOptimizationStrategy.GENERATIONS * (GeneticOptimizationStrategy.POPULATION
+                - GeneticOptimizationStrategy.POPULATION / 10),
+        budget.getEvaluations());
+  }
+
+  @Test
+  public void stallStopsConvergedSearchEarly() {
+    LongMatrixGraph<Integer> small = new TestGraphFactory().getRandomPlane(5, true, 0);
+    SolveBudget budget = new SolveBudget.Builder().stallGenerations(5).build();
+    Cycle cycle = new GeneticOptimizationStrategy(new Random(0)).getOptimalCycle(small, budget);
+    Cycle optimal = new BruteForceOptimizationStrategy().getOptimalCycle(small);
+    Assert.assertEquals(optimal.getCost(), cycle.getCost());
+    Assert.assertTrue(budget.getEvaluations()
+        < GeneticOptimizationStrategy.GENERATIONS * GeneticOptimizationStrategy.POPULATION / 2);
+  }
+
+  @Test
+  public void evaluationCapIsHonored() {
+    SolveBudget budget = new SolveBudget.Builder().maxEvaluations(5000).build();
+    Cycle cycle = new GeneticOptimizationStrategy(new Random(0)).getOptimalCycle(plane, budget);
+    Assert.assertEquals(plane.getNodes(), new HashSet(cycle.getOrder()));
+    Assert.assertTrue(budget.getEvaluations() >= 5000);
+    Assert.assertTrue(budget.getEvaluations() < 5000 + GeneticOptimizationStrategy.POPULATION);
+  }
+
+  @Test
+  public void boundedBudgetLiftsTheGenerationCap() {
+    SolveBudget budget = new SolveBudget.Builder().maxEvaluations(200000).build();
+    new GeneticOptimizationStrategy(new Random(0), EdgeAssemblyCrossover::new)
+        .getOptimalCycle(new TestGraphFactory().getRandomPlane(200, true, 0), budget);
+    Assert.assertTrue(budget.getEvaluations() >= 200000);
+  }
+
+  @Test
+  public void cancelledBudgetStillReturnsACycle() {
+    SolveBudget budget = SolveBudget.unlimited();
+    budget.cancel();
+    Cycle genetic = new GeneticOptimizationStrategy(new Random(0)).getOptimalCycle(plane, budget);
+    Cycle exact = new BranchAndBoundOptimizationStrategy().getOptimalCycle(plane, budget);
+    Cycle local = new LocalSearchOptimizationStrategy().getOptimalCycle(plane, budget);
+    Assert.assertTrue(budget.isExhausted());
+    Assert.assertEquals(plane.getNodes(), new HashSet(genetic.getOrder()));
+    Assert.assertEquals(plane.getNodes(), new HashSet(exact.getOrder()));
+    Assert.assertEquals(plane.getNodes(), new HashSet(local.getOrder()));
+  }
+
+  @Test
+  public void deadlineEndsSearch() {
+    SolveBudget budget = new SolveBudget.Builder().timeout(200, TimeUnit.MILLISECONDS).build();
+    long start = System.nanoTime();
+    Cycle cycle = new GeneticOptimizationStrategy(new Random(0))
+        .getOptimalCycle(new TestGraphFactory().getRandomPlane(300, true, 0), budget);
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Assert.assertEquals(300, cycle.getOrder().size());
+    Assert.assertTrue(budget.isExhausted());
+    Assert.assertTrue(elapsed < 2000);
+  }
+
+  @Test
+  public void forkSharesEvaluationsAndParentsCancellation() {
+    SolveBudget parent = new SolveBudget.Builder().maxEvaluations(10).build();
+    SolveBudget fork = parent.fork();
+    fork.charge(4);
+    Assert.assertEquals(4, parent.getEvaluations());
+
+    fork.cancel();
+    Assert.assertTrue(fork.isExhausted());
+    Assert.assertFalse(parent.isExhausted());
+
+    SolveBudget other = parent.fork();
+    parent.cancel();
+    Assert.assertTrue(other.isCancelled());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNegativeTimeout() {
+    new SolveBudget.Builder().timeout(-1, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,86 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-15
+
+package me.psanders.graph.path;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import me.psanders.graph.Graph;
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.LongMatrixGraph;
+import me.psanders.graph.MatrixGraph;
+
+class TestGraphFactory {
+
+  static final Integer[][] MATRIX = {
+      {2, 36, 19, 23, 36, 94, 43, 69, 52, 13},
+      {86, 99, 30, 45, 67, 15, 4, 54, 64, 29},
+      {79, 66, 20, 74, 52, 57, 74, 33, 64, 88},
+      {14, 96, 75, 99, 36, 62, 1, 79, 58, 48},
+      {21, 2, 36, 5, 50, 97, 50, 25, 39, 78},
+      {11, 97, 68, 30, 93, 57, 53, 17, 64, 18},
+      {59, 58, 35, 90, 14, 30, 64, 35, 55, 75},
+      {27, 77, 74, 26, 63, 52, 92, 19, 85, 55},
+      {16, 33, 87, 0, 44, 64, 92, 10, 90, 33},
+      {72, 64, 23, 65, 38, 17, 57, 42, 4, 16}
+  };
+  // Determined using BruteForceOptimizationStrategy
+  static final int OPTIMAL_COST = 148;
+
+  /** The asymmetric graph given by MATRIX, labeled by row. */
+  Graph<Integer, Integer> getMatrixGraph() {
+    HashMap<Integer, Integer> labels = new HashMap();
+    for (int i = 0; i < MATRIX.length; ++i) {
+      labels.put(i, i);
+    }
+    return new MatrixGraph(labels, MATRIX);
+  }
+
+  /** Scatter points at random over a square and use the rounded distances between them.
+   *
+   * <p>If the graph is not symmetric, a random surcharge of up to 100 is added to each leg.
+   */
+  LongMatrixGraph<Integer> getRandomPlane(int size, boolean symmetric, long seed) {
+    return getRandomPlane(size, symmetric, seed, 0);
+  }
+
+  /** As above, but with about the given fraction of the legs unreachable, in both directions if
+   * the graph is symmetric.
+   */
+  LongMatrixGraph<Integer> getRandomPlane(int size, boolean symmetric, long seed,
+      double unreachable) {
+    Random random = new Random(seed);
+    double[] x = new double[size];
+    double[] y = new double[size];
+    List<Integer> labels = new ArrayList<Integer>();
+    for (int i = 0; i < size; ++i) {
+      x[i] = random.nextDouble() * 1000;
+      y[i] = random.nextDouble() * 1000;
+      labels.add(i);
+    }
+
+    long[] weights = new long[size * size];
+    for (int i = 0; i < size; ++i) {
+      for (int j = 0; j < size; ++j) {
+        weights[i * size + j] = Math.round(Math.hypot(x[i] - x[j], y[i] - y[j]));
+        if (!symmetric && i != j) {
+          weights[i * size + j] += random.nextInt(100);
+        }
+      }
+    }
+    for (int i = 0; i < size && unreachable > 0; ++i) {
+      for (int j = symmetric ? i + 1 : 0; j < size; ++j) {
+        if (i != j && random.nextDouble() < unreachable) {
+          weights[i * size + j] = IndexedGraph.UNREACHABLE;
+          if (symmetric) {
+            weights[j * size + i] = IndexedGraph.UNREACHABLE;
+          }
+        }
+      }
+    }
+    return new LongMatrixGraph<Integer>(labels, weights);
+  }
+}
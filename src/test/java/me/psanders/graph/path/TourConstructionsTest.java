@@ -0,0 +1,169 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-27
+
+package me.psanders.graph.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import me.psanders.graph.IndexedGraph;
+import me.psanders.graph.IndexedGraphAdapter;
+import me.psanders.graph.LongMatrixGraph;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TourConstructionsTest {
+
+  private static final int SIZE = 60;
+
+  private final TourConstruction[] constructions = {
+      TourConstructions.NEAREST_NEIGHBOR,
+      TourConstructions.GREEDY_EDGE,
+      TourConstructions.CHEAPEST_INSERTION
+  };
+
+  @Test
+  public void toursArePermutationsFromTheStart() {
+    for (boolean symmetric : new boolean[] {true, false}) {
+      LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(SIZE, symmetric, 0);
+      for (TourConstruction construction : constructions) {
+        for (int start : new int[] {0, 17, SIZE - 1}) {
+          assertPermutationFrom(construction.build(graph, start), start);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void toursAreFarBetterThanRandom() {
+    LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(SIZE, true, 1);
+    long local = new LocalSearchOptimizationStrategy().getOptimalCycle(graph).getCost();
+    for (TourConstruction construction : constructions) {
+      long cost = Tours.cost(graph, construction.build(graph, 0), 0, SIZE);
+      Assert.assertTrue(cost < 1.4 * (double) local);
+      Assert.assertTrue(cost < randomCost(graph) / 3);
+    }
+  }
+
+  @Test
+  public void greedyEdgeRanksWeightsTooLargeToPack() {
+    // Weights too large to pack above the edge numbers are sorted by rank instead, which must
+    // choose the same edges as a stand-in weight small enough to pack.
+    LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(SIZE, true, 2, 0.3);
+    List<Integer> labels = new ArrayList<Integer>();
+    long[] weights = new long[SIZE * SIZE];
+    for (int i = 0; i < SIZE; ++i) {
+      labels.add(i);
+      for (int j = 0; j < SIZE; ++j) {
+        long weight = graph.getWeightAt(i, j);
+        weights[i * SIZE + j] = weight == IndexedGraph.UNREACHABLE ? 1000000 : weight;
+      }
+    }
+    LongMatrixGraph<Integer> standIn = new LongMatrixGraph<Integer>(labels, weights);
+    Assert.assertArrayEquals(TourConstructions.GREEDY_EDGE.build(standIn, 0),
+        TourConstructions.GREEDY_EDGE.build(graph, 0));
+  }
+
+  @Test
+  public void spaceFillingCurveFollowsCoordinates() {
+    Random random = new Random(2);
+    double[] xs = new double[SIZE];
+    double[] ys = new double[SIZE];
+    long[] weights = new long[SIZE * SIZE];
+    for (int i = 0; i < SIZE; ++i) {
+      xs[i] = random.nextDouble();
+      ys[i] = random.nextDouble();
+    }
+    for (int i = 0; i < SIZE; ++i) {
+      for (int j = 0; j < SIZE; ++j) {
+        weights[i * SIZE + j] = Math.round(1000 * Math.hypot(xs[i] - xs[j], ys[i] - ys[j]));
+      }
+    }
+    LongMatrixGraph<Integer> graph =
+        new LongMatrixGraph<Integer>(Arrays.asList(labels()), weights);
+
+    TourConstruction curve = TourConstructions.spaceFillingCurve(xs, ys);
+    int[] tour = curve.build(graph, 5);
+    assertPermutationFrom(tour, 5);
+    Assert.assertTrue(Tours.cost(graph, tour, 0, SIZE) < randomCost(graph) / 3);
+  }
+
+  @Test
+  public void handlesTinyGraphs() {
+    IndexedGraph<Integer, Integer> matrix =
+        IndexedGraphAdapter.of(new TestGraphFactory().getMatrixGraph());
+    for (TourConstruction construction : constructions) {
+      assertPermutationFrom(construction.build(matrix, 3), 3);
+    }
+    LongMatrixGraph<Integer> pair = new TestGraphFactory().getRandomPlane(2, true, 0);
+    for (TourConstruction construction : constructions) {
+      assertPermutationFrom(construction.build(pair, 1), 1);
+    }
+  }
+
+  @Test
+  public void warmStartKeepsThePreviousTour() {
+    LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(SIZE, true, 3);
+    Cycle<Integer, Long> previous =
+        new LocalSearchOptimizationStrategy<Integer, Long>().getOptimalCycle(graph);
+    int[] tour = TourConstructions.warmStart(previous.getOrder()).build(graph, 11);
+    assertPermutationFrom(tour, 11);
+    Assert.assertEquals(previous.getCost(), Tours.cost(graph, tour, 0, SIZE));
+  }
+
+  @Test
+  public void warmStartRepairsEditedStops() {
+    LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(SIZE, true, 4);
+    List<Integer> previous = new ArrayList<Integer>(
+        new LocalSearchOptimizationStrategy<Integer, Long>().getOptimalCycle(graph).getOrder());
+    // Stop 7 was added since, and stop 1000 removed.
+    previous.remove(Integer.valueOf(7));
+    previous.add(previous.size() / 2, 1000);
+
+    long local = new LocalSearchOptimizationStrategy().getOptimalCycle(graph).getCost();
+    int[] tour = TourConstructions.warmStart(previous).build(graph, 0);
+    assertPermutationFrom(tour, 0);
+    Assert.assertTrue(Tours.cost(graph, tour, 0, SIZE) < 1.1 * (double) local);
+  }
+
+  @Test
+  public void warmStartWithNothingInCommonStillBuildsATour() {
+    LongMatrixGraph<Integer> graph = new TestGraphFactory().getRandomPlane(SIZE, false, 5);
+    assertPermutationFrom(
+        TourConstructions.warmStart(Arrays.asList(-1, -2)).build(graph, 4), 4);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void spaceFillingCurveNeedsEveryCoordinate() {
+    TourConstructions.spaceFillingCurve(new double[3], new double[2]);
+  }
+
+  private static Integer[] labels() {
+    Integer[] labels = new Integer[SIZE];
+    for (int i = 0; i < SIZE; ++i) {
+      labels[i] = i;
+    }
+    return labels;
+  }
+
+  private static long randomCost(IndexedGraph<?, ?> graph) {
+    int[] tour = new int[graph.size()];
+    Tours.shuffle(tour, 0, tour.length, new SplittableRandom(0));
+    return Tours.cost(graph, tour, 0, tour.length);
+  }
+
+  private static void assertPermutationFrom(int[] tour, int start) {
+    Assert.assertEquals(start, tour[0]);
+    int[] sorted = tour.clone();
+    Arrays.sort(sorted);
+    for (int i = 0; i < sorted.length; ++i) {
+      Assert.assertEquals(i, sorted[i]);
+    }
+  }
+}
@@ -0,0 +1,64 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-04
+
+package me.psanders.maps;
+
+import java.io.IOException;
+
+import com.google.maps.GeoApiContext;
+import com.google.maps.errors.ApiException;
+import com.google.maps.model.Distance;
+import com.google.maps.model.DistanceMatrix;
+import com.google.maps.model.DistanceMatrixElement;
+import com.google.maps.model.DistanceMatrixElementStatus;
+import com.google.maps.model.DistanceMatrixRow;
+import com.google.maps.model.Duration;
+
+/** Answers from a made-up map, counting the elements it is asked for.
+ *
+ * <p>Places are single letters, a kilometer apart for each letter between them, and each resolves
+ * to the address "<i>LETTER</i> Street". Tiles are fetched from several threads, so the count is
+ * kept under the factory's lock.
+ */
+class CountingMatrixFactory extends DistanceMatrixFactory {
+
+  int elements;
+
+  CountingMatrixFactory(String[] places, DistanceCache cache) {
+    super((GeoApiContext) null, places, null, cache);
+  }
+
+  @Override
+  protected synchronized DistanceMatrix fetch(String[] origins, String[] destinations)
+      throws IllegalStateException, InterruptedException, ApiException, IOException {
+    elements += origins.length * destinations.length;
+    DistanceMatrixRow[] rows = new DistanceMatrixRow[origins.length];
+    for (int i = 0; i < origins.length; ++i) {
+      rows[i] = new DistanceMatrixRow();
+      rows[i].elements = new DistanceMatrixElement[destinations.length];
+      for (int j = 0; j < destinations.length; ++j) {
+        rows[i].elements[j] = element(
+            1000 * Math.abs(origins[i].charAt(0) - destinations[j].charAt(0)));
+      }
+    }
+    return new DistanceMatrix(addresses(origins), addresses(destinations), rows);
+  }
+
+  private static DistanceMatrixElement element(long meters) {
+    DistanceMatrixElement element = new DistanceMatrixElement();
+    element.status = DistanceMatrixElementStatus.OK;
+    element.distance = new Distance();
+    element.distance.inMeters = meters;
+    element.duration = new Duration();
+    element.duration.inSeconds = meters / 10;
+    return element;
+  }
+
+  private static String[] addresses(String[] places) {
+    String[] addresses = new String[places.length];
+    for (int i = 0; i < places.length; ++i) {
+      addresses[i] = places[i].toUpperCase() + " Street";
+    }
+    return addresses;
+  }
+}
@@ -0,0 +1,190 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-02
+
+package me.psanders.maps;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import com.google.maps.model.Distance;
+import com.google.maps.model.DistanceMatrixElement;
+import com.google.maps.model.DistanceMatrixElementStatus;
+import com.google.maps.model.Duration;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DistanceCacheTest {
+
+  private static final String[] TRIP = {"a", "b", "c", "d", "e"};
+  private static final String[] LONGER_TRIP = {"a", "b", "c", "d", "e", "f"};
+
+  private File file;
+  private TestClock clock;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("distances", ".log");
+    file.delete();
+    file.deleteOnExit();
+    clock = new TestClock();
+  }
+
+  @Test
+  public void repeatedTripIsNotFetchedAgain() throws Exception {
+    DistanceCache cache = new DistanceCache(file, 1000, 100, clock);
+    CountingMatrixFactory first = new CountingMatrixFactory(TRIP, cache);
+    DistanceTable fetched = first.build();
+    Assert.assertEquals(25, first.elements);
+
+    CountingMatrixFactory second = new CountingMatrixFactory(TRIP, cache);
+    DistanceTable cached = second.build();
+    Assert.assertEquals(0, second.elements);
+    assertSameMatrix(fetched, cached);
+  }
+
+  @Test
+  public void newStopFetchesOnlyItsRowAndColumn() throws Exception {
+    DistanceCache cache = new DistanceCache(file, 1000, 100, clock);
+    new CountingMatrixFactory(TRIP, cache).build();
+
+    CountingMatrixFactory longer = new CountingMatrixFactory(LONGER_TRIP, cache);
+    DistanceTable matrix = longer.build();
+    Assert.assertEquals(2 * LONGER_TRIP.length - 1, longer.elements);
+    assertSameMatrix(new CountingMatrixFactory(LONGER_TRIP, null).build(), matrix);
+  }
+
+  @Test
+  public void cacheSurvivesReopening() throws Exception {
+    DistanceCache cache = new DistanceCache(file, 1000, 100, clock);
+    new CountingMatrixFactory(TRIP, cache).build();
+    cache.close();
+
+    CountingMatrixFactory reopened =
+        new CountingMatrixFactory(TRIP, new DistanceCache(file, 1000, 100, clock));
+    reopened.build();
+    Assert.assertEquals(0, reopened.elements);
+  }
+
+  @Test
+  public void expiredElementsAreFetchedAgain() throws Exception {
+    DistanceCache cache = new DistanceCache(file, 1000, 100, clock);
+    new CountingMatrixFactory(TRIP, cache).build();
+    clock.millis += 1000;
+
+    CountingMatrixFactory later = new CountingMatrixFactory(TRIP, cache);
+    later.build();
+    Assert.assertEquals(25, later.elements);
+  }
+
+  @Test
+  public void oldestElementsAreEvictedPastTheLimit() throws Exception {
+    DistanceCache cache = new DistanceCache(file, 1000, 20, clock);
+    new CountingMatrixFactory(TRIP, cache).build();
+    Assert.assertTrue(cache.size() <= 20);
+    cache.close();
+    Assert.assertTrue(new DistanceCache(file, 1000, 20, clock).size() <= 20);
+  }
+
+  @Test
+  public void truncatedLogKeepsEveryWholeRecord() throws Exception {
+    DistanceCache cache = new DistanceCache(file, 1000, 100, clock);
+    new CountingMatrixFactory(TRIP, cache).build();
+    cache.close();
+    try (RandomAccessFile log = new RandomAccessFile(file, "rw")) {
+      log.setLength(log.length() - 3);
+    }
+
+    DistanceCache recovered = new DistanceCache(file, 1000, 100, clock);
+    Assert.assertEquals(24, recovered.size());
+    CountingMatrixFactory factory = new CountingMatrixFactory(TRIP, recovered);
+    factory.build();
+    Assert.assertEquals(1, factory.elements);
+  }
+
+  @Test
+  public void otherVersionStartsEmpty() throws Exception {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write("DCv0 and records we cannot read".getBytes("UTF-8"));
+    }
+    Assert.assertEquals(0, new DistanceCache(file, 1000, 100, clock).size());
+  }
+
+  @Test
+  public void foreignFileIsLeftAlone() throws Exception {
+    byte[] notes = "not a cache".getBytes("UTF-8");
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(notes);
+    }
+    try {
+      new DistanceCache(file, 1000, 100, clock);
+      Assert.fail("Opened a file that is not a cache.");
+    } catch (IOException e) {
+      Assert.assertArrayEquals(notes, Files.readAllBytes(file.toPath()));
+    }
+  }
+
+  @Test
+  public void routeOptionsAreCachedSeparately() throws Exception {
+    DistanceCache cache = new DistanceCache(file, 1000, 100, clock);
+    DistanceMatrixElement element = element(5);
+    cache.put("a", "b", "mode=walking", "A", "B", element);
+    Assert.assertNull(cache.get("a", "b", "mode=driving"));
+    Assert.assertEquals(5, cache.get("a", "b", "mode=walking").toElement().distance.inMeters);
+  }
+
+  private static void assertSameMatrix(DistanceTable expected, DistanceTable actual) {
+    Assert.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      Assert.assertEquals(expected.getAddress(i), actual.getAddress(i));
+    }
+    Assert.assertArrayEquals(expected.getMeters(), actual.getMeters());
+    Assert.assertArrayEquals(expected.getSeconds(), actual.getSeconds());
+  }
+
+  private static DistanceMatrixElement element(long meters) {
+    DistanceMatrixElement element = new DistanceMatrixElement();
+    element.status = DistanceMatrixElementStatus.OK;
+    element.distance = new Distance();
+    element.distance.inMeters = meters;
+    element.duration = new Duration();
+    element.duration.inSeconds = meters / 10;
+    return element;
+  }
+
+  private static class TestClock extends Clock {
+
+    long millis;
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+  }
+}
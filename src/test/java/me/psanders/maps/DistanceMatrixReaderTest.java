@@ -0,0 +1,209 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-07
+
+package me.psanders.maps;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+
+import com.google.maps.errors.ApiException;
+import com.google.maps.errors.OverQueryLimitException;
+import com.google.maps.errors.RequestDeniedException;
+import com.google.maps.model.DistanceMatrixElementStatus;
+import me.psanders.graph.IndexedGraph;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DistanceMatrixReaderTest {
+
+  private static final String RESPONSE = "{\n"
+      + "  \"destination_addresses\" : [ \"Paris, France\", \"Lyon, France\" ],\n"
+      + "  \"origin_addresses\" : [ \"Paris, France\" ],\n"
+      + "  \"rows\" : [ { \"elements\" : [\n"
+      + "    { \"distance\" : { \"text\" : \"1 m\", \"value\" : 0 },\n"
+      + "      \"duration\" : { \"text\" : \"1 min\", \"value\" : 0 },\n"
+      + "      \"status\" : \"OK\" },\n"
+      + "    { \"distance\" : { \"text\" : \"465 km\", \"value\" : 465214 },\n"
+      + "      \"duration\" : { \"text\" : \"4 hours 31 mins\", \"value\" : 16260 },\n"
+      + "      \"duration_in_traffic\" : { \"text\" : \"5 hours\", \"value\" : 18000 },\n"
+      + "      \"fare\" : { \"currency\" : \"EUR\", \"value\" : 12, \"text\" : \"12 EUR\" },\n"
+      + "      \"status\" : \"OK\" } ] } ],\n"
+      + "  \"status\" : \"OK\"\n"
+      + "}";
+
+  @Test
+  public void readsElementsIntoTheTile() throws Exception {
+    MatrixTile tile = DistanceMatrixReader.read(new StringReader(RESPONSE), 1, 2);
+    Assert.assertEquals("Paris, France", tile.getOriginAddress(0));
+    Assert.assertEquals("Lyon, France", tile.getDestinationAddress(1));
+    Assert.assertEquals(DistanceMatrixElementStatus.OK, tile.getStatus(0, 1));
+    Assert.assertEquals(465214, tile.getMeters(0, 1));
+    Assert.assertEquals(16260, tile.getSeconds(0, 1));
+  }
+
+  @Test
+  public void elementsWithoutARouteAreUnreachable() throws Exception {
+    String response = "{\"origin_addresses\":[\"a\"],\"destination_addresses\":[\"b\",\"c\"],"
+        + "\"rows\":[{\"elements\":[{\"status\":\"ZERO_RESULTS\"},"
+        + "{\"status\":\"MAX_ROUTE_LENGTH_EXCEEDED\"}]}],\"status\":\"OK\"}";
+    MatrixTile tile = DistanceMatrixReader.read(new StringReader(response), 1, 2);
+    Assert.assertEquals(DistanceMatrixElementStatus.ZERO_RESULTS, tile.getStatus(0, 0));
+    Assert.assertEquals(DistanceMatrixElementStatus.ZERO_RESULTS, tile.getStatus(0, 1));
+
+    DistanceTable table = new DistanceTable(new String[] {"a", "b", "c"});
+    tile.writeTo(table, new int[] {0}, new int[] {1, 2});
+    Assert.assertEquals(IndexedGraph.UNREACHABLE, table.getMeters(0, 1));
+    Assert.assertEquals(IndexedGraph.UNREACHABLE, table.getSeconds(0, 2));
+    Assert.assertEquals("a", table.getAddress(0));
+  }
+
+  @Test(expected = OverQueryLimitException.class)
+  public void statusesThrowAsTheClientLibraryWould() throws Exception {
+    String response = "{\"destination_addresses\":[],\"origin_addresses\":[],\"rows\":[],"
+        + "\"error_message\":\"Slow down\",\"status\":\"OVER_QUERY_LIMIT\"}";
+    DistanceMatrixReader.read(new StringReader(response), 1, 2);
+  }
+
+  @Test
+  public void errorResponsesNameTheirError() {
+    String response = "{\"error_message\":\"The provided API key is invalid.\","
+        + "\"rows\":[],\"status\":\"REQUEST_DENIED\"}";
+    ApiException error = DistanceMatrixReader.readError(new StringReader(response));
+    Assert.assertTrue(error instanceof RequestDeniedException);
+    Assert.assertEquals("The provided API key is invalid.", error.getMessage());
+
+    Assert.assertNull(DistanceMatrixReader.readError(new StringReader("<html>502</html>")));
+    Assert.assertNull(DistanceMatrixReader.readError(new StringReader("{\"rows\":[]}")));
+  }
+
+  @Test(expected = IOException.class)
+  public void responsesOfTheWrongSizeAreMalformed() throws Exception {
+    DistanceMatrixReader.read(new StringReader(RESPONSE), 1, 3);
+  }
+
+  @Test
+  public void factoryStreamsTilesThroughItsEndpoint() throws Exception {
+    Options options = new Options();
+    options.addOption("M", "mode", true, "");
+    options.addOption("s", "scenic", false, "");
+    CommandLine flags = new GnuParser().parse(options, new String[] {"-M", "walking", "-s"});
+    String[] places = new String[12];
+    for (int i = 0; i < places.length; ++i) {
+      places[i] = "place " + i;
+    }
+
+    List<URL> requests = new ArrayList<URL>();
+    StreamingEndpoint endpoint = new StreamingEndpoint.Builder().apiKey("secret").build();
+    DistanceTable table = new DistanceMatrixFactory(
+        endpoint, places, flags, null, 1, new TokenBucket(1e9, 1000)) {
+      @Override
+      Reader open(URL url) throws IOException {
+        synchronized (requests) {
+          requests.add(url);
+        }
+        return new StringReader(respond(url));
+      }
+    }.build();
+
+    // Twelve places take two requests of at most 100 elements each.
+    Assert.assertEquals(2, requests.size());
+    String query = requests.get(0).getQuery();
+    Assert.assertTrue(query, query.contains("&mode=walking"));
+    Assert.assertTrue(query, query.contains("&avoid=highways%7Ctolls"));
+    Assert.assertTrue(query, query.endsWith("&key=secret"));
+    for (int i = 0; i < places.length; ++i) {
+      Assert.assertEquals("PLACE " + i, table.getAddress(i));
+      for (int j = 0; j < places.length; ++j) {
+        Assert.assertEquals(i == j ? 0 : 100 * i + j, table.getMeters(i, j));
+        Assert.assertEquals(i == j ? 0 : 100 * i + j, table.getSeconds(i, j));
+      }
+    }
+  }
+
+  @Test
+  public void serverErrorsAreRetried() throws Exception {
+    String[] places = {"place 0", "place 1"};
+    int[] attempts = new int[1];
+    StreamingEndpoint endpoint = new StreamingEndpoint.Builder().apiKey("secret").build();
+    DistanceTable table = new DistanceMatrixFactory(
+        endpoint, places, null, null, 1, new TokenBucket(1e9, 1000)) {
+      @Override
+      Reader open(URL url) throws IOException {
+        if (++attempts[0] == 1) {
+          throw new ServerErrorException("The Distance Matrix API answered with HTTP status 503.");
+        }
+        return new StringReader(respond(url));
+      }
+    }.build();
+    Assert.assertEquals(2, attempts[0]);
+    Assert.assertEquals(1, table.getMeters(0, 1));
+  }
+
+  @Test
+  public void streamedRequestsDoNotRetryForever() throws Exception {
+    int[] attempts = new int[1];
+    StreamingEndpoint endpoint =
+        new StreamingEndpoint.Builder().apiKey("secret").maxRetries(0).build();
+    try {
+      new DistanceMatrixFactory(endpoint, new String[] {"place 0"}, null, null) {
+        @Override
+        Reader open(URL url) throws IOException {
+          ++attempts[0];
+          throw new ServerErrorException("The Distance Matrix API answered with HTTP status 500.");
+        }
+      }.build();
+      Assert.fail();
+    } catch (DistanceMatrixFactory.ServerErrorException e) {
+      Assert.assertEquals(1, attempts[0]);
+    }
+  }
+
+  /** Answers a request with distances and durations that tell which pair they belong to. */
+  private static String respond(URL url) throws IOException {
+    String[] origins = null;
+    String[] destinations = null;
+    for (String parameter : url.getQuery().split("&")) {
+      String[] pair = parameter.split("=", 2);
+      if (pair[0].equals("origins")) {
+        origins = URLDecoder.decode(pair[1], "UTF-8").split("\\|");
+      } else if (pair[0].equals("destinations")) {
+        destinations = URLDecoder.decode(pair[1], "UTF-8").split("\\|");
+      }
+    }
+
+    StringBuilder json = new StringBuilder("{\"origin_addresses\":[");
+    for (int a = 0; a < origins.length; ++a) {
+      json.append(a == 0 ? "" : ",").append('"').append(origins[a].toUpperCase()).append('"');
+    }
+    json.append("],\"rows\":[");
+    for (int a = 0; a < origins.length; ++a) {
+      json.append(a == 0 ? "" : ",").append("{\"elements\":[");
+      for (int b = 0; b < destinations.length; ++b) {
+        long value = 100 * index(origins[a]) + index(destinations[b]);
+        json.append(b == 0 ? "" : ",")
+            .append("{\"distance\":{\"text\":\"far\",\"value\":").append(value)
+            .append("},\"duration\":{\"text\":\"long\",\"value\":").append(value)
+            .append("},\"status\":\"OK\"}");
+      }
+      json.append("]}");
+    }
+    return json.append("],\"status\":\"OK\"}").toString();
+  }
+
+  private static int index(String place) {
+    return Integer.parseInt(place.substring("place ".length()));
+  }
+}
@@ -0,0 +1,62 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-04
+
+package me.psanders.maps;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DistanceTableTest {
+
+  private static final String[] TRIP = {"a", "b", "c", "d", "e"};
+  private static final String[] LONGER_TRIP = {"a", "b", "c", "d", "e", "f"};
+  private static final String[] SHORTER_TRIP = {"a", "b", "d", "e"};
+
+  @Test
+  public void addedPlaceFetchesOnlyItsLegs() throws Exception {
+    CountingMatrixFactory factory = new CountingMatrixFactory(TRIP, null);
+    DistanceTable table = factory.build();
+    factory.elements = 0;
+
+    DistanceTable longer = factory.addPlace(table, "f");
+    Assert.assertEquals(2 * LONGER_TRIP.length - 1, factory.elements);
+    assertSameTable(new CountingMatrixFactory(LONGER_TRIP, null).build(), longer);
+    Assert.assertEquals(TRIP.length, table.size());
+  }
+
+  @Test
+  public void removedPlaceIsDroppedWithoutFetching() throws Exception {
+    DistanceTable table = new CountingMatrixFactory(TRIP, null).build();
+    DistanceTable shorter = table.withoutPlace(table.indexOf("c"));
+    assertSameTable(new CountingMatrixFactory(SHORTER_TRIP, null).build(), shorter);
+  }
+
+  @Test
+  public void editsCanBeRepeated() throws Exception {
+    CountingMatrixFactory factory = new CountingMatrixFactory(TRIP, null);
+    DistanceTable table = factory.build();
+    table = table.withoutPlace(table.indexOf("e"));
+    table = factory.addPlace(table, "e");
+    table = factory.addPlace(table.withoutPlace(table.indexOf("c")), "c");
+    assertSameTable(new CountingMatrixFactory(new String[] {"a", "b", "d", "e", "c"}, null).build(),
+        table);
+  }
+
+  @Test
+  public void missingPlaceHasNoIndex() throws Exception {
+    Assert.assertEquals(-1, new CountingMatrixFactory(TRIP, null).build().indexOf("z"));
+  }
+
+  private static void assertSameTable(DistanceTable expected, DistanceTable actual) {
+    Assert.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      Assert.assertEquals(expected.getPlace(i), actual.getPlace(i));
+      Assert.assertEquals(expected.getAddress(i), actual.getAddress(i));
+    }
+    Assert.assertArrayEquals(expected.getMeters(), actual.getMeters());
+    Assert.assertArrayEquals(expected.getSeconds(), actual.getSeconds());
+  }
+}
@@ -0,0 +1,93 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-08
+
+package me.psanders.maps;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+
+import me.psanders.graph.IndexedGraph;
+import me.psanders.maps.DualWeightGraph.Objective;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DualWeightGraphTest {
+
+  private static final List<String> LABELS = Arrays.asList("a", "b", "c");
+
+  // The highway from a to b is long but quick; the lane from b to c is short but slow.
+  private static final long[] METERS = {
+      0, 3000, 1000,
+      3000, 0, 500,
+      1000, 500, 0};
+  private static final long[] SECONDS = {
+      0, 100, 200,
+      100, 0, IndexedGraph.UNREACHABLE,
+      200, 300, 0};
+
+  @Test
+  public void singleMetricsShareTheirArrays() {
+    DualWeightGraph<String> graph =
+        new DualWeightGraph<String>(LABELS, METERS, SECONDS, Objective.DISTANCE);
+    Assert.assertEquals(3000, graph.getWeightAt(0, 1));
+    Assert.assertEquals(Long.valueOf(500), graph.getWeight("b", "c"));
+
+    DualWeightGraph<String> fast = graph.withObjective(Objective.TIME);
+    Assert.assertSame(Objective.TIME, fast.getObjective());
+    Assert.assertEquals(100, fast.getWeightAt(0, 1));
+    Assert.assertEquals(IndexedGraph.UNREACHABLE, fast.getWeightAt(1, 2));
+    Assert.assertEquals(3000, fast.getMetersAt(0, 1));
+    Assert.assertEquals(100, graph.getSecondsAt(0, 1));
+  }
+
+  @Test
+  public void blendWeighsBothMetrics() {
+    DualWeightGraph<String> graph =
+        new DualWeightGraph<String>(LABELS, METERS, SECONDS, Objective.blend(1, 10));
+    Assert.assertEquals(3000 + 10 * 100, graph.getWeightAt(0, 1));
+    Assert.assertEquals(500 + 10 * 300, graph.getWeightAt(2, 1));
+    // A leg unreachable by either metric stays unreachable rather than overflowing.
+    Assert.assertEquals(IndexedGraph.UNREACHABLE, graph.getWeightAt(1, 2));
+  }
+
+  @Test
+  public void totalsIncludeTheLegHome() {
+    DualWeightGraph<String> graph =
+        new DualWeightGraph<String>(LABELS, METERS, SECONDS, Objective.TIME);
+    List<String> tour = Arrays.asList("a", "c", "b");
+    Assert.assertEquals(1000 + 500 + 3000, graph.getTotalMeters(tour));
+    Assert.assertEquals(200 + 300 + 100, graph.getTotalSeconds(tour));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void blendRejectsNegativeWeights() {
+    Objective.blend(1, -1);
+  }
+
+  @Test
+  public void factoryKeepsBothMetricsOfTheTable() throws Exception {
+    DistanceTable table = new DistanceTable(LABELS.toArray(new String[0]),
+        LABELS.toArray(new String[0]), METERS, SECONDS);
+    Options options = new Options();
+    options.addOption("b", "blend", true, "");
+    options.addOption(null, "fast", false, "");
+
+    CommandLine flags = new GnuParser().parse(options, new String[] {"-b", "2.5"});
+    DualWeightGraph<String> graph = new LocationGraphFactory(() -> table, flags).build();
+    Assert.assertEquals(1000 + 500, graph.getWeightAt(0, 2));
+    Assert.assertEquals(1000, graph.withObjective(Objective.DISTANCE).getWeightAt(0, 2));
+
+    flags = new GnuParser().parse(options, new String[] {"--fast"});
+    graph = new LocationGraphFactory(() -> table, flags).build();
+    Assert.assertSame(Objective.TIME, graph.getObjective());
+    Assert.assertEquals(200, graph.getWeightAt(0, 2));
+  }
+}
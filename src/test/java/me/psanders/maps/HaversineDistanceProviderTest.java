@@ -0,0 +1,112 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-05
+
+package me.psanders.maps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import me.psanders.graph.LongMatrixGraph;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class HaversineDistanceProviderTest {
+
+  private static final String[] CITIES = {"London", "Paris", "New York"};
+  private static final double[] LATITUDES = {51.5074, 48.8566, 40.7128};
+  private static final double[] LONGITUDES = {-0.1278, 2.3522, -74.0060};
+
+  @Test
+  public void greatCircleDistancesMatchKnownValues() {
+    DistanceTable table =
+        new HaversineDistanceProvider(CITIES, LATITUDES, LONGITUDES, 1, 10).build();
+    // About 343.5km from London to Paris, and 5570km from London to New York.
+    Assert.assertEquals(343500, table.getMeters(0, 1), 1000);
+    Assert.assertEquals(5570000, table.getMeters(0, 2), 5000);
+    Assert.assertEquals(table.getMeters(0, 1) / 10.0, table.getSeconds(0, 1), 1);
+    for (int i = 0; i < CITIES.length; ++i) {
+      Assert.assertEquals(0, table.getMeters(i, i));
+      Assert.assertEquals(CITIES[i], table.getAddress(i));
+      for (int j = 0; j < CITIES.length; ++j) {
+        Assert.assertEquals(table.getMeters(i, j), table.getMeters(j, i));
+      }
+    }
+  }
+
+  @Test
+  public void circuityScalesEveryDistance() {
+    DistanceTable straight =
+        new HaversineDistanceProvider(CITIES, LATITUDES, LONGITUDES, 1, 10).build();
+    DistanceTable winding =
+        new HaversineDistanceProvider(CITIES, LATITUDES, LONGITUDES, 1.5, 10).build();
+    for (int k = 0; k < straight.getMeters().length; ++k) {
+      Assert.assertEquals(1.5 * straight.getMeters()[k], winding.getMeters()[k], 1);
+    }
+  }
+
+  @Test
+  public void antipodesAreHalfwayAround() {
+    DistanceTable table = new HaversineDistanceProvider(new String[] {"a", "b"},
+        new double[] {90, -90}, new double[] {0, 0}, 1, 10).build();
+    Assert.assertEquals(Math.round(Math.PI * HaversineDistanceProvider.EARTH_RADIUS_METERS),
+        table.getMeters(0, 1));
+  }
+
+  @Test
+  public void readsPlacesFromAFile() throws Exception {
+    File file = write("# Capitals\n51.5074,-0.1278,London\n\n48.8566, 2.3522\n"
+        + "40.7128,-74.0060,New York, NY\n");
+    DistanceTable table = HaversineDistanceProvider.fromFile(file).build();
+    Assert.assertEquals(3, table.size());
+    Assert.assertEquals("London", table.getAddress(0));
+    Assert.assertEquals("48.8566,2.3522", table.getAddress(1));
+    Assert.assertEquals("New York, NY", table.getAddress(2));
+    Assert.assertEquals(Math.round(1.3 * 343500), table.getMeters(0, 1), 1500);
+  }
+
+  @Test(expected = IOException.class)
+  public void badLineIsReported() throws Exception {
+    HaversineDistanceProvider.fromFile(write("51.5074,-0.1278\n91,0\n"));
+  }
+
+  @Test
+  public void largeTablesAreFilledInParallel() throws Exception {
+    int size = 2000;
+    Random random = new Random(0);
+    String[] labels = new String[size];
+    double[] latitudes = new double[size];
+    double[] longitudes = new double[size];
+    for (int i = 0; i < size; ++i) {
+      labels[i] = "stop " + i;
+      latitudes[i] = 35 + 10 * random.nextDouble();
+      longitudes[i] = -100 + 20 * random.nextDouble();
+    }
+    HaversineDistanceProvider provider = new HaversineDistanceProvider(labels, latitudes,
+        longitudes, HaversineDistanceProvider.DEFAULT_CIRCUITY,
+        HaversineDistanceProvider.DEFAULT_METERS_PER_SECOND);
+
+    CommandLine flags = new GnuParser().parse(new Options(), new String[0]);
+    LongMatrixGraph<String> graph = new LocationGraphFactory(provider, flags).build();
+    Assert.assertEquals(size, graph.size());
+    Assert.assertEquals(provider.build().getMeters(size - 1, 7),
+        graph.getWeightAt(size - 1, 7));
+  }
+
+  private static File write(String contents) throws IOException {
+    File file = File.createTempFile("places", ".csv");
+    file.deleteOnExit();
+    Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}
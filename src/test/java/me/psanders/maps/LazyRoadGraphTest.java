@@ -0,0 +1,144 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-06
+
+package me.psanders.maps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.maps.errors.ApiException;
+import com.google.maps.model.DistanceMatrix;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LazyRoadGraphTest {
+
+  private static final int SIZE = 26;
+  private static final int NEIGHBORS = 3;
+
+  @Test
+  public void candidatesCostLinearlyManyElements() throws Exception {
+    CountingMatrixFactory factory = new CountingMatrixFactory(letters(), null);
+    LazyRoadGraph graph = new LazyRoadGraph(factory, estimates(), false);
+    Assert.assertEquals(0, factory.elements);
+
+    Assert.assertEquals(SIZE * NEIGHBORS, graph.fetchCandidates(NEIGHBORS));
+    Assert.assertEquals(SIZE * NEIGHBORS, factory.elements);
+    // The nearest neighbors on a line are the next letters either side.
+    Assert.assertTrue(graph.isFetched(5, 6));
+    Assert.assertTrue(graph.isFetched(5, 4));
+    Assert.assertFalse(graph.isFetched(5, 20));
+    Assert.assertEquals(1000, graph.getWeightAt(5, 6));
+    Assert.assertEquals(12000, graph.getWeightAt(5, 20));
+  }
+
+  @Test
+  public void getWeightQueuesMissesForOneBatch() throws Exception {
+    CountingMatrixFactory factory = new CountingMatrixFactory(letters(), null);
+    LazyRoadGraph graph = new LazyRoadGraph(factory, estimates(), false);
+    Assert.assertEquals(Long.valueOf(20000), graph.getWeight("A Street", "Z Street"));
+    Assert.assertEquals(Long.valueOf(20000), graph.getWeight("A Street", "Z Street"));
+    Assert.assertEquals(Long.valueOf(800), graph.getWeight("B Street", "C Street"));
+    Assert.assertEquals(0, factory.elements);
+    Assert.assertEquals(2, graph.getPendingCount());
+
+    Assert.assertEquals(2, graph.fetchPending());
+    Assert.assertEquals(2, factory.elements);
+    Assert.assertEquals(0, graph.getPendingCount());
+    Assert.assertEquals(Long.valueOf(25000), graph.getWeight("A Street", "Z Street"));
+    Assert.assertEquals(0, graph.getPendingCount());
+    Assert.assertEquals(0, graph.fetchPending());
+    Assert.assertNull(graph.getWeight("A Street", "Nowhere"));
+  }
+
+  @Test
+  public void failedFetchKeepsLegsQueued() throws Exception {
+    CountingMatrixFactory factory = new CountingMatrixFactory(letters(), null) {
+      @Override
+      protected synchronized DistanceMatrix fetch(String[] origins, String[] destinations)
+          throws IllegalStateException, InterruptedException, ApiException, IOException {
+        throw new IOException("offline");
+      }
+    };
+    LazyRoadGraph graph = new LazyRoadGraph(factory, estimates(), false);
+    graph.getWeight("A Street", "Z Street");
+    try {
+      graph.fetchPending();
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.assertEquals("offline", e.getMessage());
+    }
+    Assert.assertEquals(1, graph.getPendingCount());
+    Assert.assertFalse(graph.isFetched(0, 25));
+  }
+
+  @Test
+  public void tourLegsAreFetchedInOneBatchWithoutRepeats() throws Exception {
+    CountingMatrixFactory factory = new CountingMatrixFactory(letters(), null);
+    LazyRoadGraph graph = new LazyRoadGraph(factory, estimates(), false);
+    List<String> tour = Arrays.asList("A Street", "C Street", "A Street", "C Street");
+    Assert.assertEquals(2, graph.fetchTour(tour));
+    Assert.assertEquals(0, graph.fetchTour(tour));
+    Assert.assertEquals(2, factory.elements);
+  }
+
+  @Test
+  public void refineStopsOnceTheTourIsEntirelyReal() throws Exception {
+    CountingMatrixFactory factory = new CountingMatrixFactory(letters(), null);
+    LazyRoadGraph graph = new LazyRoadGraph(factory, estimates(), true);
+    graph.fetchCandidates(NEIGHBORS);
+
+    int[] solves = new int[1];
+    List<String> tour = graph.refine(g -> {
+      ++solves[0];
+      // Along the line and back is optimal.
+      List<String> order = new ArrayList<String>(g.getNodes());
+      Collections.sort(order);
+      return order;
+    }, 5);
+
+    Assert.assertEquals(2, solves[0]);
+    Assert.assertEquals(SIZE * NEIGHBORS + 1, factory.elements);
+    for (int k = 0; k < SIZE; ++k) {
+      int i = graph.getIndex(tour.get(k));
+      int j = graph.getIndex(tour.get((k + 1) % SIZE));
+      Assert.assertTrue(graph.isFetched(i, j));
+    }
+    Assert.assertEquals(2500, graph.getWeightAt(25, 0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void placesMustMatchTheEstimates() {
+    new LazyRoadGraph(new CountingMatrixFactory(new String[] {"a"}, null), estimates(), false);
+  }
+
+  private static String[] letters() {
+    String[] letters = new String[SIZE];
+    for (int i = 0; i < SIZE; ++i) {
+      letters[i] = String.valueOf((char) ('a' + i));
+    }
+    return letters;
+  }
+
+  /** Returns estimates that are 80% of the fake map's distances, as the crow flies. */
+  private static DistanceTable estimates() {
+    String[] places = letters();
+    String[] addresses = new String[SIZE];
+    long[] meters = new long[SIZE * SIZE];
+    long[] seconds = new long[SIZE * SIZE];
+    for (int i = 0; i < SIZE; ++i) {
+      addresses[i] = places[i].toUpperCase() + " Street";
+      for (int j = 0; j < SIZE; ++j) {
+        meters[i * SIZE + j] = 800 * Math.abs(i - j);
+        seconds[i * SIZE + j] = 80 * Math.abs(i - j);
+      }
+    }
+    return new DistanceTable(places, addresses, meters, seconds);
+  }
+}
@@ -12,7 +12,6 @@ import org.apache.commons.cli.Options;
 import com.google.maps.GeoApiContext;
 import com.google.maps.errors.OverDailyLimitException;
 import com.google.maps.errors.ApiException;
-import com.google.maps.model.DistanceMatrix;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -87,7 +86,7 @@ public class LocationGraphFactoryTest {
     }
 
     @Override
-    public DistanceMatrix build()
+    public DistanceTable build()
         throws IllegalStateException, InterruptedException, ApiException, IOException {
       throw new ConnectException();
     }
@@ -102,7 +101,7 @@ public class LocationGraphFactoryTest {
     }
 
     @Override
-    public DistanceMatrix build()
+    public DistanceTable build()
         throws IllegalStateException, InterruptedException, ApiException, IOException {
       throw new OverDailyLimitException("This account has exceeded its daily limit");
     }
@@ -0,0 +1,64 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-07
+
+package me.psanders.maps;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class StreamingEndpointTest {
+
+  // The example from Google's documentation of URL signing.
+  private static final String CLIENT_ID = "clientID";
+  private static final String SECRET = "vNIXE0xscrmjlyV-12Nj_BvUPaw=";
+
+  @Test
+  public void keyedRequestsCarryTheKey() throws Exception {
+    URL url = new StreamingEndpoint.Builder().apiKey("a key").build().getUrl("origins=a");
+    Assert.assertEquals(
+        "https://maps.googleapis.com/maps/api/distancematrix/json?origins=a&key=a+key",
+        url.toString());
+  }
+
+  @Test
+  public void signaturesMatchGoogles() throws Exception {
+    StreamingEndpoint endpoint =
+        new StreamingEndpoint.Builder().enterpriseCredentials(CLIENT_ID, SECRET).build();
+    Assert.assertEquals("chaRF2hTJKOScPr-RQCEhZbSzIE=",
+        endpoint.sign("/maps/api/geocode/json?address=New+York&client=clientID"));
+  }
+
+  @Test
+  public void clientRequestsAreSignedInsteadOfKeyed() throws Exception {
+    StreamingEndpoint endpoint = new StreamingEndpoint.Builder()
+        .enterpriseCredentials(CLIENT_ID, SECRET)
+        .baseUrl("http://localhost:8080")
+        .build();
+    String url = endpoint.getUrl("origins=a").toString();
+    String signed = StreamingEndpoint.PATH + "?origins=a&client=clientID";
+    Assert.assertEquals("http://localhost:8080" + signed + "&signature=" + endpoint.sign(signed),
+        url);
+  }
+
+  @Test
+  public void settingsDefaultToTheContexts() {
+    StreamingEndpoint endpoint = new StreamingEndpoint.Builder()
+        .apiKey("key")
+        .readTimeout(30, TimeUnit.SECONDS)
+        .build();
+    Assert.assertEquals(10000, endpoint.getConnectTimeoutMillis());
+    Assert.assertEquals(30000, endpoint.getReadTimeoutMillis());
+    Assert.assertEquals(3, endpoint.getMaxRetries());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void credentialsAreRequired() {
+    new StreamingEndpoint.Builder().build();
+  }
+}
@@ -0,0 +1,152 @@
+// Copyright (c) Peter Sanders. All rights reserved.
+// Date: 2018-02-03
+
+package me.psanders.maps;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.maps.errors.OverDailyLimitException;
+import com.google.maps.errors.OverQueryLimitException;
+import com.google.maps.model.Distance;
+import com.google.maps.model.DistanceMatrix;
+import com.google.maps.model.DistanceMatrixElement;
+import com.google.maps.model.DistanceMatrixElementStatus;
+import com.google.maps.model.DistanceMatrixRow;
+import com.google.maps.model.Duration;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TiledMatrixFetcherTest {
+
+  private static final TokenBucket UNLIMITED = new TokenBucket(1e9, Integer.MAX_VALUE);
+
+  @Test
+  public void tilesStayWithinTheRequestLimits() throws Exception {
+    String[] places = places(60);
+    AtomicInteger elements = new AtomicInteger();
+    AtomicInteger requests = new AtomicInteger();
+    TiledMatrixFetcher fetcher = new TiledMatrixFetcher((origins, destinations) -> {
+      Assert.assertTrue(origins.length <= TiledMatrixFetcher.MAX_ORIGINS);
+      Assert.assertTrue(destinations.length <= TiledMatrixFetcher.MAX_DESTINATIONS);
+      Assert.assertTrue(
+          origins.length * destinations.length <= TiledMatrixFetcher.MAX_ELEMENTS);
+      elements.addAndGet(origins.length * destinations.length);
+      requests.incrementAndGet();
+      return MatrixTile.of(matrix(origins, destinations));
+    }, 4, UNLIMITED);
+
+    DistanceTable table = new DistanceTable(places);
+    fetcher.fetch(places, indices(60), indices(60), (rows, columns, tile) -> {
+      tile.writeTo(table, rows, columns);
+    });
+
+    Assert.assertEquals(60 * 60, elements.get());
+    Assert.assertEquals(15 * 3, requests.get());
+    for (int i = 0; i < 60; ++i) {
+      Assert.assertEquals(places[i].toUpperCase(), table.getAddress(i));
+      for (int j = 0; j < 60; ++j) {
+        Assert.assertEquals(i == j ? 0 : distance(i, j), table.getMeters(i, j));
+      }
+    }
+  }
+
+  @Test
+  public void retriesWhenOverQueryLimit() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    TiledMatrixFetcher fetcher = new TiledMatrixFetcher((origins, destinations) -> {
+      if (attempts.incrementAndGet() < TiledMatrixFetcher.MAX_ATTEMPTS) {
+        throw new OverQueryLimitException("Slow down");
+      }
+      return MatrixTile.of(matrix(origins, destinations));
+    }, 1, UNLIMITED, 1);
+
+    AtomicInteger tiles = new AtomicInteger();
+    fetcher.fetch(places(3), indices(3), indices(3), (rows, columns, tile) -> {
+      tiles.incrementAndGet();
+    });
+    Assert.assertEquals(1, tiles.get());
+    Assert.assertEquals(TiledMatrixFetcher.MAX_ATTEMPTS, attempts.get());
+  }
+
+  @Test(expected = OverQueryLimitException.class)
+  public void givesUpAfterTheLastAttempt() throws Exception {
+    new TiledMatrixFetcher((origins, destinations) -> {
+      throw new OverQueryLimitException("Slow down");
+    }, 1, UNLIMITED, 1).fetch(places(3), indices(3), indices(3), (rows, columns, tile) -> { });
+  }
+
+  @Test
+  public void doesNotRetryOtherErrors() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    TiledMatrixFetcher fetcher = new TiledMatrixFetcher((origins, destinations) -> {
+      attempts.incrementAndGet();
+      throw new OverDailyLimitException("Come back tomorrow");
+    }, 1, UNLIMITED, 1);
+    try {
+      fetcher.fetch(places(3), indices(3), indices(3), (rows, columns, tile) -> { });
+      Assert.fail();
+    } catch (OverDailyLimitException e) {
+      Assert.assertEquals(1, attempts.get());
+    }
+  }
+
+  @Test
+  public void bucketPacesPermitsBeyondTheBurst() throws Exception {
+    TokenBucket bucket = new TokenBucket(1000, 10);
+    long start = System.nanoTime();
+    bucket.acquire(10);
+    bucket.acquire(50);
+    Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(45));
+  }
+
+  private static String[] places(int size) {
+    String[] places = new String[size];
+    for (int i = 0; i < size; ++i) {
+      places[i] = "place " + i;
+    }
+    return places;
+  }
+
+  private static int[] indices(int size) {
+    int[] indices = new int[size];
+    for (int i = 0; i < size; ++i) {
+      indices[i] = i;
+    }
+    return indices;
+  }
+
+  private static long distance(int i, int j) {
+    return 100 * i + j;
+  }
+
+  /** Answers with a distance that tells which pair of places it was asked for. */
+  private static DistanceMatrix matrix(String[] origins, String[] destinations) {
+    String[] originAddresses = new String[origins.length];
+    String[] destinationAddresses = new String[destinations.length];
+    DistanceMatrixRow[] rows = new DistanceMatrixRow[origins.length];
+    for (int a = 0; a < origins.length; ++a) {
+      originAddresses[a] = origins[a].toUpperCase();
+      rows[a] = new DistanceMatrixRow();
+      rows[a].elements = new DistanceMatrixElement[destinations.length];
+      for (int b = 0; b < destinations.length; ++b) {
+        destinationAddresses[b] = destinations[b].toUpperCase();
+        DistanceMatrixElement element = new DistanceMatrixElement();
+        element.status = DistanceMatrixElementStatus.OK;
+        element.distance = new Distance();
+        element.distance.inMeters = distance(index(origins[a]), index(destinations[b]));
+        element.duration = new Duration();
+        rows[a].elements[b] = element;
+      }
+    }
+    return new DistanceMatrix(originAddresses, destinationAddresses, rows);
+  }
+
+  private static int index(String place) {
+    return Integer.parseInt(place.substring("place ".length()));
+  }
+}
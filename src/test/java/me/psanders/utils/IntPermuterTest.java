@@ -0,0 +1,91 @@
+// Copyright: Peter Sanders. All rights reserved.
+// Date: 2018-01-24
+
+package me.psanders.utils;
+
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.StreamSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class IntPermuterTest {
+
+  @Test
+  public void stepsInLexicographicOrder() {
+    int[] permutation = {1, 2, 4, 3};
+    Assert.assertTrue(IntPermuter.next(permutation));
+    Assert.assertArrayEquals(new int[] {1, 3, 2, 4}, permutation);
+  }
+
+  @Test
+  public void skipsRepeatedValues() {
+    int[] permutation = {0, 0, 1};
+    int count = 1;
+    while (IntPermuter.next(permutation)) {
+      ++count;
+    }
+    Assert.assertEquals(/*3! / 2! = */3, count);
+    Assert.assertArrayEquals(new int[] {1, 0, 0}, permutation);
+  }
+
+  @Test
+  public void rankAndUnrankAgreeWithStepping() {
+    int[] stepped = {0, 1, 2, 3, 4};
+    int[] unranked = new int[5];
+    long rank = 0;
+    do {
+      Assert.assertEquals(rank, IntPermuter.rank(stepped));
+      IntPermuter.unrank(rank, unranked);
+      Assert.assertArrayEquals(stepped, unranked);
+      ++rank;
+    } while (IntPermuter.next(stepped));
+
+    Assert.assertEquals(IntPermuter.count(5), rank);
+  }
+
+  @Test
+  public void ranksLongestPermutation() {
+    int[] last = new int[IntPermuter.MAX_LENGTH];
+    for (int i = 0; i < last.length; ++i) {
+      last[i] = last.length - 1 - i;
+    }
+    Assert.assertEquals(IntPermuter.count(IntPermuter.MAX_LENGTH) - 1, IntPermuter.rank(last));
+  }
+
+  @Test
+  public void splitsIntoExactRanges() {
+    Spliterator<int[]> whole = IntPermuter.spliterator(6);
+    Spliterator<int[]> prefix = whole.trySplit();
+
+    Assert.assertEquals(360, prefix.estimateSize());
+    Assert.assertEquals(360, whole.estimateSize());
+
+    final int[] first = new int[6];
+    whole.tryAdvance(permutation -> System.arraycopy(permutation, 0, first, 0, 6));
+    Assert.assertEquals(360, IntPermuter.rank(first));
+  }
+
+  @Test
+  public void parallelStreamVisitsEveryPermutationOnce() {
+    final AtomicLong count = new AtomicLong();
+    final AtomicLong sum = new AtomicLong();
+    StreamSupport.stream(IntPermuter.spliterator(8), true).forEach(permutation -> {
+      count.incrementAndGet();
+      sum.addAndGet(IntPermuter.rank(permutation));
+    });
+
+    long total = IntPermuter.count(8);
+    Assert.assertEquals(total, count.get());
+    Assert.assertEquals(total * (total - 1) / 2, sum.get());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnrankableLengths() {
+    IntPermuter.count(IntPermuter.MAX_LENGTH + 1);
+  }
+}